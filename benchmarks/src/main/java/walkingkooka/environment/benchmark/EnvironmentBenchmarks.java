@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks in this package with the {@link GCProfiler} always enabled, so allocation rates are reported
+ * alongside timings. Any standard JMH command line options, such as <code>-t</code> or a benchmark regex, may be given.
+ */
+public final class EnvironmentBenchmarks {
+
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        final OptionsBuilder options = new OptionsBuilder();
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(EnvironmentBenchmarks.class.getPackage().getName() + ".*");
+        }
+
+        new Runner(
+            options.parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+    private EnvironmentBenchmarks() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment.benchmark;
+
+import walkingkooka.environment.EnvironmentContext;
+import walkingkooka.environment.EnvironmentContexts;
+import walkingkooka.environment.EnvironmentValueName;
+import walkingkooka.net.email.EmailAddress;
+import walkingkooka.predicate.Predicates;
+import walkingkooka.props.Properties;
+import walkingkooka.props.PropertiesPath;
+import walkingkooka.text.Indentation;
+import walkingkooka.text.LineEnding;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * The {@link EnvironmentContext} implementations being measured. Each kind is populated with the same built-in values
+ * and a number of user-defined {@link String} values, which are read back using {@link #userName(int)}.
+ */
+public enum EnvironmentContextKind {
+
+    MAP {
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return context;
+        }
+    },
+
+    HASH_MAP {
+        @Override
+        EnvironmentContext map() {
+            return EnvironmentContexts.hashMap(
+                CHARSET,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                LocalDateTime::now,
+                USER
+            );
+        }
+
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return context;
+        }
+    },
+
+    CONCURRENT {
+        @Override
+        EnvironmentContext map() {
+            return EnvironmentContexts.concurrent(
+                CHARSET,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                LocalDateTime::now,
+                USER
+            );
+        }
+
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return context;
+        }
+    },
+
+    OVERLAY {
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return EnvironmentContexts.overlay(context);
+        }
+    },
+
+    PERSISTENT {
+        @Override
+        EnvironmentContext map() {
+            return EnvironmentContexts.persistent(
+                CHARSET,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                LocalDateTime::now,
+                USER
+            );
+        }
+
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return context;
+        }
+    },
+
+    PREFIXED {
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return EnvironmentContexts.prefixed(
+                PREFIX,
+                context
+            );
+        }
+
+        @Override
+        String userNamePrefix() {
+            return PREFIX.value();
+        }
+
+        @Override
+        public boolean userValuesWritable() {
+            return false;
+        }
+    },
+
+    PROPERTIES {
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            Properties properties = Properties.EMPTY;
+
+            for (int i = 0; i < userValueCount; i++) {
+                properties = properties.set(
+                    PropertiesPath.parse(USER_NAME + i),
+                    USER_VALUE + i
+                );
+            }
+
+            return EnvironmentContexts.properties(
+                properties,
+                context
+            );
+        }
+
+        @Override
+        public boolean userValuesWritable() {
+            return false;
+        }
+    },
+
+    READ_ONLY {
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return EnvironmentContexts.readOnly(
+                Predicates.never(),
+                context
+            );
+        }
+    },
+
+    /**
+     * A read-only view over a prefixed view, similar to the decorator chains built by plugins.
+     */
+    STACKED {
+        @Override
+        EnvironmentContext wrap(final EnvironmentContext context,
+                                final int userValueCount) {
+            return EnvironmentContexts.readOnly(
+                Predicates.never(),
+                EnvironmentContexts.prefixed(
+                    PREFIX,
+                    context
+                )
+            );
+        }
+
+        @Override
+        String userNamePrefix() {
+            return PREFIX.value();
+        }
+
+        @Override
+        public boolean userValuesWritable() {
+            return false;
+        }
+    };
+
+    final static EnvironmentValueName<?> PREFIX = EnvironmentValueName.with(
+        "plugin.",
+        Object.class
+    );
+
+    final static Charset CHARSET = StandardCharsets.UTF_8;
+
+    final static Currency CURRENCY = Currency.getInstance("AUD");
+
+    final static Indentation INDENTATION = Indentation.SPACES2;
+
+    final static LineEnding LINE_ENDING = LineEnding.NL;
+
+    final static Locale LOCALE = Locale.forLanguageTag("en-AU");
+
+    final static Optional<EmailAddress> USER = Optional.of(
+        EmailAddress.parse("user@example.com")
+    );
+
+    final static String USER_NAME = "user-value-";
+
+    final static String USER_VALUE = "value-";
+
+    /**
+     * Creates a new {@link EnvironmentContext} of this kind holding the given number of user-defined values.
+     */
+    public final EnvironmentContext create(final int userValueCount) {
+        final EnvironmentContext map = this.map();
+
+        for (int i = 0; i < userValueCount; i++) {
+            map.setEnvironmentValue(
+                EnvironmentValueName.with(
+                    USER_NAME + i,
+                    String.class
+                ),
+                USER_VALUE + i
+            );
+        }
+
+        return this.wrap(
+            map,
+            userValueCount
+        );
+    }
+
+    /**
+     * Creates the mutable {@link EnvironmentContext} that holds all values.
+     */
+    EnvironmentContext map() {
+        return EnvironmentContexts.map(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            LocalDateTime::now,
+            USER
+        );
+    }
+
+    abstract EnvironmentContext wrap(final EnvironmentContext context,
+                                     final int userValueCount);
+
+    /**
+     * Returns the name of the n-th user-defined value as seen through this kind of {@link EnvironmentContext}.
+     */
+    public final EnvironmentValueName<String> userName(final int i) {
+        return EnvironmentValueName.with(
+            this.userNamePrefix() + USER_NAME + i,
+            String.class
+        );
+    }
+
+    String userNamePrefix() {
+        return "";
+    }
+
+    /**
+     * Only some kinds accept user-defined values, prefixed views and properties only update the built-in values.
+     */
+    public boolean userValuesWritable() {
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkingkooka.environment.EnvironmentContext;
+import walkingkooka.environment.EnvironmentValueName;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the read paths of a single {@link EnvironmentContext} shared by all benchmark threads. Reads never modify
+ * the context so sharing is safe for all implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class EnvironmentContextReadBenchmark {
+
+    @Param({"MAP", "HASH_MAP", "CONCURRENT", "OVERLAY", "PERSISTENT", "PREFIXED", "PROPERTIES", "READ_ONLY", "STACKED"})
+    public EnvironmentContextKind kind;
+
+    @Param({"8", "256"})
+    public int userValueCount;
+
+    private EnvironmentContext context;
+
+    private EnvironmentValueName<String> userName;
+
+    private EnvironmentValueName<String> missingName;
+
+    @Setup
+    public void setup() {
+        this.context = this.kind.create(this.userValueCount);
+        this.userName = this.kind.userName(this.userValueCount / 2);
+        this.missingName = this.kind.userName(this.userValueCount);
+    }
+
+    @Benchmark
+    public Locale locale() {
+        return this.context.locale();
+    }
+
+    @Benchmark
+    public Charset charset() {
+        return this.context.charset();
+    }
+
+    @Benchmark
+    public Optional<Locale> environmentValueLocale() {
+        return this.context.environmentValue(EnvironmentValueName.LOCALE);
+    }
+
+    @Benchmark
+    public Optional<String> environmentValueUserDefined() {
+        return this.context.environmentValue(this.userName);
+    }
+
+    @Benchmark
+    public Optional<String> environmentValueMissing() {
+        return this.context.environmentValue(this.missingName);
+    }
+
+    @Benchmark
+    public Set<EnvironmentValueName<?>> environmentValueNames() {
+        return this.context.environmentValueNames();
+    }
+
+    @Benchmark
+    public EnvironmentContext cloneEnvironment() {
+        return this.context.cloneEnvironment();
+    }
+}
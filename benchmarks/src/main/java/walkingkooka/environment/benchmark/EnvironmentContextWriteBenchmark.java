@@ -0,0 +1,132 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import walkingkooka.environment.EnvironmentContext;
+import walkingkooka.environment.EnvironmentValueName;
+import walkingkooka.environment.EnvironmentValueNameAndValue;
+import walkingkooka.environment.EnvironmentWatcher;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the write paths including the cost of notifying watchers. Every thread gets its own {@link EnvironmentContext}
+ * because only {@link EnvironmentContextKind#CONCURRENT} supports concurrent writes, which are measured by
+ * {@link EnvironmentContextWriteSharedBenchmark}. Values alternate so every write fires an event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class EnvironmentContextWriteBenchmark {
+
+    private final static Locale LOCALE1 = Locale.forLanguageTag("en-AU");
+
+    private final static Locale LOCALE2 = Locale.forLanguageTag("fr-FR");
+
+    @Param({"MAP", "HASH_MAP", "CONCURRENT", "OVERLAY", "PERSISTENT", "PREFIXED", "PROPERTIES", "READ_ONLY", "STACKED"})
+    public EnvironmentContextKind kind;
+
+    @Param({"8", "256"})
+    public int userValueCount;
+
+    /**
+     * The number of watchers receiving every change.
+     */
+    @Param({"0", "1", "16"})
+    public int watcherCount;
+
+    private EnvironmentContext context;
+
+    private EnvironmentValueName<String> userName;
+
+    private boolean toggle;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        final EnvironmentContext context = this.kind.create(this.userValueCount);
+
+        for (int i = 0; i < this.watcherCount; i++) {
+            context.addEnvironmentWatcher(
+                new EnvironmentWatcher() {
+                    @Override
+                    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                        blackhole.consume(newValue);
+                    }
+                }
+            );
+        }
+
+        this.context = context;
+        this.userName = this.kind.userName(this.userValueCount / 2);
+    }
+
+    @Benchmark
+    public void setLocale() {
+        this.toggle = !this.toggle;
+        this.context.setLocale(
+            this.toggle ?
+                LOCALE1 :
+                LOCALE2
+        );
+    }
+
+    @Benchmark
+    public void setEnvironmentValueUserDefined() {
+        if (this.kind.userValuesWritable()) {
+            this.toggle = !this.toggle;
+            this.context.setEnvironmentValue(
+                this.userName,
+                this.toggle ?
+                    "value1" :
+                    "value2"
+            );
+        }
+    }
+
+    @Benchmark
+    public void setAndRemoveEnvironmentValueUserDefined() {
+        if (this.kind.userValuesWritable()) {
+            final EnvironmentContext context = this.context;
+            final EnvironmentValueName<String> name = this.userName;
+
+            context.setEnvironmentValue(
+                name,
+                "value"
+            );
+            context.removeEnvironmentValue(name);
+        }
+    }
+}
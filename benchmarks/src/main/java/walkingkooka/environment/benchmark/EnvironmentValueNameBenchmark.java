@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkingkooka.environment.EnvironmentContext;
+import walkingkooka.environment.EnvironmentValueName;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating, comparing and parsing {@link EnvironmentValueName}, which every lookup pays for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentValueNameBenchmark {
+
+    public String text = "plugin.user-value-123";
+
+    public String textDifferentCase = "PLUGIN.User-Value-123";
+
+    public String builtInText = "lineEnding";
+
+    private final EnvironmentValueName<String> name = EnvironmentValueName.with(
+        this.text,
+        String.class
+    );
+
+    private final EnvironmentValueName<String> nameDifferentCase = EnvironmentValueName.with(
+        this.textDifferentCase,
+        String.class
+    );
+
+    private final EnvironmentContext context = EnvironmentContextKind.MAP.create(8);
+
+    @Benchmark
+    public EnvironmentValueName<String> with() {
+        return EnvironmentValueName.with(
+            this.text,
+            String.class
+        );
+    }
+
+    @Benchmark
+    public boolean equalsDifferentInstance() {
+        return this.name.equals(this.nameDifferentCase);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return this.name.compareTo(this.nameDifferentCase);
+    }
+
+    @Benchmark
+    public int hashCodeName() {
+        return this.name.hashCode();
+    }
+
+    @Benchmark
+    public EnvironmentValueName<?> parseEnvironmentValueNameBuiltIn() {
+        return this.context.parseEnvironmentValueName(this.builtInText);
+    }
+
+    @Benchmark
+    public EnvironmentValueName<?> parseEnvironmentValueNameUserDefined() {
+        return this.context.parseEnvironmentValueName(this.text);
+    }
+}
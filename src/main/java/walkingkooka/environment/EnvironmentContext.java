@@ -18,6 +18,7 @@
 package walkingkooka.environment;
 
 import walkingkooka.Context;
+import walkingkooka.collect.set.Sets;
 import walkingkooka.currency.HasCurrency;
 import walkingkooka.datetime.HasNow;
 import walkingkooka.net.email.EmailAddress;
@@ -34,6 +35,8 @@ import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A {@link Context} that includes methods to get/set/remove environment values including the locale and the {@link EmailAddress}
@@ -123,11 +126,88 @@ public interface EnvironmentContext extends Context,
         }
     }
 
+    /**
+     * Sets the value only if no value is present, returning the existing value or empty if the given value was set.
+     * The default performs a get followed by a set, concurrent implementations perform both atomically.
+     */
+    default <T> Optional<T> setEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                         final T value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        final Optional<T> existing = this.environmentValue(name);
+        if (false == existing.isPresent()) {
+            this.setEnvironmentValue(
+                name,
+                value
+            );
+        }
+        return existing;
+    }
+
+    /**
+     * Sets or removes the value only if the current value is equal to the expected value, where an empty
+     * {@link Optional} means absent. Returns true if the value was updated.
+     * The default performs a get followed by a set, concurrent implementations perform both atomically.
+     */
+    default <T> boolean compareAndSetEnvironmentValue(final EnvironmentValueName<T> name,
+                                                      final Optional<T> expected,
+                                                      final Optional<T> value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(expected, "expected");
+        Objects.requireNonNull(value, "value");
+
+        final boolean update = this.environmentValue(name)
+            .equals(expected);
+        if (update) {
+            this.setOrRemoveEnvironmentValue(
+                name,
+                value
+            );
+        }
+        return update;
+    }
+
+    /**
+     * Returns the current value, or computes and sets a value if none is present. The {@link Function} may be called
+     * by several threads that race to initialise the same value, but only the first value set is ever returned.
+     */
+    default <T> T computeEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                  final Function<EnvironmentValueName<T>, T> compute) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(compute, "compute");
+
+        T value = this.environmentValue(name)
+            .orElse(null);
+        if (null == value) {
+            final T computed = Objects.requireNonNull(
+                compute.apply(name),
+                "computed value"
+            );
+            value = this.setEnvironmentValueIfAbsent(
+                name,
+                computed
+            ).orElse(computed);
+        }
+        return value;
+    }
+
     /**
      * Removes the value with the given {@link EnvironmentValueName}.
      */
     void removeEnvironmentValue(final EnvironmentValueName<?> name);
 
+    /**
+     * Applies all the updates performed by the given {@link Consumer} as a single batch, with watchers receiving one
+     * {@link EnvironmentWatcher#onValueChanges(java.util.List)} when the batch completes rather than an event per change.
+     * The default simply runs the updates against this context.
+     */
+    default void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        updater.accept(this);
+    }
+
     /**
      * Sets or replaces the current {@link Charset}
      */
@@ -215,6 +295,35 @@ public interface EnvironmentContext extends Context,
      */
     Runnable addEnvironmentWatcherOnce(final EnvironmentWatcher watcher);
 
+    /**
+     * Adds a new {@link EnvironmentWatcher} that will only be notified when the given {@link EnvironmentValueName} is
+     * added, modified or removed.
+     */
+    default Runnable addEnvironmentWatcher(final EnvironmentValueName<?> name,
+                                           final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(name, "name");
+
+        return this.addEnvironmentWatcher(
+            Sets.<EnvironmentValueName<?>>of(name),
+            watcher
+        );
+    }
+
+    /**
+     * Adds a new {@link EnvironmentWatcher} that will only be notified when any of the given
+     * {@link EnvironmentValueName names} is added, modified or removed. The default filters every event, implementations
+     * that hold their own watchers index them by name, so other changes never visit the watcher.
+     */
+    default Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                           final EnvironmentWatcher watcher) {
+        return this.addEnvironmentWatcher(
+            EnvironmentWatcherNames.with(
+                names,
+                watcher
+            )
+        );
+    }
+
     /**
      * Gives an empty {@link EnvironmentContextMissingValues}.
      */
@@ -29,6 +29,8 @@ import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public interface EnvironmentContextDelegator extends EnvironmentContext,
     CanParseEnvironmentValueNameDelegator {
@@ -62,6 +64,57 @@ public interface EnvironmentContextDelegator extends EnvironmentContext,
             .removeEnvironmentValue(name);
     }
 
+    @Override
+    default <T> Optional<T> setEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                        final T value) {
+        return this.environmentContext()
+            .setEnvironmentValueIfAbsent(
+                name,
+                value
+            );
+    }
+
+    @Override
+    default <T> boolean compareAndSetEnvironmentValue(final EnvironmentValueName<T> name,
+                                                      final Optional<T> expected,
+                                                      final Optional<T> value) {
+        return this.environmentContext()
+            .compareAndSetEnvironmentValue(
+                name,
+                expected,
+                value
+            );
+    }
+
+    @Override
+    default <T> T computeEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                  final Function<EnvironmentValueName<T>, T> compute) {
+        return this.environmentContext()
+            .computeEnvironmentValueIfAbsent(
+                name,
+                compute
+            );
+    }
+
+    /**
+     * The updater receives this delegator, so overridden mutators are used, unless the wrapped
+     * {@link EnvironmentContext} applies updates to a separate working copy, such as a concurrent context, in which case
+     * the updater receives that copy and overridden mutators are bypassed.
+     */
+    @Override
+    default void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        final EnvironmentContext context = this.environmentContext();
+        context.update(
+            (c) -> updater.accept(
+                c == context ?
+                    this :
+                    c
+            )
+        );
+    }
+
     @Override
     default Charset charset() {
         return CHARSET.getEnvironmentValueOrFail(this);
@@ -170,6 +223,26 @@ public interface EnvironmentContextDelegator extends EnvironmentContext,
             .addEnvironmentWatcherOnce(watcher);
     }
 
+    @Override
+    default Runnable addEnvironmentWatcher(final EnvironmentValueName<?> name,
+                                           final EnvironmentWatcher watcher) {
+        return this.environmentContext()
+            .addEnvironmentWatcher(
+                name,
+                watcher
+            );
+    }
+
+    @Override
+    default Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                           final EnvironmentWatcher watcher) {
+        return this.environmentContext()
+            .addEnvironmentWatcher(
+                names,
+                watcher
+            );
+    }
+
     EnvironmentContext environmentContext();
 
     // CanParseEnvironmentValueNameDelegator............................................................................
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.reflect.PublicStaticHelper;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * A collection of {@link FileEnvironmentContext} factory methods. These require a local file system and are not
+ * available in the browser.
+ */
+public final class EnvironmentContextFiles implements PublicStaticHelper {
+
+    /**
+     * {@see EnvironmentContextSharedPropertiesFile}
+     */
+    public static FileEnvironmentContext properties(final Path file,
+                                                    final Charset charset,
+                                                    final EnvironmentContext context) throws IOException {
+        final EnvironmentContextSharedPropertiesFile propertiesFile = EnvironmentContextSharedPropertiesFile.with(
+            file,
+            charset,
+            context
+        );
+        propertiesFile.watch();
+        return propertiesFile;
+    }
+
+    /**
+     * Stop creation
+     */
+    private EnvironmentContextFiles() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -37,6 +37,7 @@ import java.util.Optional;
  * <li>{@link #setEnvironmentValue(EnvironmentValueName, Object)}</li>
  * <li>{@link #removeEnvironmentValue(EnvironmentValueName)}</li>
  * </ol>
+ * Sub-classes that hold the built-in values directly may override the typed getters.
  */
 abstract class EnvironmentContextShared implements EnvironmentContext,
     TreePrintable {
@@ -48,7 +49,7 @@ abstract class EnvironmentContextShared implements EnvironmentContext,
     // HasCharset.......................................................................................................
 
     @Override
-    public final Charset charset() {
+    public Charset charset() {
         return this.environmentValueOrFail(CHARSET);
     }
 
@@ -63,7 +64,7 @@ abstract class EnvironmentContextShared implements EnvironmentContext,
     // HasCurrency...................................................................................................
 
     @Override
-    public final Currency currency() {
+    public Currency currency() {
         return this.environmentValueOrFail(CURRENCY);
     }
 
@@ -78,7 +79,7 @@ abstract class EnvironmentContextShared implements EnvironmentContext,
     // HasIndentation...................................................................................................
 
     @Override
-    public final Indentation indentation() {
+    public Indentation indentation() {
         return this.environmentValueOrFail(INDENTATION);
     }
 
@@ -93,7 +94,7 @@ abstract class EnvironmentContextShared implements EnvironmentContext,
     // HasLineEnding....................................................................................................
 
     @Override
-    public final LineEnding lineEnding() {
+    public LineEnding lineEnding() {
         return this.environmentValueOrFail(LINE_ENDING);
     }
 
@@ -108,7 +109,7 @@ abstract class EnvironmentContextShared implements EnvironmentContext,
     // HasLocale........................................................................................................
 
     @Override
-    public final Locale locale() {
+    public Locale locale() {
         return this.environmentValueOrFail(LOCALE);
     }
 
@@ -130,7 +131,7 @@ abstract class EnvironmentContextShared implements EnvironmentContext,
     // timeOffset.......................................................................................................
 
     @Override
-    public final ZoneOffset timeOffset() {
+    public ZoneOffset timeOffset() {
         return this.environmentValueOrFail(TIME_OFFSET);
     }
 
@@ -145,7 +146,7 @@ abstract class EnvironmentContextShared implements EnvironmentContext,
     // HasUser..........................................................................................................
 
     @Override
-    public final Optional<EmailAddress> user() {
+    public Optional<EmailAddress> user() {
         return this.environmentValue(USER);
     }
 
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.ToStringBuilder;
+import walkingkooka.UsesToStringBuilder;
+import walkingkooka.datetime.HasNow;
+import walkingkooka.net.email.EmailAddress;
+import walkingkooka.text.Indentation;
+import walkingkooka.text.LineEnding;
+import walkingkooka.text.printer.IndentingPrinter;
+
+import java.nio.charset.Charset;
+import java.time.ZoneOffset;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A thread safe {@link EnvironmentContext} that may be shared by many threads. The values are held in an immutable
+ * {@link EnvironmentContextSharedPersistentValues}, so reads are a single volatile read without any locking.
+ * Updates compute the new values and publish them with a compare and set, retrying if another thread won the race.
+ * Each update fires its watchers with the exact value it replaced, after it has been published.
+ * <br>
+ * Events are delivered by the thread that made the update, and are not sequenced between threads. Updates made by
+ * one thread are delivered in order, but an update published by another thread may be delivered before an earlier
+ * update that is still being delivered. Watchers that need the latest value should read it from this context, or
+ * compare {@link EnvironmentContextSnapshot#version()} of {@link #snapshot()}, rather than keep the last event.
+ * <br>
+ * No <code>synchronized</code> sections are used, so virtual threads are never pinned.
+ * <br>
+ * {@link #snapshot()} costs a single volatile read, and returns a consistent view of a single version while writers
+ * continue to publish new versions.
+ * <br>
+ * {@link #setEnvironmentValueIfAbsent(EnvironmentValueName, Object)} and
+ * {@link #compareAndSetEnvironmentValue(EnvironmentValueName, Optional, Optional)} are atomic, so lazily initialising a
+ * shared value needs no external lock.
+ * <br>
+ * {@link #update(Consumer)} applies all its updates to a private working copy and publishes them together, so readers
+ * never see a partial update.
+ */
+final class EnvironmentContextSharedConcurrent extends EnvironmentContextShared
+    implements HasEnvironmentContextSnapshot,
+    UsesToStringBuilder {
+
+    static EnvironmentContextSharedConcurrent with(final Charset charset,
+                                                   final Currency currency,
+                                                   final Indentation indentation,
+                                                   final LineEnding lineEnding,
+                                                   final Locale locale,
+                                                   final HasNow hasNow,
+                                                   final Optional<EmailAddress> user) {
+        Objects.requireNonNull(charset, "charset");
+        Objects.requireNonNull(currency, "currency");
+        Objects.requireNonNull(indentation, "indentation");
+        Objects.requireNonNull(lineEnding, "lineEnding");
+        Objects.requireNonNull(locale, "locale");
+        Objects.requireNonNull(hasNow, "hasNow");
+        Objects.requireNonNull(user, "user");
+
+        final Object[] builtIns = new Object[EnvironmentValueName.SLOT_COUNT];
+        builtIns[EnvironmentValueName.CHARSET_SLOT] = charset;
+        builtIns[EnvironmentValueName.CURRENCY_SLOT] = currency;
+        builtIns[EnvironmentValueName.INDENTATION_SLOT] = indentation;
+        builtIns[EnvironmentValueName.LINE_ENDING_SLOT] = lineEnding;
+        builtIns[EnvironmentValueName.LOCALE_SLOT] = locale;
+        builtIns[EnvironmentValueName.TIME_OFFSET_SLOT] = DEFAULT_TIME_OFFSET;
+        builtIns[EnvironmentValueName.USER_SLOT] = user.orElse(null);
+
+        return new EnvironmentContextSharedConcurrent(
+            EnvironmentContextSharedPersistentValues.with(builtIns),
+            hasNow
+        );
+    }
+
+    private EnvironmentContextSharedConcurrent(final EnvironmentContextSharedPersistentValues values,
+                                               final HasNow hasNow) {
+        super();
+
+        this.values = new AtomicReference<>(values);
+        this.hasNow = hasNow;
+    }
+
+    /**
+     * The clone starts with the current values and has no watchers.
+     */
+    @Override
+    public EnvironmentContext cloneEnvironment() {
+        return new EnvironmentContextSharedConcurrent(
+            this.values.get(),
+            this.hasNow
+        );
+    }
+
+    /**
+     * Returns an immutable view of the current version of all values.
+     */
+    @Override
+    public EnvironmentContextSnapshot snapshot() {
+        return EnvironmentContextSharedSnapshot.with(
+            this.values.get(),
+            this.hasNow
+        );
+    }
+
+    /**
+     * Returns the given {@link EnvironmentContext}.
+     */
+    @Override
+    public EnvironmentContext setEnvironmentContext(final EnvironmentContext context) {
+        return Objects.requireNonNull(context, "context");
+    }
+
+    // built-ins........................................................................................................
+
+    @Override
+    public Charset charset() {
+        return (Charset) this.builtIn(EnvironmentValueName.CHARSET_SLOT);
+    }
+
+    @Override
+    public Currency currency() {
+        return (Currency) this.builtIn(EnvironmentValueName.CURRENCY_SLOT);
+    }
+
+    @Override
+    public Indentation indentation() {
+        return (Indentation) this.builtIn(EnvironmentValueName.INDENTATION_SLOT);
+    }
+
+    @Override
+    public LineEnding lineEnding() {
+        return (LineEnding) this.builtIn(EnvironmentValueName.LINE_ENDING_SLOT);
+    }
+
+    @Override
+    public Locale locale() {
+        return (Locale) this.builtIn(EnvironmentValueName.LOCALE_SLOT);
+    }
+
+    @Override
+    public ZoneOffset timeOffset() {
+        final ZoneOffset timeOffset = (ZoneOffset) this.builtIn(EnvironmentValueName.TIME_OFFSET_SLOT);
+        return null != timeOffset ?
+            timeOffset :
+            DEFAULT_TIME_OFFSET;
+    }
+
+    @Override
+    public Optional<EmailAddress> user() {
+        return Optional.ofNullable(
+            (EmailAddress) this.builtIn(EnvironmentValueName.USER_SLOT)
+        );
+    }
+
+    private Object builtIn(final int slot) {
+        return this.values.get()
+            .builtIns[slot];
+    }
+
+    // EnvironmentContext...............................................................................................
+
+    @Override
+    public <T> Optional<T> environmentValue(final EnvironmentValueName<T> name) {
+        Objects.requireNonNull(name, "name");
+
+        return Optional.ofNullable(
+            name.cast(
+                this.value(
+                    this.values.get(),
+                    name
+                )
+            )
+        );
+    }
+
+    /**
+     * Reads a value from the given values, including the clock and the default time offset.
+     */
+    private Object value(final EnvironmentContextSharedPersistentValues values,
+                         final EnvironmentValueName<?> name) {
+        Object value;
+
+        if (NOW == name) {
+            value = this.hasNow.now();
+        } else {
+            value = values.get(name);
+            if (null == value && TIME_OFFSET == name) {
+                value = DEFAULT_TIME_OFFSET;
+            }
+        }
+
+        return value;
+    }
+
+    private final HasNow hasNow;
+
+    @Override
+    public Set<EnvironmentValueName<?>> environmentValueNames() {
+        return this.values.get()
+            .names();
+    }
+
+    @Override
+    public <T> void setEnvironmentValue(final EnvironmentValueName<T> name,
+                                        final T value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        if (NOW == name) {
+            throw name.readOnlyEnvironmentValueException();
+        }
+
+        EnvironmentContextSharedPersistentValues values;
+        EnvironmentContextSharedPersistentValues updated;
+
+        do {
+            values = this.values.get();
+            updated = values.set(
+                name,
+                value
+            );
+        } while (false == this.values.compareAndSet(values, updated));
+
+        this.watchers.onValueChange(
+            name,
+            values.get(name),
+            value
+        );
+    }
+
+    @Override
+    public void removeEnvironmentValue(final EnvironmentValueName<?> name) {
+        Objects.requireNonNull(name, "name");
+
+        checkRemovable(name);
+
+        EnvironmentContextSharedPersistentValues values;
+        EnvironmentContextSharedPersistentValues updated;
+
+        do {
+            values = this.values.get();
+            updated = values.remove(name);
+        } while (false == this.values.compareAndSet(values, updated));
+
+        this.watchers.onValueChange(
+            name,
+            values.get(name),
+            null
+        );
+    }
+
+    /**
+     * Applies the updates to a private working copy of the current values, then publishes them all with a single
+     * compare and set, firing a single {@link EnvironmentWatcher#onValueChanges(java.util.List)} with the coalesced
+     * changes. If another thread published first the updater is run again against the new values, so it should not
+     * have any other side effects, and the {@link EnvironmentContext} it is given must not be used after it returns.
+     */
+    @Override
+    public void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        EnvironmentContextSharedPersistentValues values;
+        EnvironmentContextSharedPersistent working;
+        EnvironmentWatcherBatch batch;
+
+        do {
+            values = this.values.get();
+
+            working = EnvironmentContextSharedPersistent.withValues(
+                values,
+                this.hasNow
+            );
+            batch = EnvironmentWatcherBatch.empty();
+            working.addEnvironmentWatcher(batch);
+
+            updater.accept(working);
+        } while (false == this.values.compareAndSet(values, working.values));
+
+        this.watchers.onValueChanges(
+            batch.changes()
+        );
+    }
+
+    private static void checkRemovable(final EnvironmentValueName<?> name) {
+        switch (name.slot) {
+            case EnvironmentValueName.TIME_OFFSET_SLOT:
+            case EnvironmentValueName.USER_SLOT:
+                break;
+            case EnvironmentValueName.NO_SLOT:
+                if (NOW == name) {
+                    throw name.readOnlyEnvironmentValueException();
+                }
+                break;
+            default:
+                throw name.readOnlyEnvironmentValueException();
+        }
+    }
+
+    /**
+     * Atomically sets the value if absent, without any locking.
+     */
+    @Override
+    public <T> Optional<T> setEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                       final T value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        EnvironmentContextSharedPersistentValues values;
+        EnvironmentContextSharedPersistentValues updated;
+
+        do {
+            values = this.values.get();
+
+            final Object existing = this.value(
+                values,
+                name
+            );
+            if (null != existing) {
+                return Optional.of(
+                    name.cast(existing)
+                );
+            }
+
+            updated = values.set(
+                name,
+                value
+            );
+        } while (false == this.values.compareAndSet(values, updated));
+
+        this.watchers.onValueChange(
+            name,
+            null,
+            value
+        );
+
+        return Optional.empty();
+    }
+
+    /**
+     * Atomically compares the current value using {@link Object#equals(Object)} and then sets or removes the value,
+     * without any locking.
+     */
+    @Override
+    public <T> boolean compareAndSetEnvironmentValue(final EnvironmentValueName<T> name,
+                                                     final Optional<T> expected,
+                                                     final Optional<T> value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(expected, "expected");
+        Objects.requireNonNull(value, "value");
+
+        final T newValue = value.orElse(null);
+        if (null != newValue) {
+            if (NOW == name) {
+                throw name.readOnlyEnvironmentValueException();
+            }
+        } else {
+            checkRemovable(name);
+        }
+
+        EnvironmentContextSharedPersistentValues values;
+        EnvironmentContextSharedPersistentValues updated;
+
+        do {
+            values = this.values.get();
+
+            final Object current = this.value(
+                values,
+                name
+            );
+            if (false == expected.equals(Optional.ofNullable(current))) {
+                return false;
+            }
+
+            updated = null != newValue ?
+                values.set(
+                    name,
+                    newValue
+                ) :
+                values.remove(name);
+        } while (false == this.values.compareAndSet(values, updated));
+
+        this.watchers.onValueChange(
+            name,
+            values.get(name),
+            newValue
+        );
+
+        return true;
+    }
+
+    /**
+     * The current values, updates publish a new instance and never modify the current.
+     */
+    // @VisibleForTesting
+    final AtomicReference<EnvironmentContextSharedPersistentValues> values;
+
+    // watchers.........................................................................................................
+
+    @Override
+    public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
+        return this.watchers.add(watcher);
+    }
+
+    @Override
+    public Runnable addEnvironmentWatcherOnce(final EnvironmentWatcher watcher) {
+        return this.watchers.addOnce(watcher);
+    }
+
+    @Override
+    public Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                          final EnvironmentWatcher watcher) {
+        return this.watchers.add(
+            names,
+            watcher
+        );
+    }
+
+    // @VisibleForTesting
+    final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Override
+    public EnvironmentValueName<?> parseEnvironmentValueName(final String value) {
+        EnvironmentValueName<?> environmentValueName = EnvironmentValueName.constant(value);
+        if (null == environmentValueName) {
+            // probe without creating a name, only unknown names are created
+            environmentValueName = this.values.get()
+                .keyIgnoringCase(value);
+            if (null == environmentValueName) {
+                environmentValueName = EnvironmentValueName.with(
+                    value,
+                    Object.class
+                );
+            }
+        }
+
+        return environmentValueName;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.values.get(),
+            this.hasNow
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            (other instanceof EnvironmentContextSharedConcurrent &&
+                this.equals0((EnvironmentContextSharedConcurrent) other));
+    }
+
+    private boolean equals0(final EnvironmentContextSharedConcurrent other) {
+        return this.values.get().equals(other.values.get()) &&
+            this.hasNow.equals(other.hasNow);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.buildFrom(this);
+    }
+
+    // UsesToStringBuilder..............................................................................................
+
+    @Override
+    public void buildToString(final ToStringBuilder b) {
+        this.values.get()
+            .buildToString(b);
+    }
+
+    // TreePrintable....................................................................................................
+
+    @Override
+    public void printTree(final IndentingPrinter printer) {
+        this.printTreeValues(printer);
+    }
+}
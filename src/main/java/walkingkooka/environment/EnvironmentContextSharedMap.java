@@ -32,6 +32,8 @@ import walkingkooka.text.LineEnding;
 import walkingkooka.text.printer.IndentingPrinter;
 
 import java.nio.charset.Charset;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.Currency;
 import java.util.Locale;
 import java.util.Map;
@@ -41,7 +43,8 @@ import java.util.Set;
 
 /**
  * A {@link EnvironmentContext} that cascade gets, trying the wrapped {@link EnvironmentContext} and then the internal
- * {@link Map}.
+ * {@link Map}. The built-in values are held in an array indexed by {@link EnvironmentValueName#slot}, the {@link Map}
+ * only holds user-defined values.
  */
 final class EnvironmentContextSharedMap extends EnvironmentContextShared
     implements HasEnvironmentWatchers,
@@ -54,6 +57,49 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
                                             final Locale locale,
                                             final HasNow hasNow,
                                             final Optional<EmailAddress> user) {
+        return with(
+            charset,
+            currency,
+            indentation,
+            lineEnding,
+            locale,
+            hasNow,
+            user,
+            Maps.sorted()
+        );
+    }
+
+    /**
+     * Creates a {@link EnvironmentContextSharedMap} that holds user-defined values in a {@link EnvironmentValueNameHashMap},
+     * sorting only happens when all names are requested.
+     */
+    static EnvironmentContextSharedMap withHashMap(final Charset charset,
+                                                   final Currency currency,
+                                                   final Indentation indentation,
+                                                   final LineEnding lineEnding,
+                                                   final Locale locale,
+                                                   final HasNow hasNow,
+                                                   final Optional<EmailAddress> user) {
+        return with(
+            charset,
+            currency,
+            indentation,
+            lineEnding,
+            locale,
+            hasNow,
+            user,
+            EnvironmentValueNameHashMap.empty()
+        );
+    }
+
+    private static EnvironmentContextSharedMap with(final Charset charset,
+                                                    final Currency currency,
+                                                    final Indentation indentation,
+                                                    final LineEnding lineEnding,
+                                                    final Locale locale,
+                                                    final HasNow hasNow,
+                                                    final Optional<EmailAddress> user,
+                                                    final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values) {
         Objects.requireNonNull(charset, "charset");
         Objects.requireNonNull(currency, "currency");
         Objects.requireNonNull(indentation, "indentation");
@@ -62,76 +108,37 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
         Objects.requireNonNull(hasNow, "hasNow");
         Objects.requireNonNull(user, "user");
 
-        final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values = Maps.sorted();
-        values.put(
-            EnvironmentValueName.CHARSET,
-            EnvironmentContextSharedMapValue.with(
-                EnvironmentValueName.CHARSET,
-                charset
-            )
-        );
-        values.put(
-            EnvironmentValueName.CURRENCY,
-            EnvironmentContextSharedMapValue.with(
-                EnvironmentValueName.CURRENCY,
-                currency
-            )
-        );
-        values.put(
-            EnvironmentValueName.INDENTATION,
-            EnvironmentContextSharedMapValue.with(
-                EnvironmentValueName.INDENTATION,
-                indentation
-            )
-        );
-        values.put(
-            EnvironmentValueName.LINE_ENDING,
-            EnvironmentContextSharedMapValue.with(
-                EnvironmentValueName.LINE_ENDING,
-                lineEnding
-            )
-        );
-        values.put(
-            EnvironmentValueName.LOCALE,
-            EnvironmentContextSharedMapValue.with(
-                EnvironmentValueName.LOCALE,
-                locale
-            )
-        );
-        values.put(
-            EnvironmentValueName.TIME_OFFSET,
-            EnvironmentContextSharedMapValue.with(
-                EnvironmentValueName.TIME_OFFSET,
-                DEFAULT_TIME_OFFSET
-            )
-        );
-        user.ifPresent(
-            u -> values.put(
-                EnvironmentValueName.USER,
-                EnvironmentContextSharedMapValue.with(
-                    EnvironmentValueName.USER,
-                    u
-                )
-            )
-        );
+        final Object[] builtIns = new Object[EnvironmentValueName.SLOT_COUNT];
+        builtIns[EnvironmentValueName.CHARSET_SLOT] = charset;
+        builtIns[EnvironmentValueName.CURRENCY_SLOT] = currency;
+        builtIns[EnvironmentValueName.INDENTATION_SLOT] = indentation;
+        builtIns[EnvironmentValueName.LINE_ENDING_SLOT] = lineEnding;
+        builtIns[EnvironmentValueName.LOCALE_SLOT] = locale;
+        builtIns[EnvironmentValueName.TIME_OFFSET_SLOT] = DEFAULT_TIME_OFFSET;
+        builtIns[EnvironmentValueName.USER_SLOT] = user.orElse(null);
 
         return new EnvironmentContextSharedMap(
+            builtIns,
             values,
             hasNow
         );
     }
 
-    private EnvironmentContextSharedMap(final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values,
+    private EnvironmentContextSharedMap(final Object[] builtIns,
+                                        final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values,
                                         final HasNow hasNow) {
         super();
 
+        this.builtIns = builtIns;
         this.values = values;
         this.hasNow = hasNow;
     }
 
     @Override
     public EnvironmentContext cloneEnvironment() {
-        final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values = Maps.sorted();
+        final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values = this.values instanceof EnvironmentValueNameHashMap ?
+            EnvironmentValueNameHashMap.empty() :
+            Maps.sorted();
 
         for (final EnvironmentContextSharedMapValue<?> value : this.values.values()) {
             values.put(
@@ -141,6 +148,7 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
         }
 
         return new EnvironmentContextSharedMap(
+            this.builtIns.clone(),
             values,
             this.hasNow
         );
@@ -154,24 +162,75 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
         return Objects.requireNonNull(context, "context");
     }
 
+    // built-ins........................................................................................................
+
+    @Override
+    public Charset charset() {
+        return (Charset) this.builtIns[EnvironmentValueName.CHARSET_SLOT];
+    }
+
+    @Override
+    public Currency currency() {
+        return (Currency) this.builtIns[EnvironmentValueName.CURRENCY_SLOT];
+    }
+
+    @Override
+    public Indentation indentation() {
+        return (Indentation) this.builtIns[EnvironmentValueName.INDENTATION_SLOT];
+    }
+
+    @Override
+    public LineEnding lineEnding() {
+        return (LineEnding) this.builtIns[EnvironmentValueName.LINE_ENDING_SLOT];
+    }
+
+    @Override
+    public Locale locale() {
+        return (Locale) this.builtIns[EnvironmentValueName.LOCALE_SLOT];
+    }
+
+    @Override
+    public ZoneOffset timeOffset() {
+        final ZoneOffset timeOffset = (ZoneOffset) this.builtIns[EnvironmentValueName.TIME_OFFSET_SLOT];
+        return null != timeOffset ?
+            timeOffset :
+            DEFAULT_TIME_OFFSET;
+    }
+
+    @Override
+    public Optional<EmailAddress> user() {
+        return Optional.ofNullable(
+            (EmailAddress) this.builtIns[EnvironmentValueName.USER_SLOT]
+        );
+    }
+
+    /**
+     * Holds the built-in values, a missing {@link #USER} or {@link #TIME_OFFSET} are null.
+     */
+    private final Object[] builtIns;
+
+    // EnvironmentContext...............................................................................................
+
     @Override
     public <T> Optional<T> environmentValue(final EnvironmentValueName<T> name) {
         Objects.requireNonNull(name, "name");
 
         Object value;
 
-        if (EnvironmentValueName.NOW.equals(name)) {
-            value = this.hasNow.now();
+        final int slot = name.slot;
+        if (EnvironmentValueName.NO_SLOT != slot) {
+            value = this.builtIns[slot];
+            if (null == value && EnvironmentValueName.TIME_OFFSET_SLOT == slot) {
+                value = DEFAULT_TIME_OFFSET;
+            }
         } else {
-            final EnvironmentContextSharedMapValue<?> environmentContextSharedMapValue = this.values.get(name);
-            if (null != environmentContextSharedMapValue) {
-                value = environmentContextSharedMapValue.value;
+            if (NOW == name) {
+                value = this.hasNow.now();
             } else {
-                if (EnvironmentValueName.TIME_OFFSET.equals(name)) {
-                    value = DEFAULT_TIME_OFFSET;
-                } else {
-                    value = null;
-                }
+                final EnvironmentContextSharedMapValue<?> environmentContextSharedMapValue = this.values.get(name);
+                value = null != environmentContextSharedMapValue ?
+                    environmentContextSharedMapValue.value :
+                    null;
             }
         }
 
@@ -184,18 +243,49 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
 
     @Override
     public Set<EnvironmentValueName<?>> environmentValueNames() {
-        final Set<EnvironmentValueName<?>> names = SortedSets.tree();
+        Set<EnvironmentValueName<?>> names = this.names;
 
-        for (EnvironmentContextSharedMapValue<?> value : this.values.values()) {
-            names.add(
-                value.environmentValueName
-            );
+        if (null == names) {
+            final Set<EnvironmentValueName<?>> sorted = SortedSets.tree();
+
+            this.builtInNames(sorted);
+
+            for (EnvironmentContextSharedMapValue<?> value : this.values.values()) {
+                sorted.add(
+                    value.environmentValueName
+                );
+            }
+
+            sorted.add(EnvironmentValueName.NOW);
+            sorted.add(EnvironmentValueName.TIME_OFFSET);
+
+            names = Sets.readOnly(sorted);
+            this.names = names;
         }
 
-        names.add(EnvironmentValueName.NOW);
-        names.add(EnvironmentValueName.TIME_OFFSET);
+        return names;
+    }
+
+    /**
+     * A cache of the names, cleared whenever a name is added or removed, but not when a value is replaced.
+     */
+    private Set<EnvironmentValueName<?>> names;
+
+    private void builtInNames(final Set<EnvironmentValueName<?>> names) {
+        final Object[] builtIns = this.builtIns;
+
+        names.add(CHARSET);
+        names.add(CURRENCY);
+        names.add(INDENTATION);
+        names.add(LINE_ENDING);
+        names.add(LOCALE);
 
-        return Sets.readOnly(names);
+        if (null != builtIns[EnvironmentValueName.TIME_OFFSET_SLOT]) {
+            names.add(TIME_OFFSET);
+        }
+        if (null != builtIns[EnvironmentValueName.USER_SLOT]) {
+            names.add(USER);
+        }
     }
 
     @Override
@@ -204,43 +294,48 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
         Objects.requireNonNull(name, "name");
         Objects.requireNonNull(value, "value");
 
-        if (EnvironmentValueName.NOW.equals(name)) {
+        if (EnvironmentValueName.NOW == name) {
             throw name.readOnlyEnvironmentValueException();
         }
 
         final T oldValue;
 
-        final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values = this.values;
+        final int slot = name.slot;
+        if (EnvironmentValueName.NO_SLOT != slot) {
+            final Object[] builtIns = this.builtIns;
 
-        final EnvironmentContextSharedMapValue<T> environmentContextSharedMapValue = Cast.to(
-            values.get(name)
-        );
-        if (null == environmentContextSharedMapValue) {
-            this.values.put(
-                name,
-                EnvironmentContextSharedMapValue.with(
-                    name,
-                    value
-                )
-            );
-            oldValue = null;
+            oldValue = name.cast(builtIns[slot]);
+            builtIns[slot] = value;
+
+            if (null == oldValue) {
+                this.names = null;
+            }
         } else {
-            oldValue = environmentContextSharedMapValue.value;
-            environmentContextSharedMapValue.value = Cast.to(value);
+            final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values = this.values;
+
+            final EnvironmentContextSharedMapValue<T> environmentContextSharedMapValue = Cast.to(
+                values.get(name)
+            );
+            if (null == environmentContextSharedMapValue) {
+                values.put(
+                    name,
+                    EnvironmentContextSharedMapValue.with(
+                        name,
+                        value
+                    )
+                );
+                oldValue = null;
+                this.names = null;
+            } else {
+                oldValue = environmentContextSharedMapValue.value;
+                environmentContextSharedMapValue.value = Cast.to(value);
+            }
         }
 
         this.watchers.onValueChange(
-            Optional.ofNullable(
-                null != oldValue ?
-                    EnvironmentValueNameAndValue.with(
-                        name,
-                        oldValue
-                    ) :
-                    null
-            ),
-            Optional.of(
-                name.setValue(value)
-            )
+            name,
+            oldValue,
+            value
         );
     }
 
@@ -248,25 +343,43 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
     public void removeEnvironmentValue(final EnvironmentValueName<?> name) {
         Objects.requireNonNull(name, "name");
 
-        if (CHARSET.equals(name) || CURRENCY.equals(name) || INDENTATION.equals(name) || LINE_ENDING.equals(name) || LOCALE.equals(name) || NOW.equals(name)) {
-            throw name.readOnlyEnvironmentValueException();
+        final Object oldValue;
+
+        final int slot = name.slot;
+        switch (slot) {
+            case EnvironmentValueName.TIME_OFFSET_SLOT:
+            case EnvironmentValueName.USER_SLOT:
+                oldValue = this.builtIns[slot];
+                this.builtIns[slot] = null;
+                break;
+            case EnvironmentValueName.NO_SLOT:
+                if (NOW == name) {
+                    throw name.readOnlyEnvironmentValueException();
+                }
+
+                final EnvironmentContextSharedMapValue<?> removed = this.values.remove(name);
+                oldValue = null != removed ?
+                    removed.value :
+                    null;
+                break;
+            default:
+                throw name.readOnlyEnvironmentValueException();
         }
 
-        final Object oldValue = this.values.remove(name);
+        if (null != oldValue) {
+            this.names = null;
+        }
 
         this.watchers.onValueChange(
-            Optional.ofNullable(
-                null != oldValue ?
-                    EnvironmentValueNameAndValue.with(
-                        name,
-                        Cast.to(oldValue)
-                    ) :
-                    null
-            ),
-            Optional.empty()
+            name,
+            oldValue,
+            null
         );
     }
 
+    /**
+     * Only holds user-defined values, built-ins are held by {@link #builtIns}.
+     */
     // @VisibleForTesting
     final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values;
 
@@ -283,17 +396,30 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
 
     @Override
     public EnvironmentValueName<?> parseEnvironmentValueName(final String value) {
-        EnvironmentValueName<?> environmentValueName = EnvironmentValueName.parseEnvironmentValueName(value)
-            .orElse(null);
+        EnvironmentValueName<?> environmentValueName = EnvironmentValueName.constant(value);
         if (null == environmentValueName) {
-            environmentValueName = EnvironmentValueName.with(
-                value,
-                Object.class
-            );
-
-            EnvironmentContextSharedMapValue<?> environmentContextSharedMapValue = this.values.get(environmentValueName);
-            if (null != environmentContextSharedMapValue) {
-                environmentValueName = environmentContextSharedMapValue.environmentValueName;
+            final Map<EnvironmentValueName<?>, EnvironmentContextSharedMapValue<?>> values = this.values;
+
+            if (values instanceof EnvironmentValueNameHashMap) {
+                // probe without creating a name, only unknown names are created
+                final EnvironmentContextSharedMapValue<?> environmentContextSharedMapValue = Cast.<EnvironmentValueNameHashMap<EnvironmentContextSharedMapValue<?>>>to(values)
+                    .getIgnoringCase(value);
+                environmentValueName = null != environmentContextSharedMapValue ?
+                    environmentContextSharedMapValue.environmentValueName :
+                    EnvironmentValueName.with(
+                        value,
+                        Object.class
+                    );
+            } else {
+                environmentValueName = EnvironmentValueName.with(
+                    value,
+                    Object.class
+                );
+
+                final EnvironmentContextSharedMapValue<?> environmentContextSharedMapValue = values.get(environmentValueName);
+                if (null != environmentContextSharedMapValue) {
+                    environmentValueName = environmentContextSharedMapValue.environmentValueName;
+                }
             }
         }
 
@@ -309,6 +435,7 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
     @Override
     public int hashCode() {
         return Objects.hash(
+            Arrays.hashCode(this.builtIns),
             this.values,
             this.hasNow
         );
@@ -322,7 +449,8 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
     }
 
     private boolean equals0(final EnvironmentContextSharedMap other) {
-        return this.values.equals(other.values) &&
+        return Arrays.equals(this.builtIns, other.builtIns) &&
+            this.values.equals(other.values) &&
             this.hasNow.equals(other.hasNow);
     }
 
@@ -339,13 +467,37 @@ final class EnvironmentContextSharedMap extends EnvironmentContextShared
         b.append('{');
         b.separator(", ");
 
-        for (EnvironmentContextSharedMapValue<?> value : this.values.values()) {
-            b.label(value.environmentValueName.value());
-            b.value(
+        // merge the built-ins and user-defined values so they appear sorted by name
+        final Map<EnvironmentValueName<?>, Object> sorted = Maps.sorted();
+
+        final Object[] builtIns = this.builtIns;
+        final Set<EnvironmentValueName<?>> builtInNames = SortedSets.tree();
+        this.builtInNames(builtInNames);
+
+        for (final EnvironmentValueName<?> name : builtInNames) {
+            sorted.put(
+                name,
+                builtIns[name.slot]
+            );
+        }
+
+        for (final EnvironmentContextSharedMapValue<?> value : this.values.values()) {
+            sorted.put(
+                value.environmentValueName,
                 value.value
             );
         }
 
+        for (final Map.Entry<EnvironmentValueName<?>, Object> nameAndValue : sorted.entrySet()) {
+            b.label(
+                nameAndValue.getKey()
+                    .value()
+            );
+            b.value(
+                nameAndValue.getValue()
+            );
+        }
+
         b.append('}');
     }
 
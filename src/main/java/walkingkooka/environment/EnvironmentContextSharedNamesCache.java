@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Remembers the names computed from the most recent source names, for {@link EnvironmentContext} that wrap another.
+ * Wrapped contexts return the same names instance until a name is added or removed, which means repeated calls to
+ * {@link EnvironmentContext#environmentValueNames()} return the same instance without recomputing anything.
+ */
+final class EnvironmentContextSharedNamesCache {
+
+    static EnvironmentContextSharedNamesCache with(final Function<Set<EnvironmentValueName<?>>, Set<EnvironmentValueName<?>>> function) {
+        return new EnvironmentContextSharedNamesCache(function);
+    }
+
+    private EnvironmentContextSharedNamesCache(final Function<Set<EnvironmentValueName<?>>, Set<EnvironmentValueName<?>>> function) {
+        super();
+        this.function = function;
+    }
+
+    /**
+     * Returns the names computed from the given source names, reusing the previous result if the source is the same
+     * instance.
+     */
+    Set<EnvironmentValueName<?>> get(final Set<EnvironmentValueName<?>> source) {
+        Entry entry = this.entry;
+        if (null == entry || source != entry.source) {
+            entry = new Entry(
+                source,
+                this.function.apply(source)
+            );
+            this.entry = entry;
+        }
+        return entry.names;
+    }
+
+    private final Function<Set<EnvironmentValueName<?>>, Set<EnvironmentValueName<?>>> function;
+
+    /**
+     * The last source and result, held together so racing threads never see a mismatched pair.
+     */
+    private Entry entry;
+
+    private final static class Entry {
+
+        Entry(final Set<EnvironmentValueName<?>> source,
+              final Set<EnvironmentValueName<?>> names) {
+            this.source = source;
+            this.names = names;
+        }
+
+        final Set<EnvironmentValueName<?>> source;
+
+        final Set<EnvironmentValueName<?>> names;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        final Entry entry = this.entry;
+        return null != entry ?
+            entry.names.toString() :
+            "";
+    }
+}
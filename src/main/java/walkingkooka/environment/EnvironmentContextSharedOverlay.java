@@ -0,0 +1,373 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.Cast;
+import walkingkooka.ToStringBuilder;
+import walkingkooka.ToStringBuilderOption;
+import walkingkooka.UsesToStringBuilder;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.collect.set.SortedSets;
+import walkingkooka.text.printer.IndentingPrinter;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Consumer;
+
+/**
+ * A {@link EnvironmentContext} that reads through to a shared parent, holding only local overrides and tombstones for
+ * removed values. Updates never modify the parent, and parent events are only forwarded to watchers for names that
+ * are not shadowed by a local override or tombstone.
+ * <br>
+ * The watcher forwarding parent events is only added when the first watcher is added to this overlay and is removed
+ * along with the last watcher, including a once watcher that has fired, so overlays without watchers are never
+ * referenced by their parent.
+ */
+final class EnvironmentContextSharedOverlay extends EnvironmentContextShared
+    implements UsesToStringBuilder {
+
+    static EnvironmentContextSharedOverlay with(final EnvironmentContext parent) {
+        return new EnvironmentContextSharedOverlay(
+            Objects.requireNonNull(parent, "parent"),
+            Maps.sorted()
+        );
+    }
+
+    private EnvironmentContextSharedOverlay(final EnvironmentContext parent,
+                                            final SortedMap<EnvironmentValueName<?>, Object> local) {
+        super();
+
+        this.parent = parent;
+        this.local = local;
+        this.shared = EnvironmentWatchersShared.with(
+            this.watchers,
+            parent,
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    EnvironmentContextSharedOverlay.this.onParentValueChange(
+                        oldValue,
+                        newValue
+                    );
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    EnvironmentContextSharedOverlay.this.onParentValueChanges(changes);
+                }
+
+                @Override
+                public String toString() {
+                    return EnvironmentContextSharedOverlay.this.watchers.toString();
+                }
+            }
+        );
+    }
+
+    /**
+     * The clone shares the parent and copies the local overrides and tombstones.
+     */
+    @Override
+    public EnvironmentContext cloneEnvironment() {
+        final SortedMap<EnvironmentValueName<?>, Object> local = Maps.sorted();
+        local.putAll(this.local);
+
+        return new EnvironmentContextSharedOverlay(
+            this.parent,
+            local
+        );
+    }
+
+    /**
+     * Returns the given {@link EnvironmentContext}.
+     */
+    @Override
+    public EnvironmentContext setEnvironmentContext(final EnvironmentContext context) {
+        return Objects.requireNonNull(context, "context");
+    }
+
+    // EnvironmentContext...............................................................................................
+
+    @Override
+    public <T> Optional<T> environmentValue(final EnvironmentValueName<T> name) {
+        Objects.requireNonNull(name, "name");
+
+        final Optional<?> value;
+
+        final Object local = this.local.get(name);
+        if (null == local) {
+            value = this.parent.environmentValue(name);
+        } else {
+            if (TOMBSTONE == local) {
+                value = TIME_OFFSET.equals(name) ?
+                    Optional.of(DEFAULT_TIME_OFFSET) :
+                    Optional.empty();
+            } else {
+                value = Optional.of(local);
+            }
+        }
+
+        return Cast.to(value);
+    }
+
+    /**
+     * Returns the parent names when there are no local overrides or tombstones, otherwise merges both.
+     */
+    @Override
+    public Set<EnvironmentValueName<?>> environmentValueNames() {
+        final Set<EnvironmentValueName<?>> parentNames = this.parent.environmentValueNames();
+
+        final Set<EnvironmentValueName<?>> names;
+        if (this.local.isEmpty()) {
+            names = parentNames;
+        } else {
+            final SortedSet<EnvironmentValueName<?>> merged = SortedSets.tree();
+            merged.addAll(parentNames);
+
+            for (final Entry<EnvironmentValueName<?>, Object> nameAndValue : this.local.entrySet()) {
+                final EnvironmentValueName<?> name = nameAndValue.getKey();
+
+                if (TOMBSTONE == nameAndValue.getValue()) {
+                    if (false == TIME_OFFSET.equals(name)) {
+                        merged.remove(name);
+                    }
+                } else {
+                    merged.add(name);
+                }
+            }
+
+            names = Sets.readOnly(merged);
+        }
+
+        return names;
+    }
+
+    @Override
+    public <T> void setEnvironmentValue(final EnvironmentValueName<T> name,
+                                        final T value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        if (NOW.equals(name)) {
+            throw name.readOnlyEnvironmentValueException();
+        }
+
+        final Optional<?> oldValue = this.environmentValue(name);
+
+        this.local.remove(name); // replace any existing key with a different case
+        this.local.put(
+            name,
+            value
+        );
+
+        this.watchers.onValueChange(
+            name,
+            oldValue.orElse(null),
+            value
+        );
+    }
+
+    @Override
+    public void removeEnvironmentValue(final EnvironmentValueName<?> name) {
+        Objects.requireNonNull(name, "name");
+
+        if (NOW.equals(name) || CHARSET.equals(name) || CURRENCY.equals(name) || INDENTATION.equals(name) || LINE_ENDING.equals(name) || LOCALE.equals(name)) {
+            throw name.readOnlyEnvironmentValueException();
+        }
+
+        final Optional<?> oldValue = this.environmentValue(name);
+
+        this.local.remove(name);
+        this.local.put(
+            name,
+            TOMBSTONE
+        );
+
+        this.watchers.onValueChange(
+            name,
+            oldValue.orElse(null),
+            null
+        );
+    }
+
+    @Override
+    public void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        this.watchers.batch(
+            () -> updater.accept(this)
+        );
+    }
+
+    /**
+     * Marks a local removal hiding any parent value.
+     */
+    private final static Object TOMBSTONE = new Object();
+
+    // @VisibleForTesting
+    final EnvironmentContext parent;
+
+    /**
+     * Local overrides and tombstones, sorted which also ignores the case of names.
+     */
+    // @VisibleForTesting
+    final SortedMap<EnvironmentValueName<?>, Object> local;
+
+    // watchers.........................................................................................................
+
+    @Override
+    public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
+        return this.shared.add(watcher);
+    }
+
+    @Override
+    public Runnable addEnvironmentWatcherOnce(final EnvironmentWatcher watcher) {
+        return this.shared.addOnce(watcher);
+    }
+
+    @Override
+    public Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                          final EnvironmentWatcher watcher) {
+        return this.shared.add(
+            names,
+            watcher
+        );
+    }
+
+    /**
+     * Shares a single watcher forwarding parent events between all watchers of this overlay.
+     */
+    private final EnvironmentWatchersShared shared;
+
+    /**
+     * Forwards parent events for names without a local override or tombstone.
+     */
+    private void onParentValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                     final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        final EnvironmentValueName<?> name = oldValue.orElseGet(newValue::get)
+            .name();
+
+        if (false == this.local.containsKey(name)) {
+            this.watchers.onValueChange(
+                oldValue,
+                newValue
+            );
+        }
+    }
+
+    /**
+     * Forwards a parent batch as a single batch, filtering names with a local override or tombstone.
+     */
+    private void onParentValueChanges(final List<EnvironmentValueChange> changes) {
+        this.watchers.batch(
+            () -> {
+                for (final EnvironmentValueChange change : changes) {
+                    this.onParentValueChange(
+                        change.oldValue(),
+                        change.newValue()
+                    );
+                }
+            }
+        );
+    }
+
+    private final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Override
+    public EnvironmentValueName<?> parseEnvironmentValueName(final String value) {
+        EnvironmentValueName<?> environmentValueName = this.parent.parseEnvironmentValueName(value);
+
+        // local is sorted ignoring case, so the first key from the parent name is the local name if one exists
+        final SortedMap<EnvironmentValueName<?>, Object> tail = this.local.tailMap(environmentValueName);
+        if (false == tail.isEmpty()) {
+            final EnvironmentValueName<?> local = tail.firstKey();
+            if (local.compareTo(environmentValueName) == 0 && tail.get(local) != TOMBSTONE) {
+                environmentValueName = local;
+            }
+        }
+
+        return environmentValueName;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.parent,
+            this.local
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            (other instanceof EnvironmentContextSharedOverlay &&
+                this.equals0((EnvironmentContextSharedOverlay) other));
+    }
+
+    private boolean equals0(final EnvironmentContextSharedOverlay other) {
+        return this.parent.equals(other.parent) &&
+            this.local.equals(other.local);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.buildFrom(this);
+    }
+
+    // UsesToStringBuilder..............................................................................................
+
+    @Override
+    public void buildToString(final ToStringBuilder b) {
+        b.enable(ToStringBuilderOption.ESCAPE);
+        b.append('{');
+        b.separator(", ");
+
+        for (final EnvironmentValueName<?> name : this.environmentValueNames()) {
+            if (NOW.equals(name)) {
+                continue;
+            }
+
+            final Object value = this.environmentValue(name)
+                .orElse(null);
+            if (null != value) {
+                b.label(name.value());
+                b.value(value);
+            }
+        }
+
+        b.append('}');
+    }
+
+    // TreePrintable....................................................................................................
+
+    @Override
+    public void printTree(final IndentingPrinter printer) {
+        this.printTreeValues(printer);
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.ToStringBuilder;
+import walkingkooka.UsesToStringBuilder;
+import walkingkooka.datetime.HasNow;
+import walkingkooka.net.email.EmailAddress;
+import walkingkooka.text.Indentation;
+import walkingkooka.text.LineEnding;
+import walkingkooka.text.printer.IndentingPrinter;
+
+import java.nio.charset.Charset;
+import java.time.ZoneOffset;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A {@link EnvironmentContext} that holds all values in an immutable {@link EnvironmentContextSharedPersistentValues}.
+ * {@link #cloneEnvironment()} simply shares the current values, and updates only copy the path to the modified value.
+ */
+final class EnvironmentContextSharedPersistent extends EnvironmentContextShared
+    implements HasEnvironmentWatchers,
+    HasEnvironmentContextSnapshot,
+    UsesToStringBuilder {
+
+    static EnvironmentContextSharedPersistent with(final Charset charset,
+                                                   final Currency currency,
+                                                   final Indentation indentation,
+                                                   final LineEnding lineEnding,
+                                                   final Locale locale,
+                                                   final HasNow hasNow,
+                                                   final Optional<EmailAddress> user) {
+        Objects.requireNonNull(charset, "charset");
+        Objects.requireNonNull(currency, "currency");
+        Objects.requireNonNull(indentation, "indentation");
+        Objects.requireNonNull(lineEnding, "lineEnding");
+        Objects.requireNonNull(locale, "locale");
+        Objects.requireNonNull(hasNow, "hasNow");
+        Objects.requireNonNull(user, "user");
+
+        final Object[] builtIns = new Object[EnvironmentValueName.SLOT_COUNT];
+        builtIns[EnvironmentValueName.CHARSET_SLOT] = charset;
+        builtIns[EnvironmentValueName.CURRENCY_SLOT] = currency;
+        builtIns[EnvironmentValueName.INDENTATION_SLOT] = indentation;
+        builtIns[EnvironmentValueName.LINE_ENDING_SLOT] = lineEnding;
+        builtIns[EnvironmentValueName.LOCALE_SLOT] = locale;
+        builtIns[EnvironmentValueName.TIME_OFFSET_SLOT] = DEFAULT_TIME_OFFSET;
+        builtIns[EnvironmentValueName.USER_SLOT] = user.orElse(null);
+
+        return new EnvironmentContextSharedPersistent(
+            EnvironmentContextSharedPersistentValues.with(builtIns),
+            hasNow
+        );
+    }
+
+    /**
+     * Creates a new {@link EnvironmentContextSharedPersistent} starting with the given values.
+     */
+    static EnvironmentContextSharedPersistent withValues(final EnvironmentContextSharedPersistentValues values,
+                                                         final HasNow hasNow) {
+        return new EnvironmentContextSharedPersistent(
+            values,
+            hasNow
+        );
+    }
+
+    private EnvironmentContextSharedPersistent(final EnvironmentContextSharedPersistentValues values,
+                                               final HasNow hasNow) {
+        super();
+
+        this.values = values;
+        this.hasNow = hasNow;
+    }
+
+    /**
+     * The clone shares the current values, both will copy on their next update.
+     */
+    @Override
+    public EnvironmentContext cloneEnvironment() {
+        return new EnvironmentContextSharedPersistent(
+            this.values,
+            this.hasNow
+        );
+    }
+
+    /**
+     * The snapshot shares the current values.
+     */
+    @Override
+    public EnvironmentContextSnapshot snapshot() {
+        return EnvironmentContextSharedSnapshot.with(
+            this.values,
+            this.hasNow
+        );
+    }
+
+    /**
+     * Returns the given {@link EnvironmentContext}.
+     */
+    @Override
+    public EnvironmentContext setEnvironmentContext(final EnvironmentContext context) {
+        return Objects.requireNonNull(context, "context");
+    }
+
+    // built-ins........................................................................................................
+
+    @Override
+    public Charset charset() {
+        return (Charset) this.values.builtIns[EnvironmentValueName.CHARSET_SLOT];
+    }
+
+    @Override
+    public Currency currency() {
+        return (Currency) this.values.builtIns[EnvironmentValueName.CURRENCY_SLOT];
+    }
+
+    @Override
+    public Indentation indentation() {
+        return (Indentation) this.values.builtIns[EnvironmentValueName.INDENTATION_SLOT];
+    }
+
+    @Override
+    public LineEnding lineEnding() {
+        return (LineEnding) this.values.builtIns[EnvironmentValueName.LINE_ENDING_SLOT];
+    }
+
+    @Override
+    public Locale locale() {
+        return (Locale) this.values.builtIns[EnvironmentValueName.LOCALE_SLOT];
+    }
+
+    @Override
+    public ZoneOffset timeOffset() {
+        final ZoneOffset timeOffset = (ZoneOffset) this.values.builtIns[EnvironmentValueName.TIME_OFFSET_SLOT];
+        return null != timeOffset ?
+            timeOffset :
+            DEFAULT_TIME_OFFSET;
+    }
+
+    @Override
+    public Optional<EmailAddress> user() {
+        return Optional.ofNullable(
+            (EmailAddress) this.values.builtIns[EnvironmentValueName.USER_SLOT]
+        );
+    }
+
+    // EnvironmentContext...............................................................................................
+
+    @Override
+    public <T> Optional<T> environmentValue(final EnvironmentValueName<T> name) {
+        Objects.requireNonNull(name, "name");
+
+        Object value;
+
+        if (NOW == name) {
+            value = this.hasNow.now();
+        } else {
+            value = this.values.get(name);
+            if (null == value && TIME_OFFSET == name) {
+                value = DEFAULT_TIME_OFFSET;
+            }
+        }
+
+        return Optional.ofNullable(
+            name.cast(value)
+        );
+    }
+
+    private final HasNow hasNow;
+
+    @Override
+    public Set<EnvironmentValueName<?>> environmentValueNames() {
+        return this.values.names();
+    }
+
+    @Override
+    public <T> void setEnvironmentValue(final EnvironmentValueName<T> name,
+                                        final T value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        if (NOW == name) {
+            throw name.readOnlyEnvironmentValueException();
+        }
+
+        final EnvironmentContextSharedPersistentValues values = this.values;
+        final T oldValue = name.cast(
+            values.get(name)
+        );
+
+        this.values = values.set(
+            name,
+            value
+        );
+
+        this.watchers.onValueChange(
+            name,
+            oldValue,
+            value
+        );
+    }
+
+    @Override
+    public void removeEnvironmentValue(final EnvironmentValueName<?> name) {
+        Objects.requireNonNull(name, "name");
+
+        switch (name.slot) {
+            case EnvironmentValueName.TIME_OFFSET_SLOT:
+            case EnvironmentValueName.USER_SLOT:
+                break;
+            case EnvironmentValueName.NO_SLOT:
+                if (NOW == name) {
+                    throw name.readOnlyEnvironmentValueException();
+                }
+                break;
+            default:
+                throw name.readOnlyEnvironmentValueException();
+        }
+
+        final EnvironmentContextSharedPersistentValues values = this.values;
+        final Object oldValue = values.get(name);
+
+        this.values = values.remove(name);
+
+        this.watchers.onValueChange(
+            name,
+            oldValue,
+            null
+        );
+    }
+
+    /**
+     * The current values, which are replaced and never modified by updates.
+     */
+    // @VisibleForTesting
+    EnvironmentContextSharedPersistentValues values;
+
+    // HasEnvironmentWatchers...........................................................................................
+
+    @Override
+    public EnvironmentWatchers environmentValueWatchers() {
+        return this.watchers;
+    }
+
+    private final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Override
+    public EnvironmentValueName<?> parseEnvironmentValueName(final String value) {
+        EnvironmentValueName<?> environmentValueName = EnvironmentValueName.constant(value);
+        if (null == environmentValueName) {
+            // probe without creating a name, only unknown names are created
+            environmentValueName = this.values
+                .keyIgnoringCase(value);
+            if (null == environmentValueName) {
+                environmentValueName = EnvironmentValueName.with(
+                    value,
+                    Object.class
+                );
+            }
+        }
+
+        return environmentValueName;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.values,
+            this.hasNow
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            (other instanceof EnvironmentContextSharedPersistent &&
+                this.equals0((EnvironmentContextSharedPersistent) other));
+    }
+
+    private boolean equals0(final EnvironmentContextSharedPersistent other) {
+        return this.values.equals(other.values) &&
+            this.hasNow.equals(other.hasNow);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.buildFrom(this);
+    }
+
+    // UsesToStringBuilder..............................................................................................
+
+    @Override
+    public void buildToString(final ToStringBuilder b) {
+        this.values.buildToString(b);
+    }
+
+    // TreePrintable....................................................................................................
+
+    @Override
+    public void printTree(final IndentingPrinter printer) {
+        this.printTreeValues(printer);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.ToStringBuilder;
+import walkingkooka.ToStringBuilderOption;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.collect.set.SortedSets;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable snapshot of all values, the built-in values in slots and user-defined values within a
+ * {@link EnvironmentValueNameTrie}. Updates return a new instance sharing everything that was not changed.
+ */
+final class EnvironmentContextSharedPersistentValues {
+
+    static EnvironmentContextSharedPersistentValues with(final Object[] builtIns) {
+        return new EnvironmentContextSharedPersistentValues(
+            builtIns,
+            EnvironmentValueNameTrie.empty(),
+            0,
+            null
+        );
+    }
+
+    private EnvironmentContextSharedPersistentValues(final Object[] builtIns,
+                                                     final EnvironmentValueNameTrie<Object> values,
+                                                     final long version,
+                                                     final Set<EnvironmentValueName<?>> names) {
+        super();
+        this.builtIns = builtIns;
+        this.values = values;
+        this.version = version;
+        this.names = names;
+    }
+
+    /**
+     * Returns the value for the given name or null, {@link EnvironmentValueName#NOW} is never present.
+     */
+    Object get(final EnvironmentValueName<?> name) {
+        final int slot = name.slot;
+        return EnvironmentValueName.NO_SLOT != slot ?
+            this.builtIns[slot] :
+            this.values.get(name);
+    }
+
+    /**
+     * Returns the original user-defined {@link EnvironmentValueName} with the given name ignoring case or null.
+     */
+    EnvironmentValueName<?> keyIgnoringCase(final CharSequence name) {
+        return this.values.keyIgnoringCase(name);
+    }
+
+    EnvironmentContextSharedPersistentValues set(final EnvironmentValueName<?> name,
+                                                 final Object value) {
+        final EnvironmentContextSharedPersistentValues result;
+
+        final int slot = name.slot;
+        if (EnvironmentValueName.NO_SLOT != slot) {
+            if (value == this.builtIns[slot]) {
+                result = this;
+            } else {
+                final Object[] builtIns = this.builtIns.clone();
+                builtIns[slot] = value;
+
+                result = new EnvironmentContextSharedPersistentValues(
+                    builtIns,
+                    this.values,
+                    this.version + 1,
+                    null != this.builtIns[slot] && null != value ?
+                        this.names : // replaced keep names
+                        null
+                );
+            }
+        } else {
+            final EnvironmentValueNameTrie<Object> values = this.values.put(
+                name,
+                value
+            );
+            result = values == this.values ?
+                this :
+                new EnvironmentContextSharedPersistentValues(
+                    this.builtIns,
+                    values,
+                    this.version + 1,
+                    values.size() == this.values.size() ?
+                        this.names : // replaced keep names
+                        null
+                );
+        }
+
+        return result;
+    }
+
+    EnvironmentContextSharedPersistentValues remove(final EnvironmentValueName<?> name) {
+        final EnvironmentContextSharedPersistentValues result;
+
+        if (EnvironmentValueName.NO_SLOT != name.slot) {
+            result = this.set(
+                name,
+                null
+            );
+        } else {
+            final EnvironmentValueNameTrie<Object> values = this.values.remove(name);
+            result = values == this.values ?
+                this :
+                new EnvironmentContextSharedPersistentValues(
+                    this.builtIns,
+                    values,
+                    this.version + 1,
+                    null
+                );
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a read only sorted {@link Set} with the names of all present values, including
+     * {@link EnvironmentValueName#NOW} and {@link EnvironmentValueName#TIME_OFFSET} which are always present.
+     */
+    Set<EnvironmentValueName<?>> names() {
+        Set<EnvironmentValueName<?>> names = this.names;
+
+        if (null == names) {
+            final Set<EnvironmentValueName<?>> sorted = SortedSets.tree();
+
+            this.forEach(
+                (n, v) -> sorted.add(n)
+            );
+
+            sorted.add(EnvironmentValueName.NOW);
+            sorted.add(EnvironmentValueName.TIME_OFFSET);
+
+            names = Sets.readOnly(sorted);
+            this.names = names;
+        }
+
+        return names;
+    }
+
+    /**
+     * Lazily computed and shared with updates that only replace values.
+     */
+    private Set<EnvironmentValueName<?>> names;
+
+    /**
+     * Visits all present built-in and user-defined values in no particular order.
+     */
+    void forEach(final BiConsumer<EnvironmentValueName<?>, Object> consumer) {
+        final Object[] builtIns = this.builtIns;
+
+        for (final EnvironmentValueName<?> name : BUILT_INS) {
+            final Object value = builtIns[name.slot];
+            if (null != value) {
+                consumer.accept(
+                    name,
+                    value
+                );
+            }
+        }
+
+        this.values.forEach(consumer);
+    }
+
+    private final static EnvironmentValueName<?>[] BUILT_INS = new EnvironmentValueName<?>[]{
+        EnvironmentValueName.CHARSET,
+        EnvironmentValueName.CURRENCY,
+        EnvironmentValueName.INDENTATION,
+        EnvironmentValueName.LINE_ENDING,
+        EnvironmentValueName.LOCALE,
+        EnvironmentValueName.TIME_OFFSET,
+        EnvironmentValueName.USER
+    };
+
+    /**
+     * Never modified, a new array is created whenever a built-in value changes.
+     */
+    final Object[] builtIns;
+
+    private final EnvironmentValueNameTrie<Object> values;
+
+    /**
+     * Incremented by every update that produces a new instance, and ignored by {@link #equals(Object)}.
+     */
+    final long version;
+
+    /**
+     * Appends all values sorted by name.
+     */
+    void buildToString(final ToStringBuilder b) {
+        b.enable(ToStringBuilderOption.ESCAPE);
+        b.append('{');
+        b.separator(", ");
+
+        final Map<EnvironmentValueName<?>, Object> sorted = Maps.sorted();
+        this.forEach(sorted::put);
+
+        for (final Map.Entry<EnvironmentValueName<?>, Object> nameAndValue : sorted.entrySet()) {
+            b.label(
+                nameAndValue.getKey()
+                    .value()
+            );
+            b.value(
+                nameAndValue.getValue()
+            );
+        }
+
+        b.append('}');
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            Arrays.hashCode(this.builtIns),
+            this.values
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof EnvironmentContextSharedPersistentValues && this.equals0((EnvironmentContextSharedPersistentValues) other);
+    }
+
+    private boolean equals0(final EnvironmentContextSharedPersistentValues other) {
+        return Arrays.equals(this.builtIns, other.builtIns) &&
+            this.values.equals(other.values);
+    }
+}
@@ -18,6 +18,7 @@
 package walkingkooka.environment;
 
 import walkingkooka.Cast;
+import walkingkooka.collect.set.Sets;
 import walkingkooka.collect.set.SortedSets;
 import walkingkooka.net.email.EmailAddress;
 import walkingkooka.text.CharSequences;
@@ -34,6 +35,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.Consumer;
 
 /**
  * A {@link EnvironmentContext} that expects and removes a prefix before performing a lookup.
@@ -74,7 +76,16 @@ final class EnvironmentContextSharedPrefixed extends EnvironmentContextShared {
                                              final EnvironmentContext context) {
         super();
         this.prefix = prefix;
+        this.unprefixed = EnvironmentContextSharedPrefixedNameCache.with(prefix);
         this.context = context;
+        this.shared = EnvironmentWatchersShared.with(
+            this.watchers,
+            context,
+            EnvironmentContextSharedPrefixedEnvironmentWatcher.with(
+                prefix,
+                this.watchers
+            )
+        );
     }
 
     // EnvironmentContext...............................................................................................
@@ -98,73 +109,34 @@ final class EnvironmentContextSharedPrefixed extends EnvironmentContextShared {
     public <T> Optional<T> environmentValue(final EnvironmentValueName<T> name) {
         Objects.requireNonNull(name, "name");
 
-        Optional<?> value;
+        final Optional<?> value;
 
-        final String prefix = this.prefix;
-        if (name.value().startsWith(prefix)) {
-            value = this.context.environmentValue(
-                EnvironmentValueName.with(
-                    name.value()
-                        .substring(prefix.length()),
-                    name.type()
-                )
-            );
+        final EnvironmentValueName<T> unprefixed = this.unprefixed.removePrefix(name);
+        if (null != unprefixed) {
+            value = this.context.environmentValue(unprefixed);
         } else {
-            if (CHARSET.equals(name)) {
-                value = Optional.of(
-                    this.context.charset()
-                );
+            // built-ins are not prefixed
+            if (EnvironmentValueName.NO_SLOT != name.slot || NOW == name) {
+                value = this.context.environmentValue(name);
             } else {
-                if (CURRENCY.equals(name)) {
-                    value = Optional.of(
-                        this.context.currency()
-                    );
-                } else {
-                    if (INDENTATION.equals(name)) {
-                        value = Optional.of(
-                            this.context.indentation()
-                        );
-                    } else {
-                        if (LINE_ENDING.equals(name)) {
-                            value = Optional.of(
-                                this.context.lineEnding()
-                            );
-                        } else {
-                            if (LOCALE.equals(name)) {
-                                value = Optional.of(
-                                    this.context.locale()
-                                );
-                            } else {
-                                if (NOW.equals(name)) {
-                                    value = Optional.of(
-                                        this.context.now()
-                                    );
-                                } else {
-                                    if (TIME_OFFSET.equals(name)) {
-                                        value = Optional.of(
-                                            this.context.timeOffset()
-                                        );
-                                    } else {
-                                        if (USER.equals(name)) {
-                                            value = this.context.user();
-                                        } else {
-                                            value = Optional.empty();
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+                value = Optional.empty();
             }
         }
 
         return Cast.to(value);
     }
 
-    // assumes the wrapped EnvironmentContext is immutable.
+    /**
+     * The names are only recomputed when the wrapped {@link EnvironmentContext} returns different names.
+     */
     @Override
     public Set<EnvironmentValueName<?>> environmentValueNames() {
+        return this.names.get(
+            this.context.environmentValueNames()
+        );
+    }
+
+    private Set<EnvironmentValueName<?>> prefixNames(final Set<EnvironmentValueName<?>> contextNames) {
         final SortedSet<EnvironmentValueName<?>> names = SortedSets.tree();
 
         names.add(CHARSET);
@@ -175,12 +147,12 @@ final class EnvironmentContextSharedPrefixed extends EnvironmentContextShared {
         names.add(NOW);
         names.add(TIME_OFFSET);
 
-        if (this.user().isPresent()) {
-            names.add(USER);
-        }
-
-        for (final EnvironmentValueName<?> name : this.context.environmentValueNames()) {
-            if (CHARSET.equals(name) || CURRENCY.equals(name) || INDENTATION.equals(name) || LINE_ENDING.equals(name) || LOCALE.equals(name) || TIME_OFFSET.equals(name) || USER.equals(name)) {
+        for (final EnvironmentValueName<?> name : contextNames) {
+            if (CHARSET.equals(name) || CURRENCY.equals(name) || INDENTATION.equals(name) || LINE_ENDING.equals(name) || LOCALE.equals(name) || TIME_OFFSET.equals(name)) {
+                continue;
+            }
+            if (USER.equals(name)) {
+                names.add(USER);
                 continue;
             }
             names.add(
@@ -190,12 +162,19 @@ final class EnvironmentContextSharedPrefixed extends EnvironmentContextShared {
                 )
             );
         }
-        return names;
+        return Sets.readOnly(names);
     }
 
+    private final EnvironmentContextSharedNamesCache names = EnvironmentContextSharedNamesCache.with(this::prefixNames);
+
     // @VisibleForTesting
     final String prefix;
 
+    /**
+     * Remembers names with {@link #prefix} removed, so repeated lookups of the same names allocate nothing.
+     */
+    private final EnvironmentContextSharedPrefixedNameCache unprefixed;
+
     @Override
     public <T> void setEnvironmentValue(final EnvironmentValueName<T> name,
                                         final T value) {
@@ -242,26 +221,121 @@ final class EnvironmentContextSharedPrefixed extends EnvironmentContextShared {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Built-in values are forwarded to the wrapped {@link EnvironmentContext} so they remain atomic.
+     */
     @Override
-    public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
-        return this.context.addEnvironmentWatcher(
-            EnvironmentContextSharedPrefixedEnvironmentWatcher.with(
-                this.prefix,
-                watcher
+    public <T> Optional<T> setEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                       final T value) {
+        Objects.requireNonNull(name, "name");
+
+        return EnvironmentValueName.NO_SLOT != name.slot ?
+            this.context.setEnvironmentValueIfAbsent(
+                name,
+                value
+            ) :
+            super.setEnvironmentValueIfAbsent(
+                name,
+                value
+            );
+    }
+
+    @Override
+    public <T> boolean compareAndSetEnvironmentValue(final EnvironmentValueName<T> name,
+                                                     final Optional<T> expected,
+                                                     final Optional<T> value) {
+        Objects.requireNonNull(name, "name");
+
+        return EnvironmentValueName.NO_SLOT != name.slot ?
+            this.context.compareAndSetEnvironmentValue(
+                name,
+                expected,
+                value
+            ) :
+            super.compareAndSetEnvironmentValue(
+                name,
+                expected,
+                value
+            );
+    }
+
+    /**
+     * The updates are applied to the same prefixed view over the {@link EnvironmentContext} given by the wrapped
+     * context, so they share its batch.
+     */
+    @Override
+    public void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        this.context.update(
+            (c) -> updater.accept(
+                c == this.context ?
+                    this :
+                    new EnvironmentContextSharedPrefixed(
+                        this.prefix,
+                        c
+                    )
             )
         );
     }
 
+    @Override
+    public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
+        return this.shared.add(watcher);
+    }
+
     @Override
     public Runnable addEnvironmentWatcherOnce(final EnvironmentWatcher watcher) {
-        return this.context.addEnvironmentWatcherOnce(
-            EnvironmentContextSharedPrefixedEnvironmentWatcher.with(
-                this.prefix,
-                watcher
-            )
-        );
+        return this.shared.addOnce(watcher);
     }
 
+    private final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+
+    /**
+     * All watchers of this view share a single watcher on the wrapped {@link EnvironmentContext}, so each change is
+     * only prefixed once for this view, no matter how many watchers it has.
+     */
+    private final EnvironmentWatchersShared shared;
+
+    /**
+     * Built-in names are watched as is, other names must include the prefix, which is removed before watching the
+     * wrapped {@link EnvironmentContext}.
+     */
+    @Override
+    public Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                          final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(names, "names");
+        Objects.requireNonNull(watcher, "watcher");
+
+        final Set<EnvironmentValueName<?>> unprefixed = Sets.ordered();
+        for (final EnvironmentValueName<?> name : names) {
+            if (EnvironmentValueName.NO_SLOT != name.slot || NOW == name) {
+                unprefixed.add(name);
+            } else {
+                final EnvironmentValueName<?> removed = this.unprefixed.removePrefix(name);
+                if (null != removed) {
+                    unprefixed.add(removed);
+                }
+            }
+        }
+
+        return unprefixed.isEmpty() ?
+            NO_REMOVE :
+            this.context.addEnvironmentWatcher(
+                unprefixed,
+                EnvironmentContextSharedPrefixedEnvironmentWatcher.with(
+                    this.prefix,
+                    watcher
+                )
+            );
+    }
+
+    /**
+     * Returned when none of the watched names can ever change.
+     */
+    private final static Runnable NO_REMOVE = () -> {
+    };
+
     // CanParseEnvironmentValueName.....................................................................................
 
     @Override
@@ -18,12 +18,15 @@
 package walkingkooka.environment;
 
 import walkingkooka.Cast;
+import walkingkooka.collect.list.Lists;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
 /**
  * A {@link EnvironmentWatcher} that handles fixing the {@link EnvironmentValueName} before firing to the target.
+ * Built-in names are not prefixed.
  */
 final class EnvironmentContextSharedPrefixedEnvironmentWatcher implements EnvironmentWatcher {
 
@@ -50,14 +53,28 @@ final class EnvironmentContextSharedPrefixedEnvironmentWatcher implements Enviro
         );
     }
 
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        final List<EnvironmentValueChange> prefixed = Lists.array();
+
+        for (final EnvironmentValueChange change : changes) {
+            prefixed.add(
+                EnvironmentValueChange.with(
+                    this.maybePrefixName(change.oldValue()),
+                    this.maybePrefixName(change.newValue())
+                )
+            );
+        }
+
+        this.watcher.onValueChanges(prefixed);
+    }
+
     private Optional<EnvironmentValueNameAndValue<?>> maybePrefixName(final Optional<EnvironmentValueNameAndValue<?>> value) {
         return value.map(
             nv -> {
                 EnvironmentValueName<?> name = nv.name();
 
-                if(name.equals(EnvironmentContext.CURRENCY) || name.equals(EnvironmentContext.INDENTATION) || name.equals(EnvironmentContext.LINE_ENDING) || name.equals(EnvironmentContext.LOCALE) || name.equals(EnvironmentContext.TIME_OFFSET) || name.equals(EnvironmentContext.USER)) {
-                    // nop
-                } else {
+                if (EnvironmentValueName.NO_SLOT == name.slot) {
                     name = EnvironmentValueName.with(
                         this.prefix + name.value(),
                         name.type()
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.Cast;
+
+/**
+ * Remembers names with the prefix of a {@link EnvironmentContextSharedPrefixed} removed, so repeated lookups through
+ * the same view allocate nothing. Recent names are held in a small direct mapped table of immutable entries, racing
+ * threads may replace each other's entries but never see a mismatched name and result.
+ */
+final class EnvironmentContextSharedPrefixedNameCache {
+
+    /**
+     * Must be a power of two.
+     */
+    private final static int SIZE = 64;
+
+    static EnvironmentContextSharedPrefixedNameCache with(final String prefix) {
+        return new EnvironmentContextSharedPrefixedNameCache(prefix);
+    }
+
+    private EnvironmentContextSharedPrefixedNameCache(final String prefix) {
+        super();
+        this.prefix = prefix;
+    }
+
+    /**
+     * Returns the name without the prefix, or null if the name does not start with the prefix.
+     */
+    <T> EnvironmentValueName<T> removePrefix(final EnvironmentValueName<T> name) {
+        final Entry[] entries = this.entries;
+        final int index = name.caseFolded.hashCode() & (SIZE - 1);
+
+        Entry entry = entries[index];
+        if (null == entry || name != entry.name) {
+            entry = new Entry(
+                name,
+                name.removePrefix(this.prefix)
+            );
+            entries[index] = entry;
+        }
+
+        return Cast.to(entry.unprefixed);
+    }
+
+    private final String prefix;
+
+    private final Entry[] entries = new Entry[SIZE];
+
+    private final static class Entry {
+
+        Entry(final EnvironmentValueName<?> name,
+              final EnvironmentValueName<?> unprefixed) {
+            this.name = name;
+            this.unprefixed = unprefixed;
+        }
+
+        final EnvironmentValueName<?> name;
+
+        /**
+         * The name without the prefix or null if the prefix was absent.
+         */
+        final EnvironmentValueName<?> unprefixed;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.prefix;
+    }
+}
@@ -21,6 +21,7 @@ import walkingkooka.Cast;
 import walkingkooka.collect.map.Maps;
 import walkingkooka.collect.set.Sets;
 import walkingkooka.collect.set.SortedSets;
+import walkingkooka.convert.ConverterContext;
 import walkingkooka.net.email.EmailAddress;
 import walkingkooka.props.Properties;
 import walkingkooka.props.PropertiesPath;
@@ -39,24 +40,96 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * An {@link EnvironmentContext} that sources all values from a given {@link Properties}.
+ * <br>
+ * The property values are indexed by their case folded key text once, so lookups never parse a {@link PropertiesPath}
+ * and ignore case like {@link EnvironmentValueName}. Keys that only differ by case are only found by their exact text. When a {@link ConverterContext} is present, values are converted
+ * to the {@link EnvironmentValueName#type()} and remembered, otherwise the raw {@link String} is returned.
  */
 final class EnvironmentContextSharedProperties extends EnvironmentContextShared {
 
     static EnvironmentContextSharedProperties with(final Properties properties,
                                                    final EnvironmentContext context) {
+        return with(
+            properties,
+            null,
+            context
+        );
+    }
+
+    static EnvironmentContextSharedProperties with(final Properties properties,
+                                                   final ConverterContext converterContext,
+                                                   final EnvironmentContext context) {
+        Objects.requireNonNull(properties, "properties");
+        Objects.requireNonNull(context, "context");
+
+        final Map<String, EnvironmentContextSharedPropertiesValue> values = Maps.hash();
+        Set<String> collisions = null;
+
+        for (final Entry<PropertiesPath, String> entry : properties.entries()) {
+            final String caseFolded = EnvironmentValueName.caseFold(
+                entry.getKey()
+                    .value()
+            );
+
+            final EnvironmentContextSharedPropertiesValue previous = values.put(
+                caseFolded,
+                EnvironmentContextSharedPropertiesValue.with(
+                    entry.getValue()
+                )
+            );
+            if (null != previous) {
+                if (null == collisions) {
+                    collisions = Sets.hash();
+                }
+                collisions.add(caseFolded);
+            }
+        }
+
+        // keys that only differ by case are only found by their exact text, so the result never depends on entry order
+        Map<String, EnvironmentContextSharedPropertiesValue> exact = null;
+        if (null != collisions) {
+            exact = Maps.hash();
+
+            for (final Entry<PropertiesPath, String> entry : properties.entries()) {
+                final String key = entry.getKey()
+                    .value();
+                final String caseFolded = EnvironmentValueName.caseFold(key);
+
+                if (collisions.contains(caseFolded)) {
+                    values.remove(caseFolded);
+                    exact.put(
+                        key,
+                        EnvironmentContextSharedPropertiesValue.with(
+                            entry.getValue()
+                        )
+                    );
+                }
+            }
+        }
+
         return new EnvironmentContextSharedProperties(
-            Objects.requireNonNull(properties, "properties"),
-            Objects.requireNonNull(context, "context")
+            properties,
+            values,
+            exact,
+            converterContext,
+            context
         );
     }
 
     private EnvironmentContextSharedProperties(final Properties properties,
+                                               final Map<String, EnvironmentContextSharedPropertiesValue> values,
+                                               final Map<String, EnvironmentContextSharedPropertiesValue> exact,
+                                               final ConverterContext converterContext,
                                                final EnvironmentContext context) {
         super();
         this.properties = properties;
+        this.values = values;
+        this.exact = exact;
+        this.converterContext = converterContext;
         this.context = context;
     }
 
@@ -67,8 +140,11 @@ final class EnvironmentContextSharedProperties extends EnvironmentContextShared
 
         return before == after ?
             this :
-            with(
+            new EnvironmentContextSharedProperties(
                 this.properties, // immutable no need to clone
+                this.values, // only holds memoised conversions
+                this.exact,
+                this.converterContext,
                 after
             );
     }
@@ -122,8 +198,14 @@ final class EnvironmentContextSharedProperties extends EnvironmentContextShared
                                     if (USER.equals(name)) {
                                         value = this.context.user();
                                     } else {
-                                        value = this.properties.get(
-                                            PropertiesPath.parse(name.value())
+                                        final EnvironmentContextSharedPropertiesValue propertiesValue = this.propertiesValue(name);
+                                        value = Optional.ofNullable(
+                                            null != propertiesValue ?
+                                                propertiesValue.value(
+                                                    name.type(),
+                                                    this.converterContext
+                                                ) :
+                                                null
                                         );
                                     }
                                 }
@@ -137,24 +219,60 @@ final class EnvironmentContextSharedProperties extends EnvironmentContextShared
         return Cast.to(value);
     }
 
+    private EnvironmentContextSharedPropertiesValue propertiesValue(final EnvironmentValueName<?> name) {
+        EnvironmentContextSharedPropertiesValue value = this.values.get(name.caseFolded);
+        if (null == value) {
+            final Map<String, EnvironmentContextSharedPropertiesValue> exact = this.exact;
+            if (null != exact) {
+                value = exact.get(
+                    name.value()
+                );
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The property names are computed once, and only merged again when the wrapped {@link EnvironmentContext} returns
+     * different names.
+     */
     @Override
     public Set<EnvironmentValueName<?>> environmentValueNames() {
-        final Set<EnvironmentValueName<?>> names = SortedSets.tree();
+        return this.names.get(
+            this.context.environmentValueNames()
+        );
+    }
 
-        this.properties.keys()
-            .stream()
-            .map(p -> EnvironmentValueName.with(
-                    p.value(),
-                    String.class
-                )
-            ).forEach(names::add);
+    private Set<EnvironmentValueName<?>> mergeNames(final Set<EnvironmentValueName<?>> contextNames) {
+        Set<EnvironmentValueName<?>> propertyNames = this.propertyNames;
+        if (null == propertyNames) {
+            propertyNames = SortedSets.tree();
+
+            for (final PropertiesPath path : this.properties.keys()) {
+                propertyNames.add(
+                    EnvironmentValueName.with(
+                        path.value(),
+                        String.class
+                    )
+                );
+            }
 
-        names.addAll(this.context.environmentValueNames());
+            this.propertyNames = propertyNames;
+        }
+
+        final Set<EnvironmentValueName<?>> names = SortedSets.tree();
+        names.addAll(propertyNames);
+        names.addAll(contextNames);
 
         return Sets.immutable(names);
     }
 
-    private Set<EnvironmentValueName<?>> names;
+    private final EnvironmentContextSharedNamesCache names = EnvironmentContextSharedNamesCache.with(this::mergeNames);
+
+    /**
+     * The properties are immutable so their names are computed once.
+     */
+    private Set<EnvironmentValueName<?>> propertyNames;
 
     @Override
     public <T> void setEnvironmentValue(final EnvironmentValueName<T> name,
@@ -212,10 +330,91 @@ final class EnvironmentContextSharedProperties extends EnvironmentContextShared
         }
     }
 
-    private final Properties properties;
+    /**
+     * The source properties, also read by {@link EnvironmentContextSharedPropertiesFile} to find changes on reload.
+     */
+    final Properties properties;
+
+    /**
+     * The property values indexed by the case folded text of their {@link PropertiesPath}, as
+     * {@link EnvironmentValueName} ignore case.
+     */
+    private final Map<String, EnvironmentContextSharedPropertiesValue> values;
+
+    /**
+     * The property values with keys that only differ by case, indexed by the exact text of their
+     * {@link PropertiesPath}, null when there are none.
+     */
+    private final Map<String, EnvironmentContextSharedPropertiesValue> exact;
+
+    /**
+     * When present values are converted to the type of the {@link EnvironmentValueName}.
+     */
+    // @VisibleForTesting
+    final ConverterContext converterContext;
 
     private final EnvironmentContext context;
 
+    /**
+     * Built-in values are forwarded to the wrapped {@link EnvironmentContext} so they remain atomic.
+     */
+    @Override
+    public <T> Optional<T> setEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                       final T value) {
+        Objects.requireNonNull(name, "name");
+
+        return EnvironmentValueName.NO_SLOT != name.slot ?
+            this.context.setEnvironmentValueIfAbsent(
+                name,
+                value
+            ) :
+            super.setEnvironmentValueIfAbsent(
+                name,
+                value
+            );
+    }
+
+    @Override
+    public <T> boolean compareAndSetEnvironmentValue(final EnvironmentValueName<T> name,
+                                                     final Optional<T> expected,
+                                                     final Optional<T> value) {
+        Objects.requireNonNull(name, "name");
+
+        return EnvironmentValueName.NO_SLOT != name.slot ?
+            this.context.compareAndSetEnvironmentValue(
+                name,
+                expected,
+                value
+            ) :
+            super.compareAndSetEnvironmentValue(
+                name,
+                expected,
+                value
+            );
+    }
+
+    /**
+     * The updates are applied to the same properties over the {@link EnvironmentContext} given by the wrapped context.
+     */
+    @Override
+    public void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        this.context.update(
+            (c) -> updater.accept(
+                c == this.context ?
+                    this :
+                    new EnvironmentContextSharedProperties(
+                        this.properties,
+                        this.values,
+                        this.exact,
+                        this.converterContext,
+                        c
+                    )
+            )
+        );
+    }
+
     @Override
     public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
         return this.context.addEnvironmentWatcher(watcher);
@@ -226,6 +425,15 @@ final class EnvironmentContextSharedProperties extends EnvironmentContextShared
         return this.context.addEnvironmentWatcherOnce(watcher);
     }
 
+    @Override
+    public Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                          final EnvironmentWatcher watcher) {
+        return this.context.addEnvironmentWatcher(
+            names,
+            watcher
+        );
+    }
+
     // CanParseEnvironmentValueName.....................................................................................
 
     @Override
@@ -249,6 +457,7 @@ final class EnvironmentContextSharedProperties extends EnvironmentContextShared
 
     private boolean equals0(final EnvironmentContextSharedProperties other) {
         return this.properties.equals(other.properties) &&
+            Objects.equals(this.converterContext, other.converterContext) &&
             this.context.equals(other.context);
     }
 
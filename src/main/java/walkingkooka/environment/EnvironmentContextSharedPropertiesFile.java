@@ -0,0 +1,412 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.props.Properties;
+import walkingkooka.props.PropertiesPath;
+import walkingkooka.text.printer.IndentingPrinter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * A {@link FileEnvironmentContext} that sources values from a properties file, and wraps a
+ * {@link EnvironmentContextSharedProperties} which is replaced on every reload. The file is read through a memory
+ * mapped buffer, and readers continue to use the previous values until the new values are published.
+ * <br>
+ * Reloading compares the old and new properties and fires watchers only for keys that were added, removed or whose
+ * value changed. A missing file is treated as empty.
+ */
+final class EnvironmentContextSharedPropertiesFile extends EnvironmentContextShared
+    implements FileEnvironmentContext {
+
+    static EnvironmentContextSharedPropertiesFile with(final Path file,
+                                                       final Charset charset,
+                                                       final EnvironmentContext context) throws IOException {
+        Objects.requireNonNull(file, "file");
+        Objects.requireNonNull(charset, "charset");
+        Objects.requireNonNull(context, "context");
+
+        final EnvironmentContextSharedPropertiesFile propertiesFile = new EnvironmentContextSharedPropertiesFile(
+            file.toAbsolutePath(),
+            charset,
+            context
+        );
+        propertiesFile.reload();
+        return propertiesFile;
+    }
+
+    private EnvironmentContextSharedPropertiesFile(final Path file,
+                                                   final Charset charset,
+                                                   final EnvironmentContext context) {
+        super();
+        this.file = file;
+        this.charset = charset;
+        this.context = context;
+        this.current = EnvironmentContextSharedProperties.with(
+            Properties.EMPTY,
+            context
+        );
+    }
+
+    // FileEnvironmentContext...........................................................................................
+
+    @Override
+    public Path file() {
+        return this.file;
+    }
+
+    private final Path file;
+
+    private final Charset charset;
+
+    /**
+     * The new values and the changes are built before they are published with a single write, so a failure leaves the
+     * previous values and fires nothing. The changes are fired as a single batch after the monitor is released, so a
+     * slow watcher never blocks another reload or a reader.
+     */
+    @Override
+    public void reload() throws IOException {
+        final List<EnvironmentValueChange> changes = Lists.array();
+
+        synchronized (this) {
+            final Properties before = this.current.properties;
+            final Properties after = this.read();
+
+            final Set<PropertiesPath> keys = Sets.ordered();
+            keys.addAll(before.keys());
+            keys.addAll(after.keys());
+
+            for (final PropertiesPath key : keys) {
+                final Optional<String> oldValue = before.get(key);
+                final Optional<String> newValue = after.get(key);
+
+                if (false == oldValue.equals(newValue)) {
+                    final EnvironmentValueName<String> name = EnvironmentValueName.with(
+                        key.value(),
+                        String.class
+                    );
+
+                    changes.add(
+                        EnvironmentValueChange.with(
+                            oldValue.map(name::setValue),
+                            newValue.map(name::setValue)
+                        )
+                    );
+                }
+            }
+
+            this.current = EnvironmentContextSharedProperties.with(
+                after,
+                this.context
+            );
+        }
+
+        if (false == changes.isEmpty()) {
+            this.watchers.onValueChanges(changes);
+        }
+    }
+
+    /**
+     * Reads the file through a memory mapped buffer.
+     */
+    private Properties read() throws IOException {
+        Properties properties;
+
+        try (final FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (0 == size) {
+                properties = Properties.EMPTY;
+            } else {
+                final MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    0,
+                    size
+                );
+
+                properties = Properties.parse(
+                    this.charset.decode(buffer)
+                        .toString()
+                );
+            }
+        } catch (final NoSuchFileException missing) {
+            properties = Properties.EMPTY;
+        }
+
+        return properties;
+    }
+
+    /**
+     * The values from the last reload, replaced and never updated.
+     */
+    private volatile EnvironmentContextSharedProperties current;
+
+    /**
+     * Starts a daemon thread which reloads whenever the file is created, modified or deleted.
+     */
+    void watch() throws IOException {
+        final WatchService watchService = this.file.getFileSystem()
+            .newWatchService();
+        this.file.getParent()
+            .register(
+                watchService,
+                ENTRY_CREATE,
+                ENTRY_MODIFY,
+                ENTRY_DELETE
+            );
+        this.watchService = watchService;
+
+        final Thread thread = new Thread(
+            () -> this.watchLoop(watchService),
+            this.getClass().getSimpleName() + " " + this.file
+        );
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watchLoop(final WatchService watchService) {
+        final Path fileName = this.file.getFileName();
+
+        try {
+            for (; ; ) {
+                final WatchKey key = watchService.take();
+
+                boolean changed = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    changed |= fileName.equals(event.context());
+                }
+                key.reset();
+
+                if (changed) {
+                    try {
+                        this.reload();
+                    } catch (final IOException | RuntimeException | InternalError cause) {
+                        // keep the previous values, a bad file, a file truncated while mapped or a watcher must not
+                        // stop watching, the next change will try again
+                        final Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler()
+                            .uncaughtException(
+                                thread,
+                                cause
+                            );
+                    }
+                }
+            }
+        } catch (final ClosedWatchServiceException | InterruptedException stop) {
+            // closed
+        }
+    }
+
+    @Override
+    public void close() {
+        final WatchService watchService = this.watchService;
+        if (null != watchService) {
+            this.watchService = null;
+            try {
+                watchService.close();
+            } catch (final IOException ignore) {
+                // nothing to do
+            }
+        }
+    }
+
+    private volatile WatchService watchService;
+
+    // EnvironmentContext...............................................................................................
+
+    /**
+     * The clone holds the current values and does not watch the file.
+     */
+    @Override
+    public EnvironmentContext cloneEnvironment() {
+        return this.current.cloneEnvironment();
+    }
+
+    @Override
+    public EnvironmentContext setEnvironmentContext(final EnvironmentContext context) {
+        return Objects.requireNonNull(context, "context");
+    }
+
+    @Override
+    public <T> Optional<T> environmentValue(final EnvironmentValueName<T> name) {
+        return this.current.environmentValue(name);
+    }
+
+    @Override
+    public Set<EnvironmentValueName<?>> environmentValueNames() {
+        return this.current.environmentValueNames();
+    }
+
+    @Override
+    public <T> void setEnvironmentValue(final EnvironmentValueName<T> name,
+                                        final T value) {
+        this.current.setEnvironmentValue(
+            name,
+            value
+        );
+    }
+
+    @Override
+    public void removeEnvironmentValue(final EnvironmentValueName<?> name) {
+        this.current.removeEnvironmentValue(name);
+    }
+
+    @Override
+    public <T> Optional<T> setEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                       final T value) {
+        return this.current.setEnvironmentValueIfAbsent(
+            name,
+            value
+        );
+    }
+
+    @Override
+    public <T> boolean compareAndSetEnvironmentValue(final EnvironmentValueName<T> name,
+                                                     final Optional<T> expected,
+                                                     final Optional<T> value) {
+        return this.current.compareAndSetEnvironmentValue(
+            name,
+            expected,
+            value
+        );
+    }
+
+    @Override
+    public void update(final Consumer<EnvironmentContext> updater) {
+        this.current.update(updater);
+    }
+
+    private final EnvironmentContext context;
+
+    /**
+     * Watchers are added to both the file and the wrapped {@link EnvironmentContext}.
+     */
+    @Override
+    public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
+        final Runnable file = this.watchers.add(watcher);
+        final Runnable context = this.context.addEnvironmentWatcher(watcher);
+
+        return () -> {
+            file.run();
+            context.run();
+        };
+    }
+
+    /**
+     * Watchers are added to both the file and the wrapped {@link EnvironmentContext}, and the first event from either
+     * removes both.
+     */
+    @Override
+    public Runnable addEnvironmentWatcherOnce(final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(watcher, "watcher");
+
+        final Runnable[] removers = new Runnable[2];
+        final Runnable remover = () -> {
+            removers[0].run();
+            removers[1].run();
+        };
+
+        final EnvironmentWatcher once = (o, n) -> {
+            remover.run();
+            watcher.onValueChange(o, n);
+        };
+
+        removers[0] = this.watchers.addOnce(once);
+        removers[1] = this.context.addEnvironmentWatcherOnce(once);
+
+        return remover;
+    }
+
+    /**
+     * Thread safe as reloads fire from the watching thread.
+     */
+    private final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Override
+    public EnvironmentValueName<?> parseEnvironmentValueName(final String value) {
+        return this.context.parseEnvironmentValueName(value);
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.file,
+            this.context
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            (other instanceof EnvironmentContextSharedPropertiesFile &&
+                this.equals0((EnvironmentContextSharedPropertiesFile) other));
+    }
+
+    private boolean equals0(final EnvironmentContextSharedPropertiesFile other) {
+        return this.file.equals(other.file) &&
+            this.context.equals(other.context);
+    }
+
+    @Override
+    public String toString() {
+        return this.file + " " + this.current;
+    }
+
+    // TreePrintable....................................................................................................
+
+    @Override
+    public void printTree(final IndentingPrinter printer) {
+        printer.println(this.getClass().getSimpleName());
+        printer.indent();
+        {
+            printer.println("file");
+            printer.indent();
+            {
+                printer.println(this.file.toString());
+            }
+            printer.outdent();
+
+            this.current.printTree(printer);
+        }
+        printer.outdent();
+    }
+}
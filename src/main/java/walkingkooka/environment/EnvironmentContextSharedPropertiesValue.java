@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.convert.ConverterContext;
+
+/**
+ * Holds a single property value text, and memoises its conversion to the most recently requested type.
+ */
+final class EnvironmentContextSharedPropertiesValue {
+
+    static EnvironmentContextSharedPropertiesValue with(final String text) {
+        return new EnvironmentContextSharedPropertiesValue(text);
+    }
+
+    private EnvironmentContextSharedPropertiesValue(final String text) {
+        super();
+        this.text = text;
+    }
+
+    /**
+     * Returns the text unchanged when the type is {@link String} or {@link Object} or no {@link ConverterContext} is
+     * present, otherwise converts the text to the given type, remembering the result for the next call.
+     */
+    Object value(final Class<?> type,
+                 final ConverterContext context) {
+        final Object value;
+
+        if (null == context || String.class == type || Object.class == type) {
+            value = this.text;
+        } else {
+            Converted converted = this.converted;
+            if (null == converted || type != converted.type) {
+                converted = new Converted(
+                    type,
+                    context.convertOrFail(
+                        this.text,
+                        type
+                    )
+                );
+                this.converted = converted;
+            }
+            value = converted.value;
+        }
+
+        return value;
+    }
+
+    // @VisibleForTesting
+    final String text;
+
+    /**
+     * The last conversion, the holder is immutable so racing threads always see a matching type and value.
+     */
+    private Converted converted;
+
+    private final static class Converted {
+
+        Converted(final Class<?> type,
+                  final Object value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        final Class<?> type;
+
+        final Object value;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.text;
+    }
+}
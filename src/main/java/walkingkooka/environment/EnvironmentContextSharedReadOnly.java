@@ -23,6 +23,7 @@ import walkingkooka.text.printer.TreePrintable;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
@@ -120,6 +121,83 @@ final class EnvironmentContextSharedReadOnly extends EnvironmentContextShared {
         }
     }
 
+    /**
+     * A read only value may only be returned, any other value is set if absent by the wrapped {@link EnvironmentContext}.
+     */
+    @Override
+    public <T> Optional<T> setEnvironmentValueIfAbsent(final EnvironmentValueName<T> name,
+                                                       final T value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        final Optional<T> existing;
+
+        if (this.readOnlyNames.test(name)) {
+            existing = this.environmentValue(name);
+            if (false == existing.isPresent()) {
+                throw name.readOnlyEnvironmentValueException();
+            }
+        } else {
+            existing = this.context.setEnvironmentValueIfAbsent(
+                name,
+                value
+            );
+        }
+
+        return existing;
+    }
+
+    /**
+     * A read only value may only be compared and replaced with an equal value, any other value is compared and set by
+     * the wrapped {@link EnvironmentContext}.
+     */
+    @Override
+    public <T> boolean compareAndSetEnvironmentValue(final EnvironmentValueName<T> name,
+                                                     final Optional<T> expected,
+                                                     final Optional<T> value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(expected, "expected");
+        Objects.requireNonNull(value, "value");
+
+        final boolean updated;
+
+        if (this.readOnlyNames.test(name)) {
+            final Optional<T> current = this.environmentValue(name);
+            updated = current.equals(expected);
+            if (updated && false == current.equals(value)) {
+                throw name.readOnlyEnvironmentValueException();
+            }
+        } else {
+            updated = this.context.compareAndSetEnvironmentValue(
+                name,
+                expected,
+                value
+            );
+        }
+
+        return updated;
+    }
+
+    /**
+     * The updates are applied to a read only view over the {@link EnvironmentContext} given by the wrapped context,
+     * so read only values are still protected.
+     */
+    @Override
+    public void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        this.context.update(
+            (c) -> updater.accept(
+                c == this.context ?
+                    this :
+                    new EnvironmentContextSharedReadOnly(
+                        this.readOnlyNames,
+                        c
+                    )
+            )
+        );
+    }
+
     /**
      * Filter that matches read only environment values.
      */
@@ -138,6 +216,15 @@ final class EnvironmentContextSharedReadOnly extends EnvironmentContextShared {
         return this.context.addEnvironmentWatcherOnce(watcher);
     }
 
+    @Override
+    public Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                          final EnvironmentWatcher watcher) {
+        return this.context.addEnvironmentWatcher(
+            names,
+            watcher
+        );
+    }
+
     // CanParseEnvironmentValueName.....................................................................................
 
     @Override
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.ToStringBuilder;
+import walkingkooka.UsesToStringBuilder;
+import walkingkooka.datetime.HasNow;
+import walkingkooka.net.email.EmailAddress;
+import walkingkooka.text.Indentation;
+import walkingkooka.text.LineEnding;
+import walkingkooka.text.printer.IndentingPrinter;
+
+import java.nio.charset.Charset;
+import java.time.ZoneOffset;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An immutable {@link EnvironmentContextSnapshot} over a {@link EnvironmentContextSharedPersistentValues}. Taking a
+ * snapshot neither copies nor locks, and the values never change, so a snapshot may be pinned for as long as needed
+ * while writers continue to update the source. Only {@link #now()} is live, returning the current date time.
+ */
+final class EnvironmentContextSharedSnapshot extends EnvironmentContextShared
+    implements EnvironmentContextSnapshot,
+    UsesToStringBuilder {
+
+    static EnvironmentContextSharedSnapshot with(final EnvironmentContextSharedPersistentValues values,
+                                                 final HasNow hasNow) {
+        return new EnvironmentContextSharedSnapshot(
+            values,
+            hasNow
+        );
+    }
+
+    private EnvironmentContextSharedSnapshot(final EnvironmentContextSharedPersistentValues values,
+                                             final HasNow hasNow) {
+        super();
+
+        this.values = values;
+        this.hasNow = hasNow;
+    }
+
+    @Override
+    public long version() {
+        return this.values.version;
+    }
+
+    /**
+     * Returns a new mutable {@link EnvironmentContext} starting with the values of this snapshot.
+     */
+    @Override
+    public EnvironmentContext cloneEnvironment() {
+        return EnvironmentContextSharedPersistent.withValues(
+            this.values,
+            this.hasNow
+        );
+    }
+
+    /**
+     * Returns the given {@link EnvironmentContext}.
+     */
+    @Override
+    public EnvironmentContext setEnvironmentContext(final EnvironmentContext context) {
+        return Objects.requireNonNull(context, "context");
+    }
+
+    // built-ins........................................................................................................
+
+    @Override
+    public Charset charset() {
+        return (Charset) this.values.builtIns[EnvironmentValueName.CHARSET_SLOT];
+    }
+
+    @Override
+    public Currency currency() {
+        return (Currency) this.values.builtIns[EnvironmentValueName.CURRENCY_SLOT];
+    }
+
+    @Override
+    public Indentation indentation() {
+        return (Indentation) this.values.builtIns[EnvironmentValueName.INDENTATION_SLOT];
+    }
+
+    @Override
+    public LineEnding lineEnding() {
+        return (LineEnding) this.values.builtIns[EnvironmentValueName.LINE_ENDING_SLOT];
+    }
+
+    @Override
+    public Locale locale() {
+        return (Locale) this.values.builtIns[EnvironmentValueName.LOCALE_SLOT];
+    }
+
+    @Override
+    public ZoneOffset timeOffset() {
+        final ZoneOffset timeOffset = (ZoneOffset) this.values.builtIns[EnvironmentValueName.TIME_OFFSET_SLOT];
+        return null != timeOffset ?
+            timeOffset :
+            DEFAULT_TIME_OFFSET;
+    }
+
+    @Override
+    public Optional<EmailAddress> user() {
+        return Optional.ofNullable(
+            (EmailAddress) this.values.builtIns[EnvironmentValueName.USER_SLOT]
+        );
+    }
+
+    // EnvironmentContext...............................................................................................
+
+    @Override
+    public <T> Optional<T> environmentValue(final EnvironmentValueName<T> name) {
+        Objects.requireNonNull(name, "name");
+
+        Object value;
+
+        if (NOW == name) {
+            value = this.hasNow.now();
+        } else {
+            value = this.values.get(name);
+            if (null == value && TIME_OFFSET == name) {
+                value = DEFAULT_TIME_OFFSET;
+            }
+        }
+
+        return Optional.ofNullable(
+            name.cast(value)
+        );
+    }
+
+    private final HasNow hasNow;
+
+    @Override
+    public Set<EnvironmentValueName<?>> environmentValueNames() {
+        return this.values.names();
+    }
+
+    /**
+     * Setting the current value is ignored, any other value fails.
+     */
+    @Override
+    public <T> void setEnvironmentValue(final EnvironmentValueName<T> name,
+                                        final T value) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(value, "value");
+
+        if (false == value.equals(this.values.get(name))) {
+            throw name.readOnlyEnvironmentValueException();
+        }
+    }
+
+    /**
+     * Removing an absent value is ignored, removing a present value fails.
+     */
+    @Override
+    public void removeEnvironmentValue(final EnvironmentValueName<?> name) {
+        Objects.requireNonNull(name, "name");
+
+        if (NOW == name || null != this.values.get(name)) {
+            throw name.readOnlyEnvironmentValueException();
+        }
+    }
+
+    // @VisibleForTesting
+    final EnvironmentContextSharedPersistentValues values;
+
+    // watchers.........................................................................................................
+
+    /**
+     * Values never change, so the watcher is ignored.
+     */
+    @Override
+    public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(watcher, "watcher");
+
+        return NO_REMOVE;
+    }
+
+    /**
+     * Values never change, so the watcher is ignored.
+     */
+    @Override
+    public Runnable addEnvironmentWatcherOnce(final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(watcher, "watcher");
+
+        return NO_REMOVE;
+    }
+
+    private final static Runnable NO_REMOVE = () -> {
+    };
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Override
+    public EnvironmentValueName<?> parseEnvironmentValueName(final String value) {
+        EnvironmentValueName<?> environmentValueName = EnvironmentValueName.constant(value);
+        if (null == environmentValueName) {
+            // probe without creating a name, only unknown names are created
+            environmentValueName = this.values
+                .keyIgnoringCase(value);
+            if (null == environmentValueName) {
+                environmentValueName = EnvironmentValueName.with(
+                    value,
+                    Object.class
+                );
+            }
+        }
+
+        return environmentValueName;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.values,
+            this.hasNow
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            (other instanceof EnvironmentContextSharedSnapshot &&
+                this.equals0((EnvironmentContextSharedSnapshot) other));
+    }
+
+    private boolean equals0(final EnvironmentContextSharedSnapshot other) {
+        return this.values.equals(other.values) &&
+            this.hasNow.equals(other.hasNow);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.buildFrom(this);
+    }
+
+    // UsesToStringBuilder..............................................................................................
+
+    @Override
+    public void buildToString(final ToStringBuilder b) {
+        this.values.buildToString(b);
+    }
+
+    // TreePrintable....................................................................................................
+
+    @Override
+    public void printTree(final IndentingPrinter printer) {
+        this.printTreeValues(printer);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+/**
+ * An immutable {@link EnvironmentContext} holding the values of another {@link EnvironmentContext} at a point in time.
+ * Attempts to change or remove values will fail with {@link ReadOnlyEnvironmentValueException}.
+ */
+public interface EnvironmentContextSnapshot extends EnvironmentContext {
+
+    /**
+     * The version of the source {@link EnvironmentContext} when this snapshot was taken. Versions increase with
+     * every update, so two snapshots of the same {@link EnvironmentContext} instance with the same version hold the same
+     * values. Versions of different contexts, including a context and its clones, are unrelated and must not be
+     * compared.
+     */
+    long version();
+}
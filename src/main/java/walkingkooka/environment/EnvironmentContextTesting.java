@@ -142,6 +142,54 @@ public interface EnvironmentContextTesting extends BinaryTextContextTesting,
         );
     }
 
+    // setEnvironmentValueIfAbsent......................................................................................
+
+    default <T> void setEnvironmentValueIfAbsentAndCheck(final EnvironmentContext context,
+                                                         final EnvironmentValueName<T> name,
+                                                         final T value,
+                                                         final Optional<T> expected) {
+        this.checkEquals(
+            expected,
+            context.setEnvironmentValueIfAbsent(
+                name,
+                value
+            ),
+            () -> "setEnvironmentValueIfAbsent " + name + " " + value
+        );
+        this.environmentValueAndCheck(
+            context,
+            name,
+            expected.orElse(value)
+        );
+    }
+
+    // compareAndSetEnvironmentValue....................................................................................
+
+    default <T> void compareAndSetEnvironmentValueAndCheck(final EnvironmentContext context,
+                                                           final EnvironmentValueName<T> name,
+                                                           final Optional<T> expected,
+                                                           final Optional<T> value,
+                                                           final boolean updated) {
+        final Optional<T> before = context.environmentValue(name);
+
+        this.checkEquals(
+            updated,
+            context.compareAndSetEnvironmentValue(
+                name,
+                expected,
+                value
+            ),
+            () -> "compareAndSetEnvironmentValue " + name + " " + expected + " " + value
+        );
+        this.checkEquals(
+            updated ?
+                value :
+                before,
+            context.environmentValue(name),
+            () -> "environmentValue " + name
+        );
+    }
+
     // environmentValueOrFail...........................................................................................
 
     default void environmentValueOrFailAndCheck(final EnvironmentContext context,
@@ -17,6 +17,7 @@
 
 package walkingkooka.environment;
 
+import walkingkooka.convert.ConverterContext;
 import walkingkooka.datetime.HasNow;
 import walkingkooka.net.email.EmailAddress;
 import walkingkooka.props.Properties;
@@ -27,6 +28,7 @@ import walkingkooka.text.LineEnding;
 import java.nio.charset.Charset;
 import java.util.Currency;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Predicate;
 
@@ -35,6 +37,27 @@ import java.util.function.Predicate;
  */
 public final class EnvironmentContexts implements PublicStaticHelper {
 
+    /**
+     * {@see EnvironmentContextSharedConcurrent}
+     */
+    public static EnvironmentContext concurrent(final Charset charset,
+                                                final Currency currency,
+                                                final Indentation indentation,
+                                                final LineEnding lineEnding,
+                                                final Locale locale,
+                                                final HasNow hasNow,
+                                                final Optional<EmailAddress> user) {
+        return EnvironmentContextSharedConcurrent.with(
+            charset,
+            currency,
+            indentation,
+            lineEnding,
+            locale,
+            hasNow,
+            user
+        );
+    }
+
     /**
      * {@see FakeEnvironmentContext}
      */
@@ -42,6 +65,27 @@ public final class EnvironmentContexts implements PublicStaticHelper {
         return new FakeEnvironmentContext();
     }
 
+    /**
+     * {@see EnvironmentContextSharedMap}
+     */
+    public static EnvironmentContext hashMap(final Charset charset,
+                                             final Currency currency,
+                                             final Indentation indentation,
+                                             final LineEnding lineEnding,
+                                             final Locale locale,
+                                             final HasNow hasNow,
+                                             final Optional<EmailAddress> user) {
+        return EnvironmentContextSharedMap.withHashMap(
+            charset,
+            currency,
+            indentation,
+            lineEnding,
+            locale,
+            hasNow,
+            user
+        );
+    }
+
     /**
      * {@see EnvironmentContextSharedMap}
      */
@@ -63,6 +107,34 @@ public final class EnvironmentContexts implements PublicStaticHelper {
         );
     }
 
+    /**
+     * {@see EnvironmentContextSharedOverlay}
+     */
+    public static EnvironmentContext overlay(final EnvironmentContext parent) {
+        return EnvironmentContextSharedOverlay.with(parent);
+    }
+
+    /**
+     * {@see EnvironmentContextSharedPersistent}
+     */
+    public static EnvironmentContext persistent(final Charset charset,
+                                                final Currency currency,
+                                                final Indentation indentation,
+                                                final LineEnding lineEnding,
+                                                final Locale locale,
+                                                final HasNow hasNow,
+                                                final Optional<EmailAddress> user) {
+        return EnvironmentContextSharedPersistent.with(
+            charset,
+            currency,
+            indentation,
+            lineEnding,
+            locale,
+            hasNow,
+            user
+        );
+    }
+
     /**
      * {@see EnvironmentContextSharedPrefixed}
      */
@@ -85,6 +157,19 @@ public final class EnvironmentContexts implements PublicStaticHelper {
         );
     }
 
+    /**
+     * {@see EnvironmentContextSharedProperties}
+     */
+    public static EnvironmentContext properties(final Properties properties,
+                                                final ConverterContext converterContext,
+                                                final EnvironmentContext context) {
+        return EnvironmentContextSharedProperties.with(
+            properties,
+            Objects.requireNonNull(converterContext, "converterContext"),
+            context
+        );
+    }
+
     /**
      * {@see EnvironmentContextSharedReadOnly}
      */
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.reflect.PublicStaticHelper;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A collection of methods returning a {@link CompletableFuture} that completes when an environment value changes.
+ * Each waiter is added as a watcher for a single {@link EnvironmentValueName}, so it is only visited by changes to
+ * that name, and is removed as soon as the future completes or is cancelled.
+ * <br>
+ * {@link CompletableFuture} is not available in the browser.
+ */
+public final class EnvironmentValueAwaits implements PublicStaticHelper {
+
+    /**
+     * Returns a {@link CompletableFuture} that completes with the first value that matches the {@link Predicate},
+     * which may be the current value.
+     */
+    public static <T> CompletableFuture<EnvironmentValueNameAndValue<T>> awaitEnvironmentValue(final EnvironmentContext context,
+                                                                                              final EnvironmentValueName<T> name,
+                                                                                              final Predicate<T> predicate) {
+        Objects.requireNonNull(predicate, "predicate");
+
+        return await(
+            context,
+            name,
+            (value) -> value.filter(predicate)
+                .map(name::setValue)
+                .orElse(null)
+        );
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} that completes with the first value that is different from the given value,
+     * which may be the current value. An empty value is returned if the value was removed.
+     * <br>
+     * The current value is checked after the watcher is added, so every change made after this method is called is
+     * seen. A change made after the given value was read and before this method was called is only seen if the current
+     * value is still different, a value that was changed and then restored (A, B, A) in that gap is not reported.
+     */
+    public static <T> CompletableFuture<Optional<T>> awaitEnvironmentValueChangedSince(final EnvironmentContext context,
+                                                                                      final EnvironmentValueName<T> name,
+                                                                                      final Optional<T> since) {
+        Objects.requireNonNull(since, "since");
+
+        return await(
+            context,
+            name,
+            (value) -> value.equals(since) ?
+                null :
+                value
+        );
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} that completes with the first value that is different from the value held by
+     * the given {@link EnvironmentContextSnapshot}, which may be the current value.
+     * <br>
+     * Versions count changes to any name, so they cannot tell whether a single name changed, and the same limits as
+     * {@link #awaitEnvironmentValueChangedSince(EnvironmentContext, EnvironmentValueName, Optional)} apply: a value
+     * that was changed and then restored between the snapshot and this call is not reported.
+     */
+    public static <C extends EnvironmentContext & HasEnvironmentContextSnapshot, T> CompletableFuture<Optional<T>> awaitEnvironmentValueChangedSince(final C context,
+                                                                                                                                                    final EnvironmentValueName<T> name,
+                                                                                                                                                    final EnvironmentContextSnapshot since) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(since, "since");
+
+        return awaitEnvironmentValueChangedSince(
+            context,
+            name,
+            since.environmentValue(name)
+        );
+    }
+
+    /**
+     * Adds a watcher for the given name, completing the future with the first non-null result from the
+     * {@link Function} given the new value, checking the current value after the watcher is added.
+     */
+    private static <T, R> CompletableFuture<R> await(final EnvironmentContext context,
+                                                     final EnvironmentValueName<T> name,
+                                                     final Function<Optional<T>, R> result) {
+        Objects.requireNonNull(context, "context");
+        Objects.requireNonNull(name, "name");
+
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        final Runnable remover = context.addEnvironmentWatcher(
+            name,
+            (oldValue, newValue) -> complete(
+                future,
+                newValue.map(
+                    (nv) -> name.cast(
+                        nv.value()
+                    )
+                ),
+                result
+            )
+        );
+        future.whenComplete(
+            (r, cause) -> remover.run()
+        );
+
+        complete(
+            future,
+            context.environmentValue(name),
+            result
+        );
+
+        return future;
+    }
+
+    private static <T, R> void complete(final CompletableFuture<R> future,
+                                        final Optional<T> value,
+                                        final Function<Optional<T>, R> result) {
+        if (false == future.isDone()) {
+            try {
+                final R completed = result.apply(value);
+                if (null != completed) {
+                    future.complete(completed);
+                }
+            } catch (final RuntimeException cause) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Stop creation
+     */
+    private EnvironmentValueAwaits() {
+        throw new UnsupportedOperationException();
+    }
+}
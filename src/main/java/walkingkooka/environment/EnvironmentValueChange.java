@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A single value change, holding the old and new {@link EnvironmentValueNameAndValue} for one
+ * {@link EnvironmentValueName}. A missing old value means the value was added, a missing new value means it was removed.
+ */
+public final class EnvironmentValueChange {
+
+    public static EnvironmentValueChange with(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        Objects.requireNonNull(oldValue, "oldValue");
+        Objects.requireNonNull(newValue, "newValue");
+
+        if (false == oldValue.isPresent() && false == newValue.isPresent()) {
+            throw new IllegalArgumentException("Missing old and new value");
+        }
+
+        return new EnvironmentValueChange(
+            oldValue,
+            newValue
+        );
+    }
+
+    private EnvironmentValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                   final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        super();
+
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public EnvironmentValueName<?> name() {
+        return this.oldValue.orElseGet(this.newValue::get)
+            .name();
+    }
+
+    public Optional<EnvironmentValueNameAndValue<?>> oldValue() {
+        return this.oldValue;
+    }
+
+    private final Optional<EnvironmentValueNameAndValue<?>> oldValue;
+
+    public Optional<EnvironmentValueNameAndValue<?>> newValue() {
+        return this.newValue;
+    }
+
+    private final Optional<EnvironmentValueNameAndValue<?>> newValue;
+
+    /**
+     * Fires this change to the given {@link EnvironmentWatcher}.
+     */
+    public void fire(final EnvironmentWatcher watcher) {
+        watcher.onValueChange(
+            this.oldValue,
+            this.newValue
+        );
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.oldValue,
+            this.newValue
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof EnvironmentValueChange && this.equals0((EnvironmentValueChange) other);
+    }
+
+    private boolean equals0(final EnvironmentValueChange other) {
+        return this.oldValue.equals(other.oldValue) &&
+            this.newValue.equals(other.newValue);
+    }
+
+    @Override
+    public String toString() {
+        return this.oldValue.map(Object::toString).orElse("") +
+            " -> " +
+            this.newValue.map(Object::toString).orElse("");
+    }
+}
@@ -20,7 +20,6 @@ package walkingkooka.environment;
 import walkingkooka.Cast;
 import walkingkooka.InvalidCharacterException;
 import walkingkooka.InvalidTextLengthException;
-import walkingkooka.collect.map.Maps;
 import walkingkooka.compare.Comparators;
 import walkingkooka.naming.Name;
 import walkingkooka.net.email.EmailAddress;
@@ -41,6 +40,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The name of an environment value. Names must start with a letter, followed by letters/digits/dash and are case-sensitive.
@@ -78,9 +78,34 @@ final public class EnvironmentValueName<T> implements Name,
      */
     public final static CaseSensitivity CASE_SENSITIVITY = CaseSensitivity.INSENSITIVE;
 
-    private final static Map<String, EnvironmentValueName<?>> CONSTANTS = Maps.sorted(
-        CASE_SENSITIVITY.comparator()
-    );
+    /**
+     * The built-ins and registered constants, used by {@link #constant(CharSequence)} to find a constant without
+     * creating any objects. The table is never modified once published, registering copies and replaces the whole
+     * table, so readers need no lock.
+     */
+    private static volatile EnvironmentValueNameHashMap<EnvironmentValueName<?>> CONSTANTS = EnvironmentValueNameHashMap.empty();
+
+    private static synchronized void addConstant(final EnvironmentValueName<?> constant) {
+        final EnvironmentValueNameHashMap<EnvironmentValueName<?>> constants = CONSTANTS.copy();
+        constants.put(
+            constant,
+            constant
+        );
+        CONSTANTS = constants;
+    }
+
+    /**
+     * The maximum number of dynamic names held by {@link #INTERNED}.
+     */
+    final static int INTERNED_MAX = 8192;
+
+    /**
+     * Dynamic names are interned so creating the same name again returns the same instance, this means most
+     * {@link #equals(Object)} tests are satisfied by identity. Lookups take no lock, and the pool is cleared when it is
+     * full so it cannot grow without bounds. A dropped name remains valid, later names with the same text are simply
+     * not identical to it.
+     */
+    private final static Map<String, EnvironmentValueName<?>> INTERNED = new ConcurrentHashMap<>();
 
     /**
      * Registers an {@link EnvironmentValueName} and its type. Note if an attempt is made to register a
@@ -92,48 +117,93 @@ final public class EnvironmentValueName<T> implements Name,
             name,
             type
         );
-        CONSTANTS.put(name, constant);
+        addConstant(constant);
+
+        // a previously interned name may now clash with the type of this constant
+        INTERNED.clear();
         return Cast.to(constant);
     }
 
-    public final static EnvironmentValueName<Charset> CHARSET = registerConstant(
+    /**
+     * Built-in names other than {@link #NOW} have a fixed slot, which {@link EnvironmentContext} implementations may use
+     * to hold their values in an array rather than a {@link Map}.
+     */
+    final static int NO_SLOT = -1;
+
+    final static int CHARSET_SLOT = 0;
+
+    final static int CURRENCY_SLOT = 1;
+
+    final static int INDENTATION_SLOT = 2;
+
+    final static int LINE_ENDING_SLOT = 3;
+
+    final static int LOCALE_SLOT = 4;
+
+    final static int TIME_OFFSET_SLOT = 5;
+
+    final static int USER_SLOT = 6;
+
+    final static int SLOT_COUNT = 7;
+
+    private static <T> EnvironmentValueName<T> registerBuiltIn(final String name,
+                                                               final Class<T> type,
+                                                               final int slot) {
+        final EnvironmentValueName<T> constant = new EnvironmentValueName<>(
+            name,
+            type,
+            slot
+        );
+        addConstant(constant);
+        return constant;
+    }
+
+    public final static EnvironmentValueName<Charset> CHARSET = registerBuiltIn(
         "charset",
-        Charset.class
+        Charset.class,
+        CHARSET_SLOT
     );
 
-    public final static EnvironmentValueName<Currency> CURRENCY = registerConstant(
+    public final static EnvironmentValueName<Currency> CURRENCY = registerBuiltIn(
         "currency",
-        Currency.class
+        Currency.class,
+        CURRENCY_SLOT
     );
 
-    public final static EnvironmentValueName<Indentation> INDENTATION = registerConstant(
+    public final static EnvironmentValueName<Indentation> INDENTATION = registerBuiltIn(
         "indentation",
-        Indentation.class
+        Indentation.class,
+        INDENTATION_SLOT
     );
 
-    public final static EnvironmentValueName<LineEnding> LINE_ENDING = registerConstant(
+    public final static EnvironmentValueName<LineEnding> LINE_ENDING = registerBuiltIn(
         "lineEnding",
-        LineEnding.class
+        LineEnding.class,
+        LINE_ENDING_SLOT
     );
 
-    public final static EnvironmentValueName<Locale> LOCALE = registerConstant(
+    public final static EnvironmentValueName<Locale> LOCALE = registerBuiltIn(
         "locale",
-        Locale.class
+        Locale.class,
+        LOCALE_SLOT
     );
 
-    public final static EnvironmentValueName<LocalDateTime> NOW = registerConstant(
+    public final static EnvironmentValueName<LocalDateTime> NOW = registerBuiltIn(
         "now",
-        LocalDateTime.class
+        LocalDateTime.class,
+        NO_SLOT
     );
 
-    public final static EnvironmentValueName<ZoneOffset> TIME_OFFSET = registerConstant(
+    public final static EnvironmentValueName<ZoneOffset> TIME_OFFSET = registerBuiltIn(
         "timeOffset",
-        ZoneOffset.class
+        ZoneOffset.class,
+        TIME_OFFSET_SLOT
     );
 
-    public final static EnvironmentValueName<EmailAddress> USER = registerConstant(
+    public final static EnvironmentValueName<EmailAddress> USER = registerBuiltIn(
         "user",
-        EmailAddress.class
+        EmailAddress.class,
+        USER_SLOT
     );
 
     /**
@@ -141,6 +211,14 @@ final public class EnvironmentValueName<T> implements Name,
      */
     public static <T> EnvironmentValueName<T> with(final String name,
                                                    final Class<T> type) {
+        Objects.requireNonNull(name, "name");
+
+        // only valid names are interned, so validation can be skipped
+        final EnvironmentValueName<?> interned = INTERNED.get(name);
+        if (null != interned && interned.type == type) {
+            return Cast.to(interned);
+        }
+
         CharPredicates.failIfNullOrEmptyOrInitialAndPartFalse(
             name,
             "name",
@@ -148,7 +226,7 @@ final public class EnvironmentValueName<T> implements Name,
             PART
         );
 
-        EnvironmentValueName<T> environmentValueName = Cast.to(CONSTANTS.get(name));
+        EnvironmentValueName<T> environmentValueName = Cast.to(constant(name));
         if (null == environmentValueName) {
             if (name.length() >= MAX_LENGTH) {
                 throw new InvalidTextLengthException("name", name, 0, MAX_LENGTH);
@@ -161,8 +239,22 @@ final public class EnvironmentValueName<T> implements Name,
 
             environmentValueName = new EnvironmentValueName<>(
                 name,
-                Objects.requireNonNull(type, "type")
+                Objects.requireNonNull(type, "type"),
+                NO_SLOT
+            );
+
+            if (INTERNED.size() >= INTERNED_MAX) {
+                INTERNED.clear();
+            }
+
+            // another thread may have interned the same name first
+            final EnvironmentValueName<?> existing = INTERNED.putIfAbsent(
+                name,
+                environmentValueName
             );
+            if (null != existing && existing.type == type) {
+                environmentValueName = Cast.to(existing);
+            }
         } else {
             if (Object.class != type) {
                 final Class<?> expected = environmentValueName.type;
@@ -179,12 +271,110 @@ final public class EnvironmentValueName<T> implements Name,
      * Private constructor
      */
     private EnvironmentValueName(final String name,
-                                 final Class<T> type) {
+                                 final Class<T> type,
+                                 final int slot) {
         super();
         this.name = name;
         this.type = type;
+        this.slot = slot;
+
+        this.caseFolded = caseFold(name);
+        this.hashCode = Objects.hash(
+            this.caseFolded,
+            type
+        );
     }
 
+    /**
+     * Returns the name with every character case folded, matching the ordering of {@link #CASE_SENSITIVITY}.
+     * Names that are already lower case ASCII are returned as is.
+     */
+    static String caseFold(final String name) {
+        final int length = name.length();
+
+        int i = 0;
+        while (i < length) {
+            final char c = name.charAt(i);
+            if (c > 0x7f || (c >= 'A' && c <= 'Z')) {
+                break;
+            }
+            i++;
+        }
+
+        final String folded;
+
+        if (length == i) {
+            folded = name;
+        } else {
+            final char[] chars = name.toCharArray();
+
+            while (i < length) {
+                chars[i] = caseFold(chars[i]);
+                i++;
+            }
+
+            folded = new String(chars);
+        }
+
+        return folded;
+    }
+
+    /**
+     * Case folds a single character, matching {@link #caseFold(String)}.
+     */
+    static char caseFold(final char c) {
+        return c <= 0x7f ?
+            (c >= 'A' && c <= 'Z' ?
+                (char) (c + ('a' - 'A')) :
+                c
+            ) :
+            Character.toLowerCase(
+                Character.toUpperCase(c)
+            );
+    }
+
+    /**
+     * Returns the {@link String#hashCode()} of the case folded name, without creating the case folded {@link String}.
+     */
+    static int caseFoldedHashCode(final CharSequence name) {
+        final int length = name.length();
+
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + caseFold(name.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Tests if the name ignoring case is equal to the case folded name, without creating a case folded {@link String}.
+     */
+    static boolean equalsCaseFolded(final String caseFolded,
+                                    final CharSequence name) {
+        final int length = caseFolded.length();
+        if (length != name.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (caseFolded.charAt(i) != caseFold(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The case folded name, used by {@link #compareTo(EnvironmentValueName)}, {@link #hashCode()} and {@link #equals(Object)}.
+     */
+    // @VisibleForTesting
+    final String caseFolded;
+
+    /**
+     * Names are immutable, and frequently used as map keys so the hash is computed once.
+     */
+    private final int hashCode;
+
     @Override
     public String value() {
         return this.name;
@@ -198,6 +388,25 @@ final public class EnvironmentValueName<T> implements Name,
 
     private final Class<T> type;
 
+    /**
+     * The slot of a built-in name or {@link #NO_SLOT}.
+     */
+    final int slot;
+
+    /**
+     * Returns this name without the given prefix, or null if this name does not start with the prefix.
+     */
+    EnvironmentValueName<T> removePrefix(final String prefix) {
+        final String name = this.name;
+
+        return name.startsWith(prefix) ?
+            with(
+                name.substring(prefix.length()),
+                this.type
+            ) :
+            null;
+    }
+
     /**
      * Gets the value for this name.
      */
@@ -267,7 +476,9 @@ final public class EnvironmentValueName<T> implements Name,
 
     @Override
     public int compareTo(final EnvironmentValueName other) {
-        return CASE_SENSITIVITY.comparator().compare(this.name, other.name);
+        return this == other ?
+            Comparators.EQUAL :
+            this.caseFolded.compareTo(other.caseFolded);
     }
 
     // ExpressionReference..............................................................................................
@@ -293,10 +504,7 @@ final public class EnvironmentValueName<T> implements Name,
 
     @Override
     public int hashCode() {
-        return Objects.hash(
-            CASE_SENSITIVITY.hash(this.name),
-            this.type
-        );
+        return this.hashCode;
     }
 
     @Override
@@ -306,8 +514,9 @@ final public class EnvironmentValueName<T> implements Name,
     }
 
     private boolean equals0(final EnvironmentValueName<?> other) {
-        return this.compareTo(other) == Comparators.EQUAL &&
-            this.type.equals(other.type);
+        return this.hashCode == other.hashCode &&
+            this.type == other.type &&
+            this.caseFolded.equals(other.caseFolded);
     }
 
     @Override
@@ -324,42 +533,19 @@ final public class EnvironmentValueName<T> implements Name,
 
     // CanParseEnvironmentValueName.....................................................................................
 
-    static Optional<EnvironmentValueName<?>> parseEnvironmentValueName(final String name) {
-        Objects.requireNonNull(name, "name");
-
-        final EnvironmentValueName<?> environmentValueName;
+    static Optional<EnvironmentValueName<?>> parseEnvironmentValueName(final CharSequence name) {
+        return Optional.ofNullable(
+            constant(name)
+        );
+    }
 
-        // assumes Case insensitive
-        switch (name.toLowerCase()) {
-            case "charset":
-                environmentValueName = CHARSET;
-                break;
-            case "currency":
-                environmentValueName = CURRENCY;
-                break;
-            case "indentation":
-                environmentValueName = INDENTATION;
-                break;
-            case "lineending":
-                environmentValueName = LINE_ENDING;
-                break;
-            case "locale":
-                environmentValueName = LOCALE;
-                break;
-            case "now":
-                environmentValueName = NOW;
-                break;
-            case "timeoffset":
-                environmentValueName = TIME_OFFSET;
-                break;
-            case "user":
-                environmentValueName = USER;
-                break;
-            default:
-                environmentValueName = null;
-                break;
-        }
+    /**
+     * Returns the built-in or registered constant with the given name ignoring case, or null. No objects are created,
+     * so this is suitable for resolving every identifier of an expression.
+     */
+    static EnvironmentValueName<?> constant(final CharSequence name) {
+        Objects.requireNonNull(name, "name");
 
-        return Optional.ofNullable(environmentValueName);
+        return CONSTANTS.getIgnoringCase(name);
     }
 }
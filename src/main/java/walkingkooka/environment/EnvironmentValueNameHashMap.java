@@ -0,0 +1,329 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An open addressing (linear probing) {@link Map} keyed by {@link EnvironmentValueName} using the case folded name and
+ * ignoring the {@link EnvironmentValueName#type()}, matching the key semantics of a sorted map using
+ * {@link EnvironmentValueName#compareTo(EnvironmentValueName)}. Lookups only hash and compare the case folded text.
+ * <br>
+ * Like a sorted map replacing the value of an existing key keeps the original key. Iteration order is undefined.
+ */
+final class EnvironmentValueNameHashMap<V> extends AbstractMap<EnvironmentValueName<?>, V> {
+
+    /**
+     * Must be a power of two.
+     */
+    private final static int INITIAL_CAPACITY = 16;
+
+    static <V> EnvironmentValueNameHashMap<V> empty() {
+        return new EnvironmentValueNameHashMap<>(
+            new EnvironmentValueName<?>[INITIAL_CAPACITY],
+            new Object[INITIAL_CAPACITY],
+            0
+        );
+    }
+
+    private EnvironmentValueNameHashMap(final EnvironmentValueName<?>[] keys,
+                                        final Object[] values,
+                                        final int size) {
+        super();
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Returns a copy which shares nothing with this map.
+     */
+    EnvironmentValueNameHashMap<V> copy() {
+        return new EnvironmentValueNameHashMap<>(
+            this.keys.clone(),
+            this.values.clone(),
+            this.size
+        );
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return -1 != this.indexOf(key);
+    }
+
+    @Override
+    public V get(final Object key) {
+        final int index = this.indexOf(key);
+        return -1 != index ?
+            this.value(index) :
+            null;
+    }
+
+    @Override
+    public V put(final EnvironmentValueName<?> key,
+                 final V value) {
+        final String caseFolded = key.caseFolded;
+
+        EnvironmentValueName<?>[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = hash(caseFolded) & mask;
+
+        for (; ; ) {
+            final EnvironmentValueName<?> possible = keys[i];
+            if (null == possible) {
+                break;
+            }
+            if (key == possible || caseFolded.equals(possible.caseFolded)) {
+                final V previous = this.value(i);
+                this.values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // keep the load factor under 50%
+        if ((this.size + 1) * 2 > keys.length) {
+            this.resize(keys.length * 2);
+
+            keys = this.keys;
+            mask = keys.length - 1;
+            i = hash(caseFolded) & mask;
+            while (null != keys[i]) {
+                i = (i + 1) & mask;
+            }
+        }
+
+        keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+        return null;
+    }
+
+    @Override
+    public V remove(final Object key) {
+        int i = this.indexOf(key);
+        final V removed;
+
+        if (-1 == i) {
+            removed = null;
+        } else {
+            removed = this.value(i);
+
+            final EnvironmentValueName<?>[] keys = this.keys;
+            final Object[] values = this.values;
+            final int mask = keys.length - 1;
+
+            keys[i] = null;
+            values[i] = null;
+            this.size--;
+
+            // shift following entries back into the gap so probing never needs tombstones
+            int j = i;
+            for (; ; ) {
+                j = (j + 1) & mask;
+
+                final EnvironmentValueName<?> next = keys[j];
+                if (null == next) {
+                    break;
+                }
+
+                final int home = hash(next.caseFolded) & mask;
+                final boolean move = i <= j ?
+                    (home <= i || home > j) :
+                    (home <= i && home > j);
+                if (move) {
+                    keys[i] = next;
+                    values[i] = values[j];
+                    keys[j] = null;
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        final EnvironmentValueName<?>[] keys = this.keys;
+        final Object[] values = this.values;
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        this.size = 0;
+    }
+
+    private int indexOf(final Object key) {
+        int index = -1;
+
+        if (key instanceof EnvironmentValueName) {
+            final EnvironmentValueName<?> name = (EnvironmentValueName<?>) key;
+            final String caseFolded = name.caseFolded;
+
+            final EnvironmentValueName<?>[] keys = this.keys;
+            final int mask = keys.length - 1;
+            int i = hash(caseFolded) & mask;
+
+            for (; ; ) {
+                final EnvironmentValueName<?> possible = keys[i];
+                if (null == possible) {
+                    break;
+                }
+                if (name == possible || caseFolded.equals(possible.caseFolded)) {
+                    index = i;
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the value of the key with the given name ignoring case, without creating an {@link EnvironmentValueName}
+     * or case folded {@link String}.
+     */
+    V getIgnoringCase(final CharSequence name) {
+        final EnvironmentValueName<?>[] keys = this.keys;
+        final int mask = keys.length - 1;
+        int i = hash(name) & mask;
+
+        for (; ; ) {
+            final EnvironmentValueName<?> possible = keys[i];
+            if (null == possible) {
+                return null;
+            }
+            if (EnvironmentValueName.equalsCaseFolded(possible.caseFolded, name)) {
+                return this.value(i);
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void resize(final int capacity) {
+        final EnvironmentValueName<?>[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+
+        final EnvironmentValueName<?>[] keys = new EnvironmentValueName<?>[capacity];
+        final Object[] values = new Object[capacity];
+        final int mask = capacity - 1;
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            final EnvironmentValueName<?> key = oldKeys[j];
+            if (null != key) {
+                int i = hash(key.caseFolded) & mask;
+                while (null != keys[i]) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Spreads the higher bits of the {@link String#hashCode()}, which is cached by the {@link String}.
+     */
+    private static int hash(final String caseFolded) {
+        return spread(
+            caseFolded.hashCode()
+        );
+    }
+
+    /**
+     * Computes the same hash as {@link #hash(String)} would for the case folded name, folding each character in turn.
+     */
+    private static int hash(final CharSequence name) {
+        return spread(
+            EnvironmentValueName.caseFoldedHashCode(name)
+        );
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(final int index) {
+        return (V) this.values[index];
+    }
+
+    private EnvironmentValueName<?>[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    // entrySet.........................................................................................................
+
+    @Override
+    public Set<Entry<EnvironmentValueName<?>, V>> entrySet() {
+        return new AbstractSet<Entry<EnvironmentValueName<?>, V>>() {
+            @Override
+            public Iterator<Entry<EnvironmentValueName<?>, V>> iterator() {
+                return new Iterator<Entry<EnvironmentValueName<?>, V>>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        final EnvironmentValueName<?>[] keys = EnvironmentValueNameHashMap.this.keys;
+                        while (this.index < keys.length && null == keys[this.index]) {
+                            this.index++;
+                        }
+                        return this.index < keys.length;
+                    }
+
+                    @Override
+                    public Entry<EnvironmentValueName<?>, V> next() {
+                        if (false == this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final int index = this.index++;
+                        return new SimpleImmutableEntry<>(
+                            EnvironmentValueNameHashMap.this.keys[index],
+                            EnvironmentValueNameHashMap.this.value(index)
+                        );
+                    }
+
+                    private int index;
+                };
+            }
+
+            @Override
+            public int size() {
+                return EnvironmentValueNameHashMap.this.size;
+            }
+        };
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.Cast;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A persistent (immutable) hash array mapped trie keyed by {@link EnvironmentValueName}, using the case folded name and
+ * ignoring the {@link EnvironmentValueName#type()}. Updates return a new trie that shares all unchanged nodes with the
+ * original, only copying the path to the modified entry. Replacing the value of an existing key keeps the original key.
+ */
+final class EnvironmentValueNameTrie<V> {
+
+    /**
+     * The number of hash bits consumed by each level.
+     */
+    private final static int BITS = 5;
+
+    private final static int MASK = (1 << BITS) - 1;
+
+    private final static EnvironmentValueNameTrie<?> EMPTY = new EnvironmentValueNameTrie<>(
+        null,
+        0
+    );
+
+    static <V> EnvironmentValueNameTrie<V> empty() {
+        return Cast.to(EMPTY);
+    }
+
+    private EnvironmentValueNameTrie(final Node root,
+                                     final int size) {
+        super();
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return 0 == this.size;
+    }
+
+    /**
+     * Returns the value for the given name or null if absent.
+     */
+    V get(final EnvironmentValueName<?> name) {
+        final Node root = this.root;
+        return null != root ?
+            Cast.to(
+                root.get(
+                    hash(name),
+                    0,
+                    name.caseFolded
+                )
+            ) :
+            null;
+    }
+
+    /**
+     * Returns the original key with the given name ignoring case or null if absent, without creating an
+     * {@link EnvironmentValueName} or case folded {@link String}.
+     */
+    EnvironmentValueName<?> keyIgnoringCase(final CharSequence name) {
+        final Node root = this.root;
+        return null != root ?
+            root.key(
+                EnvironmentValueName.caseFoldedHashCode(name),
+                0,
+                name
+            ) :
+            null;
+    }
+
+    /**
+     * Returns a trie with the given name and value, or this if the value is already present.
+     */
+    EnvironmentValueNameTrie<V> put(final EnvironmentValueName<?> name,
+                                    final V value) {
+        final int hash = hash(name);
+        final Node root = this.root;
+
+        final EnvironmentValueNameTrie<V> result;
+        if (null == root) {
+            result = new EnvironmentValueNameTrie<>(
+                BitmapNode.with(
+                    hash,
+                    0,
+                    name,
+                    value
+                ),
+                1
+            );
+        } else {
+            final boolean[] added = new boolean[1];
+            final Node newRoot = root.put(
+                hash,
+                0,
+                name,
+                value,
+                added
+            );
+            result = root == newRoot ?
+                this :
+                new EnvironmentValueNameTrie<>(
+                    newRoot,
+                    this.size + (added[0] ? 1 : 0)
+                );
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a trie without the given name, or this if the name was absent.
+     */
+    EnvironmentValueNameTrie<V> remove(final EnvironmentValueName<?> name) {
+        final Node root = this.root;
+
+        EnvironmentValueNameTrie<V> result = this;
+        if (null != root) {
+            final Node newRoot = root.remove(
+                hash(name),
+                0,
+                name.caseFolded
+            );
+            if (root != newRoot) {
+                result = null == newRoot ?
+                    empty() :
+                    new EnvironmentValueNameTrie<>(
+                        newRoot,
+                        this.size - 1
+                    );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Visits every key and value in no particular order.
+     */
+    void forEach(final BiConsumer<EnvironmentValueName<?>, V> consumer) {
+        final Node root = this.root;
+        if (null != root) {
+            root.forEach(
+                Cast.to(consumer)
+            );
+        }
+    }
+
+    private final Node root;
+
+    private final int size;
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        final int[] hashCode = new int[1];
+        this.forEach(
+            (k, v) -> hashCode[0] += k.caseFolded.hashCode() ^ v.hashCode()
+        );
+        return hashCode[0];
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof EnvironmentValueNameTrie && this.equals0((EnvironmentValueNameTrie<?>) other);
+    }
+
+    private boolean equals0(final EnvironmentValueNameTrie<?> other) {
+        final boolean[] equals = new boolean[]{this.size == other.size};
+        if (equals[0]) {
+            this.forEach(
+                (k, v) -> {
+                    if (equals[0]) {
+                        equals[0] = v.equals(other.get(k));
+                    }
+                }
+            );
+        }
+        return equals[0];
+    }
+
+    private static int hash(final EnvironmentValueName<?> name) {
+        return name.caseFolded.hashCode();
+    }
+
+    // nodes............................................................................................................
+
+    private static abstract class Node {
+
+        abstract Object get(final int hash,
+                            final int shift,
+                            final String caseFolded);
+
+        abstract EnvironmentValueName<?> key(final int hash,
+                                             final int shift,
+                                             final CharSequence name);
+
+        abstract Node put(final int hash,
+                          final int shift,
+                          final EnvironmentValueName<?> key,
+                          final Object value,
+                          final boolean[] added);
+
+        /**
+         * Returns this if the key was absent or null if the node is now empty.
+         */
+        abstract Node remove(final int hash,
+                             final int shift,
+                             final String caseFolded);
+
+        abstract void forEach(final BiConsumer<EnvironmentValueName<?>, Object> consumer);
+    }
+
+    /**
+     * Each present bit has a pair within {@link #array}, either a key and value, or a null key and a sub {@link Node}.
+     */
+    private final static class BitmapNode extends Node {
+
+        static BitmapNode with(final int hash,
+                               final int shift,
+                               final EnvironmentValueName<?> key,
+                               final Object value) {
+            return new BitmapNode(
+                bit(hash, shift),
+                new Object[]{key, value}
+            );
+        }
+
+        private BitmapNode(final int bitmap,
+                           final Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object get(final int hash,
+                   final int shift,
+                   final String caseFolded) {
+            final int bit = bit(hash, shift);
+
+            Object value = null;
+            if (0 != (this.bitmap & bit)) {
+                final int index = this.index(bit);
+                final EnvironmentValueName<?> key = (EnvironmentValueName<?>) this.array[index];
+                final Object valueOrNode = this.array[index + 1];
+
+                if (null == key) {
+                    value = ((Node) valueOrNode).get(
+                        hash,
+                        shift + BITS,
+                        caseFolded
+                    );
+                } else {
+                    if (caseFolded.equals(key.caseFolded)) {
+                        value = valueOrNode;
+                    }
+                }
+            }
+
+            return value;
+        }
+
+        @Override
+        EnvironmentValueName<?> key(final int hash,
+                                    final int shift,
+                                    final CharSequence name) {
+            final int bit = bit(hash, shift);
+
+            EnvironmentValueName<?> found = null;
+            if (0 != (this.bitmap & bit)) {
+                final int index = this.index(bit);
+                final EnvironmentValueName<?> key = (EnvironmentValueName<?>) this.array[index];
+
+                if (null == key) {
+                    found = ((Node) this.array[index + 1]).key(
+                        hash,
+                        shift + BITS,
+                        name
+                    );
+                } else {
+                    if (EnvironmentValueName.equalsCaseFolded(key.caseFolded, name)) {
+                        found = key;
+                    }
+                }
+            }
+
+            return found;
+        }
+
+        @Override
+        Node put(final int hash,
+                 final int shift,
+                 final EnvironmentValueName<?> key,
+                 final Object value,
+                 final boolean[] added) {
+            final int bit = bit(hash, shift);
+            final int index = this.index(bit);
+            final Object[] array = this.array;
+
+            final Node result;
+
+            if (0 == (this.bitmap & bit)) {
+                final Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(array, index, newArray, index + 2, array.length - index);
+
+                added[0] = true;
+                result = new BitmapNode(
+                    this.bitmap | bit,
+                    newArray
+                );
+            } else {
+                final EnvironmentValueName<?> existingKey = (EnvironmentValueName<?>) array[index];
+                final Object existing = array[index + 1];
+
+                if (null == existingKey) {
+                    final Node node = (Node) existing;
+                    final Node newNode = node.put(
+                        hash,
+                        shift + BITS,
+                        key,
+                        value,
+                        added
+                    );
+                    result = node == newNode ?
+                        this :
+                        this.replace(index + 1, newNode);
+                } else {
+                    if (key.caseFolded.equals(existingKey.caseFolded)) {
+                        result = value == existing ?
+                            this :
+                            this.replace(index + 1, value);
+                    } else {
+                        added[0] = true;
+                        result = this.replace(
+                            index,
+                            null,
+                            node(
+                                shift + BITS,
+                                existingKey,
+                                existing,
+                                hash,
+                                key,
+                                value
+                            )
+                        );
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        @Override
+        Node remove(final int hash,
+                    final int shift,
+                    final String caseFolded) {
+            final int bit = bit(hash, shift);
+
+            Node result = this;
+
+            if (0 != (this.bitmap & bit)) {
+                final int index = this.index(bit);
+                final Object[] array = this.array;
+                final EnvironmentValueName<?> key = (EnvironmentValueName<?>) array[index];
+
+                if (null == key) {
+                    final Node node = (Node) array[index + 1];
+                    final Node newNode = node.remove(
+                        hash,
+                        shift + BITS,
+                        caseFolded
+                    );
+                    if (node != newNode) {
+                        result = null != newNode ?
+                            this.replace(index + 1, newNode) :
+                            this.without(bit, index);
+                    }
+                } else {
+                    if (caseFolded.equals(key.caseFolded)) {
+                        result = this.without(bit, index);
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        private Node without(final int bit,
+                             final int index) {
+            final Node result;
+
+            if (this.bitmap == bit) {
+                result = null;
+            } else {
+                final Object[] array = this.array;
+                final Object[] newArray = new Object[array.length - 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+
+                result = new BitmapNode(
+                    this.bitmap ^ bit,
+                    newArray
+                );
+            }
+
+            return result;
+        }
+
+        private BitmapNode replace(final int index,
+                                   final Object value) {
+            final Object[] array = this.array.clone();
+            array[index] = value;
+
+            return new BitmapNode(
+                this.bitmap,
+                array
+            );
+        }
+
+        private BitmapNode replace(final int index,
+                                   final Object key,
+                                   final Object value) {
+            final Object[] array = this.array.clone();
+            array[index] = key;
+            array[index + 1] = value;
+
+            return new BitmapNode(
+                this.bitmap,
+                array
+            );
+        }
+
+        @Override
+        void forEach(final BiConsumer<EnvironmentValueName<?>, Object> consumer) {
+            final Object[] array = this.array;
+
+            for (int i = 0; i < array.length; i += 2) {
+                final EnvironmentValueName<?> key = (EnvironmentValueName<?>) array[i];
+                final Object value = array[i + 1];
+
+                if (null == key) {
+                    ((Node) value).forEach(consumer);
+                } else {
+                    consumer.accept(
+                        key,
+                        value
+                    );
+                }
+            }
+        }
+
+        private int index(final int bit) {
+            return 2 * Integer.bitCount(this.bitmap & (bit - 1));
+        }
+
+        private static int bit(final int hash,
+                               final int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private final int bitmap;
+
+        private final Object[] array;
+    }
+
+    /**
+     * Creates a node holding two different keys.
+     */
+    private static Node node(final int shift,
+                             final EnvironmentValueName<?> key1,
+                             final Object value1,
+                             final int hash2,
+                             final EnvironmentValueName<?> key2,
+                             final Object value2) {
+        final int hash1 = hash(key1);
+
+        final Node node;
+        if (hash1 == hash2) {
+            node = new CollisionNode(
+                hash1,
+                new Object[]{key1, value1, key2, value2}
+            );
+        } else {
+            final boolean[] added = new boolean[1];
+            node = BitmapNode.with(
+                hash1,
+                shift,
+                key1,
+                value1
+            ).put(
+                hash2,
+                shift,
+                key2,
+                value2,
+                added
+            );
+        }
+
+        return node;
+    }
+
+    /**
+     * Holds keys with an identical hash as pairs of keys and values.
+     */
+    private final static class CollisionNode extends Node {
+
+        private CollisionNode(final int hash,
+                              final Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object get(final int hash,
+                   final int shift,
+                   final String caseFolded) {
+            final int index = this.indexOf(caseFolded);
+            return -1 != index ?
+                this.array[index + 1] :
+                null;
+        }
+
+        @Override
+        EnvironmentValueName<?> key(final int hash,
+                                    final int shift,
+                                    final CharSequence name) {
+            final Object[] array = this.array;
+
+            EnvironmentValueName<?> found = null;
+            for (int i = 0; i < array.length; i += 2) {
+                final EnvironmentValueName<?> key = (EnvironmentValueName<?>) array[i];
+                if (EnvironmentValueName.equalsCaseFolded(key.caseFolded, name)) {
+                    found = key;
+                    break;
+                }
+            }
+
+            return found;
+        }
+
+        @Override
+        Node put(final int hash,
+                 final int shift,
+                 final EnvironmentValueName<?> key,
+                 final Object value,
+                 final boolean[] added) {
+            final Node result;
+
+            if (this.hash == hash) {
+                final Object[] array = this.array;
+                final int index = this.indexOf(key.caseFolded);
+
+                if (-1 != index) {
+                    if (value == array[index + 1]) {
+                        result = this;
+                    } else {
+                        final Object[] newArray = array.clone();
+                        newArray[index + 1] = value;
+                        result = new CollisionNode(
+                            hash,
+                            newArray
+                        );
+                    }
+                } else {
+                    final Object[] newArray = new Object[array.length + 2];
+                    System.arraycopy(array, 0, newArray, 0, array.length);
+                    newArray[array.length] = key;
+                    newArray[array.length + 1] = value;
+
+                    added[0] = true;
+                    result = new CollisionNode(
+                        hash,
+                        newArray
+                    );
+                }
+            } else {
+                // nest this collision node within a bitmap node and add the new key beside it
+                result = new BitmapNode(
+                    BitmapNode.bit(this.hash, shift),
+                    new Object[]{null, this}
+                ).put(
+                    hash,
+                    shift,
+                    key,
+                    value,
+                    added
+                );
+            }
+
+            return result;
+        }
+
+        @Override
+        Node remove(final int hash,
+                    final int shift,
+                    final String caseFolded) {
+            final Object[] array = this.array;
+            final int index = this.indexOf(caseFolded);
+
+            final Node result;
+            if (-1 == index) {
+                result = this;
+            } else {
+                if (2 == array.length) {
+                    result = null;
+                } else {
+                    final Object[] newArray = new Object[array.length - 2];
+                    System.arraycopy(array, 0, newArray, 0, index);
+                    System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+
+                    result = new CollisionNode(
+                        this.hash,
+                        newArray
+                    );
+                }
+            }
+
+            return result;
+        }
+
+        @Override
+        void forEach(final BiConsumer<EnvironmentValueName<?>, Object> consumer) {
+            final Object[] array = this.array;
+
+            for (int i = 0; i < array.length; i += 2) {
+                consumer.accept(
+                    (EnvironmentValueName<?>) array[i],
+                    array[i + 1]
+                );
+            }
+        }
+
+        private int indexOf(final String caseFolded) {
+            final Object[] array = this.array;
+
+            int index = -1;
+            for (int i = 0; i < array.length; i += 2) {
+                if (caseFolded.equals(((EnvironmentValueName<?>) array[i]).caseFolded)) {
+                    index = i;
+                    break;
+                }
+            }
+
+            return index;
+        }
+
+        private final int hash;
+
+        private final Object[] array;
+    }
+}
@@ -20,8 +20,20 @@ package walkingkooka.environment;
 
 import walkingkooka.watch.ValueChangeWatcher;
 
+import java.util.List;
+
 /**
  * A {@link ValueChangeWatcher} that receives all {@link EnvironmentContext} value change events.
  */
 public interface EnvironmentWatcher extends ValueChangeWatcher<EnvironmentValueNameAndValue<?>> {
+
+    /**
+     * Receives all the changes made by a single {@link EnvironmentContext#update(java.util.function.Consumer)}.
+     * The default fires each change individually to {@link #onValueChange(java.util.Optional, java.util.Optional)}.
+     */
+    default void onValueChanges(final List<EnvironmentValueChange> changes) {
+        for (final EnvironmentValueChange change : changes) {
+            change.fire(this);
+        }
+    }
 }
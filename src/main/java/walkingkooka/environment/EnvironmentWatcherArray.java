@@ -0,0 +1,459 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread safe collection of {@link EnvironmentWatcher}. Watchers are held in a copy on write array, so events are
+ * fired without any locking, and adding or removing a watcher never disturbs an event that is being fired.
+ * <br>
+ * Removing a watcher only marks its entry with a removal version, and events skip entries removed before they
+ * started, so a watcher removed while an event is being fired still receives that event. Marked entries are dropped
+ * from the array when they reach half of its length, so removal costs O(1) amortized and the array stays bounded by
+ * twice the number of watchers. A marked entry releases its watcher as soon as no event that started before the
+ * removal is still being fired, so a removed watcher is not kept reachable until the entry is dropped.
+ * Note the event is only fired to watchers if the old and new values are different.
+ */
+final class EnvironmentWatcherArray implements EnvironmentWatcher {
+
+    static EnvironmentWatcherArray empty() {
+        return new EnvironmentWatcherArray();
+    }
+
+    private EnvironmentWatcherArray() {
+        super();
+    }
+
+    Runnable add(final EnvironmentWatcher watcher) {
+        return this.add0(
+            watcher,
+            false
+        );
+    }
+
+    Runnable addOnce(final EnvironmentWatcher watcher) {
+        return this.add0(
+            watcher,
+            true
+        );
+    }
+
+    private Runnable add0(final EnvironmentWatcher watcher,
+                          final boolean once) {
+        Objects.requireNonNull(watcher, "watcher");
+
+        final Entry entry = new Entry(
+            watcher,
+            once
+        );
+
+        Entry[] entries;
+        Entry[] updated;
+
+        do {
+            entries = this.entries.get();
+
+            final int count = entries.length;
+            updated = Arrays.copyOf(
+                entries,
+                count + 1
+            );
+            updated[count] = entry;
+        } while (false == this.entries.compareAndSet(entries, updated));
+
+        return entry::remove;
+    }
+
+    /**
+     * Called after an entry is marked as removed, dropping all marked entries once they reach half of the array.
+     */
+    private void removed() {
+        final int removed = this.removed.incrementAndGet();
+
+        if (removed * 2 >= this.entries.get().length) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Drops every entry marked as removed. Only entries already counted by {@link #removed()} are subtracted, an entry
+     * dropped before it was counted is never counted, so the number of removed entries never drifts.
+     */
+    private void compact() {
+        Entry[] entries;
+        Entry[] updated;
+        Entry[] dropped;
+        int i;
+        int d;
+
+        do {
+            entries = this.entries.get();
+
+            final int count = entries.length;
+            updated = new Entry[count];
+            dropped = new Entry[count];
+            i = 0;
+            d = 0;
+
+            for (final Entry entry : entries) {
+                if (entry.isRemoved()) {
+                    dropped[d++] = entry;
+                } else {
+                    updated[i++] = entry;
+                }
+            }
+
+            if (0 == d) {
+                break;
+            }
+
+            updated = 0 == i ?
+                NO_ENTRIES :
+                Arrays.copyOf(
+                    updated,
+                    i
+                );
+        } while (false == this.entries.compareAndSet(entries, updated));
+
+        int counted = 0;
+        for (int j = 0; j < d; j++) {
+            if (dropped[j].drop()) {
+                counted++;
+            }
+        }
+        this.removed.addAndGet(-counted);
+    }
+
+    /**
+     * Note the event is only fired if the old and new values are different.
+     */
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        if (false == oldValue.equals(newValue)) {
+            this.firing.incrementAndGet();
+            try {
+                final long version = this.version.get();
+
+                for (final Entry entry : this.entries.get()) {
+                    entry.onValueChange(
+                        version,
+                        oldValue,
+                        newValue
+                    );
+                }
+            } finally {
+                this.fired();
+            }
+        }
+    }
+
+    /**
+     * Fires all the changes to each watcher, a once watcher treats the entire batch as a single event.
+     */
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        if (false == changes.isEmpty()) {
+            this.firing.incrementAndGet();
+            try {
+                final long version = this.version.get();
+
+                for (final Entry entry : this.entries.get()) {
+                    entry.onValueChanges(
+                        version,
+                        changes
+                    );
+                }
+            } finally {
+                this.fired();
+            }
+        }
+    }
+
+    /**
+     * Called when an event finishes, the last event releases the watchers of entries removed while it was fired.
+     */
+    private void fired() {
+        if (0 == this.firing.decrementAndGet()) {
+            this.release();
+        }
+    }
+
+    /**
+     * Queues a removed entry so its watcher is released once no event that might still fire it remains.
+     */
+    private void release(final Entry entry) {
+        Entry head;
+        do {
+            head = this.releasing.get();
+            entry.nextReleasing = head;
+        } while (false == this.releasing.compareAndSet(head, entry));
+
+        this.release();
+    }
+
+    /**
+     * Releases the watchers of queued entries if no event is being fired. Every queued entry was marked before it was
+     * queued, so an event that starts after no events were seen reads a later version and skips them.
+     */
+    private void release() {
+        while (0 == this.firing.get()) {
+            Entry entry = this.releasing.getAndSet(null);
+            if (null == entry) {
+                break;
+            }
+
+            final boolean idle = 0 == this.firing.get();
+
+            while (null != entry) {
+                final Entry next = entry.nextReleasing;
+                entry.nextReleasing = null;
+
+                if (idle) {
+                    entry.watcher = null;
+                } else {
+                    // an event started, which will try again when it finishes
+                    this.release(entry);
+                }
+                entry = next;
+            }
+        }
+    }
+
+    /**
+     * Adds every watcher to the given {@link Set}, used to find the distinct watchers interested in a batch.
+     */
+    void addTo(final Set<EnvironmentWatcher> watchers) {
+        for (final Entry entry : this.entries.get()) {
+            final EnvironmentWatcher watcher = entry.watcher;
+            if (null != watcher && false == entry.isRemoved()) {
+                watchers.add(watcher);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        for (final Entry entry : this.entries.get()) {
+            if (false == entry.isRemoved()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // @VisibleForTesting
+    int size() {
+        int size = 0;
+        for (final Entry entry : this.entries.get()) {
+            if (false == entry.isRemoved()) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The length of the array including entries marked as removed but not yet dropped.
+     */
+    // @VisibleForTesting
+    int capacity() {
+        return this.entries.get().length;
+    }
+
+    /**
+     * Counts the entries still holding their watcher, including removed entries that have not been released.
+     */
+    // @VisibleForTesting
+    int referenced() {
+        int referenced = 0;
+        for (final Entry entry : this.entries.get()) {
+            if (null != entry.watcher) {
+                referenced++;
+            }
+        }
+        return referenced;
+    }
+
+    private final AtomicReference<Entry[]> entries = new AtomicReference<>(NO_ENTRIES);
+
+    /**
+     * The number of entries marked as removed that are still in {@link #entries}.
+     */
+    private final AtomicInteger removed = new AtomicInteger();
+
+    /**
+     * Incremented by every removal, events fire entries that were not removed before the version they started with.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The number of events being fired.
+     */
+    private final AtomicInteger firing = new AtomicInteger();
+
+    /**
+     * Removed entries whose watcher has not been released yet, linked through {@link Entry#nextReleasing}.
+     */
+    private final AtomicReference<Entry> releasing = new AtomicReference<>();
+
+    private final static Entry[] NO_ENTRIES = new Entry[0];
+
+    /**
+     * Holds a single watcher, once watchers are only fired by the first event that claims them.
+     */
+    private final class Entry {
+
+        Entry(final EnvironmentWatcher watcher,
+              final boolean once) {
+            this.watcher = watcher;
+            this.fired = once ?
+                new AtomicBoolean() :
+                null;
+        }
+
+        void onValueChange(final long version,
+                           final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                           final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+            final EnvironmentWatcher watcher = this.watcher;
+            if (null != watcher && this.claim(version)) {
+                watcher.onValueChange(
+                    oldValue,
+                    newValue
+                );
+            }
+        }
+
+        void onValueChanges(final long version,
+                            final List<EnvironmentValueChange> changes) {
+            final EnvironmentWatcher watcher = this.watcher;
+            if (null != watcher && this.claim(version)) {
+                watcher.onValueChanges(changes);
+            }
+        }
+
+        /**
+         * Returns true if the watcher should be fired by an event that started at the given version, a once watcher
+         * is removed by the first event that claims it.
+         */
+        private boolean claim(final long version) {
+            boolean claim = this.removed.get() > version;
+
+            if (claim) {
+                final AtomicBoolean fired = this.fired;
+                if (null != fired) {
+                    claim = fired.compareAndSet(false, true);
+                    if (claim) {
+                        this.remove();
+                    }
+                }
+            }
+
+            return claim;
+        }
+
+        /**
+         * Marks this entry as removed, later removals are ignored. Events that start after the mark skip this entry, so
+         * the watcher is released at once unless an event is being fired, otherwise by the last event to finish.
+         */
+        void remove() {
+            final EnvironmentWatcherArray array = EnvironmentWatcherArray.this;
+
+            if (this.removed.compareAndSet(NOT_REMOVED, array.version.incrementAndGet())) {
+                if (this.counted.compareAndSet(NOT_COUNTED, COUNTED)) {
+                    array.removed();
+                }
+                array.release(this);
+            }
+        }
+
+        /**
+         * Called when compaction drops this entry, returning true if it was already counted as removed.
+         */
+        boolean drop() {
+            return COUNTED == this.counted.getAndSet(DROPPED);
+        }
+
+        boolean isRemoved() {
+            return NOT_REMOVED != this.removed.get();
+        }
+
+        /**
+         * Cleared once this entry is removed and no event that might still fire it remains.
+         */
+        volatile EnvironmentWatcher watcher;
+
+        private final AtomicBoolean fired;
+
+        /**
+         * Whether this entry has been counted by {@link EnvironmentWatcherArray#removed()}, or dropped by compaction.
+         */
+        private final AtomicInteger counted = new AtomicInteger(NOT_COUNTED);
+
+        /**
+         * The next entry waiting for its watcher to be released.
+         */
+        private Entry nextReleasing;
+
+        /**
+         * The version when this entry was removed.
+         */
+        private final AtomicLong removed = new AtomicLong(NOT_REMOVED);
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.watcher);
+        }
+    }
+
+    private final static long NOT_REMOVED = Long.MAX_VALUE;
+
+    private final static int NOT_COUNTED = 0;
+
+    private final static int COUNTED = 1;
+
+    private final static int DROPPED = 2;
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder();
+        b.append('[');
+
+        String separator = "";
+        for (final Entry entry : this.entries.get()) {
+            if (false == entry.isRemoved()) {
+                b.append(separator);
+                b.append(entry);
+                separator = ", ";
+            }
+        }
+
+        b.append(']');
+        return b.toString();
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.collect.list.Lists;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link EnvironmentWatcher} that queues events and delivers them to another {@link EnvironmentWatcher} on an
+ * {@link Executor}, so a writer never waits for a slow watcher. Events are delivered in the order they were fired,
+ * by at most one task at a time. The queue is bounded, with an {@link EnvironmentWatcherOverflow} selecting what
+ * happens when it is full.
+ * <br>
+ * Exceptions thrown by the watcher are given to the uncaught exception handler of the delivering thread, and delivery
+ * continues with the next event. If the {@link Executor} rejects a drain, the queued events are discarded and the
+ * rejection is given to the uncaught exception handler of the firing thread, so writers never wait for a drain that
+ * will never run.
+ * <br>
+ * A watcher that fires into a context that in turn fires this watcher must not use
+ * {@link EnvironmentWatcherOverflow#BLOCK}, as it would wait for itself.
+ */
+public final class EnvironmentWatcherAsync implements EnvironmentWatcher {
+
+    public static EnvironmentWatcherAsync with(final EnvironmentWatcher watcher,
+                                               final Executor executor,
+                                               final int capacity,
+                                               final EnvironmentWatcherOverflow overflow) {
+        Objects.requireNonNull(watcher, "watcher");
+        Objects.requireNonNull(executor, "executor");
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity + " < 1");
+        }
+        Objects.requireNonNull(overflow, "overflow");
+
+        return new EnvironmentWatcherAsync(
+            watcher,
+            executor,
+            capacity,
+            overflow
+        );
+    }
+
+    private EnvironmentWatcherAsync(final EnvironmentWatcher watcher,
+                                    final Executor executor,
+                                    final int capacity,
+                                    final EnvironmentWatcherOverflow overflow) {
+        super();
+
+        this.watcher = watcher;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Note the event is only queued if the old and new values are different.
+     */
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        if (false == oldValue.equals(newValue)) {
+            this.enqueue(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        oldValue,
+                        newValue
+                    )
+                )
+            );
+        }
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        if (false == changes.isEmpty()) {
+            this.enqueue(changes);
+        }
+    }
+
+    private void enqueue(final List<EnvironmentValueChange> changes) {
+        List<EnvironmentValueChange> queued = changes;
+        final boolean drain;
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final ArrayDeque<List<EnvironmentValueChange>> queue = this.queue;
+
+            while (null != queued && queue.size() >= this.capacity) {
+                switch (this.overflow) {
+                    case BLOCK:
+                        if (this.draining) {
+                            this.notFull.awaitUninterruptibly();
+                        } else {
+                            // nothing would ever make room, so start a drain before waiting
+                            this.draining = true;
+                            lock.unlock();
+                            try {
+                                this.schedule();
+                            } finally {
+                                lock.lock();
+                            }
+                        }
+                        break;
+                    case DROP_OLDEST:
+                        queue.removeFirst();
+                        break;
+                    case COALESCE:
+                        queued = coalesce(
+                            queue,
+                            queued
+                        );
+                        break;
+                    default:
+                        throw new UnsupportedOperationException();
+                }
+            }
+
+            if (null != queued) {
+                queue.addLast(queued);
+            }
+
+            drain = false == this.draining && false == queue.isEmpty();
+            if (drain) {
+                this.draining = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (drain) {
+            this.schedule();
+        }
+    }
+
+    /**
+     * Hands a drain to the {@link Executor}, with {@link #draining} already set. If the executor rejects the drain the
+     * queued events could never be delivered, so they are discarded, blocked writers are woken, and the rejection is
+     * given to the uncaught exception handler of the current thread.
+     */
+    private void schedule() {
+        try {
+            this.executor.execute(this::drain);
+        } catch (final RuntimeException cause) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                this.queue.clear();
+                this.draining = false;
+                this.notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            report(cause);
+        }
+    }
+
+    private static void report(final Throwable cause) {
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler()
+            .uncaughtException(
+                thread,
+                cause
+            );
+    }
+
+    /**
+     * Merges all queued changes and the new changes into a single batch, leaving the queue empty. Returns null if the
+     * merged changes cancel each other out.
+     */
+    private static List<EnvironmentValueChange> coalesce(final ArrayDeque<List<EnvironmentValueChange>> queue,
+                                                         final List<EnvironmentValueChange> changes) {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+
+        for (final List<EnvironmentValueChange> queued : queue) {
+            batch.onValueChanges(queued);
+        }
+        queue.clear();
+
+        batch.onValueChanges(changes);
+
+        final List<EnvironmentValueChange> coalesced = batch.changes();
+        return coalesced.isEmpty() ?
+            null :
+            coalesced;
+    }
+
+    /**
+     * Delivers queued events until the queue is empty. If an {@link Error} escapes a watcher the remaining events are
+     * handed to a new drain, so {@link #draining} is never left set without a drain to clear it.
+     */
+    private void drain() {
+        final ReentrantLock lock = this.lock;
+        boolean drained = false;
+
+        try {
+            for (; ; ) {
+                final List<EnvironmentValueChange> changes;
+
+                lock.lock();
+                try {
+                    changes = this.queue.pollFirst();
+                    if (null == changes) {
+                        this.draining = false;
+                        drained = true;
+                        break;
+                    }
+                    this.notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    if (1 == changes.size()) {
+                        changes.get(0)
+                            .fire(this.watcher);
+                    } else {
+                        this.watcher.onValueChanges(changes);
+                    }
+                } catch (final RuntimeException cause) {
+                    report(cause);
+                }
+            }
+        } finally {
+            if (false == drained) {
+                this.redrain();
+            }
+        }
+    }
+
+    /**
+     * Called when a drain failed, scheduling another drain if events remain otherwise clearing {@link #draining}.
+     */
+    private void redrain() {
+        final ReentrantLock lock = this.lock;
+
+        boolean redrain;
+        lock.lock();
+        try {
+            redrain = false == this.queue.isEmpty();
+            if (false == redrain) {
+                this.draining = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (redrain) {
+            this.schedule();
+        }
+    }
+
+    // @VisibleForTesting
+    int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final EnvironmentWatcher watcher;
+
+    private final Executor executor;
+
+    private final int capacity;
+
+    private final EnvironmentWatcherOverflow overflow;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notFull = this.lock.newCondition();
+
+    /**
+     * Each entry holds the changes from a single event or batch.
+     */
+    private final ArrayDeque<List<EnvironmentValueChange>> queue = new ArrayDeque<>();
+
+    /**
+     * True while a drain task has been given to the {@link Executor} and has not yet found the queue empty.
+     */
+    private boolean draining;
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.watcher + " " + this.overflow + " " + this.capacity;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.map.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A {@link EnvironmentWatcher} that records the events fired during a batch update, coalescing multiple events for the
+ * same {@link EnvironmentValueName} into a single {@link EnvironmentValueChange} holding the first old value and the
+ * last new value.
+ */
+final class EnvironmentWatcherBatch implements EnvironmentWatcher {
+
+    static EnvironmentWatcherBatch empty() {
+        return new EnvironmentWatcherBatch();
+    }
+
+    private EnvironmentWatcherBatch() {
+        super();
+    }
+
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        final EnvironmentValueChange change = EnvironmentValueChange.with(
+            oldValue,
+            newValue
+        );
+        final EnvironmentValueName<?> name = change.name();
+
+        final EnvironmentValueChange previous = this.changes.get(name);
+        this.changes.put(
+            name,
+            null == previous ?
+                change :
+                EnvironmentValueChange.with(
+                    previous.oldValue(),
+                    newValue
+                )
+        );
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        for (final EnvironmentValueChange change : changes) {
+            change.fire(this);
+        }
+    }
+
+    /**
+     * Returns the coalesced changes in the order each name was first changed, ignoring any name whose last value is
+     * the same as its first.
+     */
+    List<EnvironmentValueChange> changes() {
+        final List<EnvironmentValueChange> changes = Lists.array();
+
+        for (final EnvironmentValueChange change : this.changes.values()) {
+            if (false == change.oldValue().equals(change.newValue())) {
+                changes.add(change);
+            }
+        }
+
+        return Lists.readOnly(changes);
+    }
+
+    private final Map<EnvironmentValueName<?>, EnvironmentValueChange> changes = Maps.ordered();
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.changes.values()
+            .toString();
+    }
+}
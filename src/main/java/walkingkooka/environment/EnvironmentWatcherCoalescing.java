@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.datetime.HasNow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An {@link EnvironmentWatcher} that holds changes for a window of time, merging the changes for each
+ * {@link EnvironmentValueName} so the wrapped watcher only receives the first old value and the last new value.
+ * <br>
+ * The window starts with the first held change. Held changes are delivered as a single
+ * {@link EnvironmentWatcher#onValueChanges(List)} by the first change that arrives after the window has elapsed, or
+ * when {@link #flush()} is called. No timer is used, so a scheduler that calls {@link #flush()} is required to deliver
+ * the last burst if no further changes are expected.
+ * <br>
+ * Changes are delivered on the thread that fired the change or called {@link #flush()}, outside any lock.
+ */
+public final class EnvironmentWatcherCoalescing implements EnvironmentWatcher {
+
+    public static EnvironmentWatcherCoalescing with(final EnvironmentWatcher watcher,
+                                                    final Duration window,
+                                                    final HasNow clock) {
+        Objects.requireNonNull(watcher, "watcher");
+        Objects.requireNonNull(window, "window");
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("Invalid window " + window + " < 0");
+        }
+        Objects.requireNonNull(clock, "clock");
+
+        return new EnvironmentWatcherCoalescing(
+            watcher,
+            window,
+            clock
+        );
+    }
+
+    private EnvironmentWatcherCoalescing(final EnvironmentWatcher watcher,
+                                         final Duration window,
+                                         final HasNow clock) {
+        super();
+
+        this.watcher = watcher;
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        final List<EnvironmentValueChange> changes;
+
+        synchronized (this) {
+            this.pending()
+                .onValueChange(
+                    oldValue,
+                    newValue
+                );
+            changes = this.takeIfElapsed();
+        }
+
+        this.fire(changes);
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        final List<EnvironmentValueChange> elapsed;
+
+        synchronized (this) {
+            this.pending()
+                .onValueChanges(changes);
+            elapsed = this.takeIfElapsed();
+        }
+
+        this.fire(elapsed);
+    }
+
+    /**
+     * Delivers any held changes immediately.
+     */
+    public void flush() {
+        final List<EnvironmentValueChange> changes;
+
+        synchronized (this) {
+            changes = this.take();
+        }
+
+        this.fire(changes);
+    }
+
+    private EnvironmentWatcherBatch pending() {
+        EnvironmentWatcherBatch pending = this.pending;
+        if (null == pending) {
+            pending = EnvironmentWatcherBatch.empty();
+            this.pending = pending;
+            this.started = this.clock.now();
+        }
+        return pending;
+    }
+
+    private List<EnvironmentValueChange> takeIfElapsed() {
+        final LocalDateTime due = this.started.plus(this.window);
+
+        return due.isAfter(this.clock.now()) ?
+            null :
+            this.take();
+    }
+
+    private List<EnvironmentValueChange> take() {
+        final EnvironmentWatcherBatch pending = this.pending;
+        this.pending = null;
+        this.started = null;
+
+        return null != pending ?
+            pending.changes() :
+            null;
+    }
+
+    private void fire(final List<EnvironmentValueChange> changes) {
+        if (null != changes && false == changes.isEmpty()) {
+            this.watcher.onValueChanges(changes);
+        }
+    }
+
+    private final EnvironmentWatcher watcher;
+
+    private final Duration window;
+
+    private final HasNow clock;
+
+    /**
+     * The held changes, or null when nothing is held.
+     */
+    private EnvironmentWatcherBatch pending;
+
+    /**
+     * When the first held change arrived.
+     */
+    private LocalDateTime started;
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.watcher + " " + this.window;
+    }
+}
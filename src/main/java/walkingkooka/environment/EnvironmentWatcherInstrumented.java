@@ -0,0 +1,169 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.collect.list.Lists;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * An {@link EnvironmentWatcher} that times each event delivered to the watcher it wraps, recording the statistics
+ * returned by {@link #statistics()}. Exceptions thrown by the watcher are counted and never propagate, so a failing
+ * watcher cannot stop an event reaching the watchers after it.
+ */
+final class EnvironmentWatcherInstrumented implements EnvironmentWatcher {
+
+    static EnvironmentWatcherInstrumented with(final EnvironmentWatcher watcher,
+                                               final long budgetNanos,
+                                               final LongSupplier nanoTime) {
+        return new EnvironmentWatcherInstrumented(
+            watcher,
+            budgetNanos,
+            nanoTime
+        );
+    }
+
+    private EnvironmentWatcherInstrumented(final EnvironmentWatcher watcher,
+                                           final long budgetNanos,
+                                           final LongSupplier nanoTime) {
+        super();
+
+        this.watcher = watcher;
+        this.budgetNanos = budgetNanos;
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        final long start = this.nanoTime.getAsLong();
+        RuntimeException thrown = null;
+
+        try {
+            this.watcher.onValueChange(
+                oldValue,
+                newValue
+            );
+        } catch (final RuntimeException cause) {
+            thrown = cause;
+        }
+
+        this.record(
+            this.nanoTime.getAsLong() - start,
+            thrown
+        );
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        final long start = this.nanoTime.getAsLong();
+        RuntimeException thrown = null;
+
+        try {
+            this.watcher.onValueChanges(changes);
+        } catch (final RuntimeException cause) {
+            thrown = cause;
+        }
+
+        this.record(
+            this.nanoTime.getAsLong() - start,
+            thrown
+        );
+    }
+
+    private synchronized void record(final long nanos,
+                                     final RuntimeException thrown) {
+        this.events++;
+        if (null != thrown) {
+            this.exceptions++;
+            this.lastException = thrown;
+        }
+        if (nanos > this.budgetNanos) {
+            this.slowEvents++;
+        }
+        this.totalNanos += nanos;
+        this.maxNanos = Math.max(
+            this.maxNanos,
+            nanos
+        );
+
+        this.histogram[bucket(nanos)]++;
+    }
+
+    /**
+     * Events under 1 microsecond are counted in the first bucket, each following bucket doubles the upper bound.
+     */
+    static int bucket(final long nanos) {
+        final long micros = Math.max(
+            0,
+            nanos / 1000
+        );
+
+        return Math.min(
+            64 - Long.numberOfLeadingZeros(micros),
+            EnvironmentWatcherStatistics.BUCKETS - 1
+        );
+    }
+
+    synchronized EnvironmentWatcherStatistics statistics() {
+        final List<Long> histogram = Lists.array();
+        for (final long count : this.histogram) {
+            histogram.add(count);
+        }
+
+        return EnvironmentWatcherStatistics.with(
+            this.watcher,
+            this.events,
+            this.exceptions,
+            this.slowEvents,
+            this.totalNanos,
+            this.maxNanos,
+            histogram,
+            Optional.ofNullable(this.lastException)
+        );
+    }
+
+    private final EnvironmentWatcher watcher;
+
+    private final long budgetNanos;
+
+    private final LongSupplier nanoTime;
+
+    private long events;
+
+    private long exceptions;
+
+    private long slowEvents;
+
+    private long totalNanos;
+
+    private long maxNanos;
+
+    private final long[] histogram = new long[EnvironmentWatcherStatistics.BUCKETS];
+
+    private RuntimeException lastException;
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.watcher.toString();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A {@link EnvironmentWatcher} that only forwards changes to the given {@link EnvironmentValueName names}, ignoring
+ * case and type. This is used by {@link EnvironmentContext} implementations that do not index watchers by name.
+ */
+final class EnvironmentWatcherNames implements EnvironmentWatcher {
+
+    static EnvironmentWatcherNames with(final Set<EnvironmentValueName<?>> names,
+                                        final EnvironmentWatcher watcher) {
+        return new EnvironmentWatcherNames(
+            caseFolded(names),
+            Objects.requireNonNull(watcher, "watcher")
+        );
+    }
+
+    /**
+     * Returns the case folded text of each name, failing if names is null or empty.
+     */
+    static Set<String> caseFolded(final Set<EnvironmentValueName<?>> names) {
+        Objects.requireNonNull(names, "names");
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("Missing names");
+        }
+
+        final Set<String> caseFolded = Sets.hash();
+        for (final EnvironmentValueName<?> name : names) {
+            caseFolded.add(
+                Objects.requireNonNull(name, "name").caseFolded
+            );
+        }
+        return Sets.readOnly(caseFolded);
+    }
+
+    private EnvironmentWatcherNames(final Set<String> names,
+                                    final EnvironmentWatcher watcher) {
+        super();
+
+        this.names = names;
+        this.watcher = watcher;
+    }
+
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        final EnvironmentValueName<?> name = oldValue.orElseGet(newValue::get)
+            .name();
+
+        if (this.names.contains(name.caseFolded)) {
+            this.watcher.onValueChange(
+                oldValue,
+                newValue
+            );
+        }
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        List<EnvironmentValueChange> filtered = null;
+
+        for (final EnvironmentValueChange change : changes) {
+            if (this.names.contains(change.name().caseFolded)) {
+                if (null == filtered) {
+                    filtered = Lists.array();
+                }
+                filtered.add(change);
+            }
+        }
+
+        if (null != filtered) {
+            this.watcher.onValueChanges(filtered);
+        }
+    }
+
+    // @VisibleForTesting
+    final Set<String> names;
+
+    private final EnvironmentWatcher watcher;
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.watcher.toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+/**
+ * Controls what happens when an event is fired to an asynchronous {@link EnvironmentWatcher} whose queue is full.
+ */
+public enum EnvironmentWatcherOverflow {
+
+    /**
+     * The writer waits until the watcher has taken an event from the queue.
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued event is dropped, watchers will miss that change.
+     */
+    DROP_OLDEST,
+
+    /**
+     * All queued events and the new event are merged into a single batch of changes, holding the first old value and
+     * the last new value for each {@link EnvironmentValueName}. Watchers see the net effect but not each step.
+     */
+    COALESCE
+}
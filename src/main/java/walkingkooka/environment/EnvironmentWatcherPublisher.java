@@ -0,0 +1,314 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Flow.Publisher} of the changes to an {@link EnvironmentContext}. The last changes are held in a fixed size
+ * ring buffer and replayed to each new {@link Flow.Subscriber}, which then receives changes as it requests them.
+ * <br>
+ * Changes are delivered on the thread that made the change or requested more, never by more than one thread at a time
+ * for a single subscriber. A subscriber that falls further behind than the replay buffer is cancelled and receives
+ * {@link Flow.Subscriber#onError(Throwable)}, as changes it has not yet received have been overwritten.
+ * <br>
+ * {@link #close()} stops watching the context, and subscribers complete after they have received every held change.
+ */
+public final class EnvironmentWatcherPublisher implements Flow.Publisher<EnvironmentValueChange>,
+    EnvironmentWatcher,
+    AutoCloseable {
+
+    /**
+     * Creates a {@link EnvironmentWatcherPublisher} watching the given {@link EnvironmentContext}, replaying up to the
+     * given number of changes to new subscribers.
+     */
+    public static EnvironmentWatcherPublisher with(final EnvironmentContext context,
+                                                   final int replay) {
+        Objects.requireNonNull(context, "context");
+        if (replay < 1) {
+            throw new IllegalArgumentException("Invalid replay " + replay + " < 1");
+        }
+
+        final EnvironmentWatcherPublisher publisher = new EnvironmentWatcherPublisher(replay);
+        publisher.remover = context.addEnvironmentWatcher(publisher);
+        return publisher;
+    }
+
+    private EnvironmentWatcherPublisher(final int replay) {
+        super();
+
+        this.ring = new EnvironmentValueChange[replay];
+    }
+
+    // Flow.Publisher...................................................................................................
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super EnvironmentValueChange> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        final EnvironmentWatcherPublisherSubscription subscription;
+
+        synchronized (this) {
+            subscription = new EnvironmentWatcherPublisherSubscription(
+                subscriber,
+                Math.max(
+                    0,
+                    this.sequence - this.ring.length
+                )
+            );
+            this.subscriptions.add(subscription);
+        }
+
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    // EnvironmentWatcher...............................................................................................
+
+    /**
+     * Note the change is only published if the old and new values are different.
+     */
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        if (false == oldValue.equals(newValue)) {
+            this.publish(
+                EnvironmentValueChange.with(
+                    oldValue,
+                    newValue
+                )
+            );
+            this.drain();
+        }
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        if (false == changes.isEmpty()) {
+            for (final EnvironmentValueChange change : changes) {
+                this.publish(change);
+            }
+            this.drain();
+        }
+    }
+
+    private synchronized void publish(final EnvironmentValueChange change) {
+        if (false == this.closed) {
+            final EnvironmentValueChange[] ring = this.ring;
+            ring[(int) (this.sequence % ring.length)] = change;
+            this.sequence++;
+        }
+    }
+
+    /**
+     * Stops watching the context, subscribers complete once they have received every held change.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        }
+
+        this.remover.run();
+        this.drain();
+    }
+
+    private void drain() {
+        for (final EnvironmentWatcherPublisherSubscription subscription : this.subscriptions) {
+            subscription.drain();
+        }
+    }
+
+    /**
+     * The most recent changes, the change with sequence <code>s</code> is held at <code>s % ring.length</code>.
+     */
+    private final EnvironmentValueChange[] ring;
+
+    /**
+     * The sequence of the next change, also the total number of published changes.
+     */
+    private long sequence;
+
+    private boolean closed;
+
+    private Runnable remover;
+
+    private final List<EnvironmentWatcherPublisherSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // @VisibleForTesting
+    int subscriptionCount() {
+        return this.subscriptions.size();
+    }
+
+    /**
+     * A single {@link Flow.Subscriber} with its position in the changes and outstanding demand.
+     */
+    private final class EnvironmentWatcherPublisherSubscription implements Flow.Subscription {
+
+        EnvironmentWatcherPublisherSubscription(final Flow.Subscriber<? super EnvironmentValueChange> subscriber,
+                                                final long next) {
+            this.subscriber = subscriber;
+            this.next = next;
+        }
+
+        /**
+         * An invalid count is recorded and signalled by {@link #drain()}, so it is never signalled while another thread
+         * is delivering a change to the same subscriber.
+         */
+        @Override
+        public void request(final long count) {
+            if (count <= 0) {
+                if (null == this.error) {
+                    this.error = new IllegalArgumentException("Invalid request " + count + " <= 0");
+                }
+            } else {
+                this.requested.accumulateAndGet(
+                    count,
+                    (r, c) -> r + c < 0 ? Long.MAX_VALUE : r + c
+                );
+            }
+            this.drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            EnvironmentWatcherPublisher.this.subscriptions.remove(this);
+        }
+
+        /**
+         * Delivers held changes while there is demand, only one thread drains at a time, and a drain requested while
+         * another thread is draining is picked up by that thread before it finishes.
+         */
+        void drain() {
+            if (0 == this.wip.getAndIncrement()) {
+                int missed = 1;
+
+                do {
+                    this.deliver();
+                    missed = this.wip.addAndGet(-missed);
+                } while (0 != missed);
+            }
+        }
+
+        private void deliver() {
+            final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.this;
+            final Flow.Subscriber<? super EnvironmentValueChange> subscriber = this.subscriber;
+
+            while (false == this.cancelled) {
+                final Throwable error = this.error;
+                if (null != error) {
+                    this.cancel();
+                    subscriber.onError(error);
+                    break;
+                }
+
+                final EnvironmentValueChange change;
+                final boolean completed;
+                final long lost;
+
+                synchronized (publisher) {
+                    final long sequence = publisher.sequence;
+                    final long oldest = sequence - publisher.ring.length;
+
+                    lost = oldest - this.next;
+                    completed = sequence == this.next && publisher.closed;
+
+                    if (lost > 0 || completed || sequence == this.next || 0 == this.requested.get()) {
+                        change = null;
+                    } else {
+                        change = publisher.ring[(int) (this.next % publisher.ring.length)];
+                        this.next++;
+                    }
+                }
+
+                if (lost > 0) {
+                    this.cancel();
+                    subscriber.onError(
+                        new IllegalStateException("Subscriber missed " + lost + " change(s)")
+                    );
+                    break;
+                }
+                if (completed) {
+                    this.cancel();
+                    subscriber.onComplete();
+                    break;
+                }
+                if (null == change) {
+                    break;
+                }
+
+                if (Long.MAX_VALUE != this.requested.get()) {
+                    this.requested.decrementAndGet();
+                }
+
+                try {
+                    subscriber.onNext(change);
+                } catch (final RuntimeException cause) {
+                    this.cancel();
+
+                    final Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler()
+                        .uncaughtException(
+                            thread,
+                            cause
+                        );
+                }
+            }
+        }
+
+        private final Flow.Subscriber<? super EnvironmentValueChange> subscriber;
+
+        /**
+         * The sequence of the next change to deliver, only read and written while holding the publisher lock.
+         */
+        private long next;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        /**
+         * An error recorded by {@link #request(long)}, waiting to be signalled by {@link #drain()}.
+         */
+        private volatile Throwable error;
+
+        @Override
+        public String toString() {
+            return this.subscriber.toString();
+        }
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.subscriptions.toString();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import walkingkooka.collect.list.Lists;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A snapshot of the statistics recorded for a single instrumented {@link EnvironmentWatcher}. Times are in
+ * nanoseconds, and {@link #histogram()} counts events by their dispatch time in microseconds, where the count at index
+ * <code>i</code> holds events that took less than <code>2^i</code> microseconds and the last index holds all longer
+ * events.
+ */
+public final class EnvironmentWatcherStatistics {
+
+    /**
+     * The number of {@link #histogram()} buckets, the last holding events of at least 2^(BUCKETS - 2) microseconds.
+     */
+    public final static int BUCKETS = 16;
+
+    static EnvironmentWatcherStatistics with(final EnvironmentWatcher watcher,
+                                             final long events,
+                                             final long exceptions,
+                                             final long slowEvents,
+                                             final long totalNanos,
+                                             final long maxNanos,
+                                             final List<Long> histogram,
+                                             final Optional<RuntimeException> lastException) {
+        return new EnvironmentWatcherStatistics(
+            watcher,
+            events,
+            exceptions,
+            slowEvents,
+            totalNanos,
+            maxNanos,
+            Lists.readOnly(histogram),
+            lastException
+        );
+    }
+
+    private EnvironmentWatcherStatistics(final EnvironmentWatcher watcher,
+                                         final long events,
+                                         final long exceptions,
+                                         final long slowEvents,
+                                         final long totalNanos,
+                                         final long maxNanos,
+                                         final List<Long> histogram,
+                                         final Optional<RuntimeException> lastException) {
+        super();
+
+        this.watcher = watcher;
+        this.events = events;
+        this.exceptions = exceptions;
+        this.slowEvents = slowEvents;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.histogram = histogram;
+        this.lastException = lastException;
+    }
+
+    /**
+     * The watcher being instrumented.
+     */
+    public EnvironmentWatcher watcher() {
+        return this.watcher;
+    }
+
+    private final EnvironmentWatcher watcher;
+
+    /**
+     * The number of events dispatched to the watcher, where a batch counts as a single event.
+     */
+    public long events() {
+        return this.events;
+    }
+
+    private final long events;
+
+    /**
+     * The number of events that ended with the watcher throwing an exception.
+     */
+    public long exceptions() {
+        return this.exceptions;
+    }
+
+    private final long exceptions;
+
+    /**
+     * The number of events that took longer than the latency budget.
+     */
+    public long slowEvents() {
+        return this.slowEvents;
+    }
+
+    private final long slowEvents;
+
+    /**
+     * Returns true if any event took longer than the latency budget.
+     */
+    public boolean isSlow() {
+        return this.slowEvents > 0;
+    }
+
+    public long totalNanos() {
+        return this.totalNanos;
+    }
+
+    private final long totalNanos;
+
+    public long maxNanos() {
+        return this.maxNanos;
+    }
+
+    private final long maxNanos;
+
+    public List<Long> histogram() {
+        return this.histogram;
+    }
+
+    private final List<Long> histogram;
+
+    /**
+     * The last exception thrown by the watcher.
+     */
+    public Optional<RuntimeException> lastException() {
+        return this.lastException;
+    }
+
+    private final Optional<RuntimeException> lastException;
+
+    // Object...........................................................................................................
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            this.watcher,
+            this.events,
+            this.exceptions,
+            this.slowEvents,
+            this.totalNanos,
+            this.maxNanos,
+            this.histogram,
+            this.lastException
+        );
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return this == other ||
+            other instanceof EnvironmentWatcherStatistics && this.equals0((EnvironmentWatcherStatistics) other);
+    }
+
+    private boolean equals0(final EnvironmentWatcherStatistics other) {
+        return this.watcher.equals(other.watcher) &&
+            this.events == other.events &&
+            this.exceptions == other.exceptions &&
+            this.slowEvents == other.slowEvents &&
+            this.totalNanos == other.totalNanos &&
+            this.maxNanos == other.maxNanos &&
+            this.histogram.equals(other.histogram) &&
+            this.lastException.equals(other.lastException);
+    }
+
+    @Override
+    public String toString() {
+        return this.watcher +
+            " events=" + this.events +
+            " exceptions=" + this.exceptions +
+            " slowEvents=" + this.slowEvents +
+            " totalNanos=" + this.totalNanos +
+            " maxNanos=" + this.maxNanos;
+    }
+}
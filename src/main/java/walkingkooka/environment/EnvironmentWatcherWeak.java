@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An {@link EnvironmentWatcher} that only weakly references the watcher it fires, so a watcher owned by a short lived
+ * component that forgets to remove it may still be garbage collected. Once collected the watcher is removed from its
+ * {@link EnvironmentContext}, either by the next event or by the next {@link #add(EnvironmentContext, EnvironmentWatcher)},
+ * so contexts that never fire do not accumulate dead watchers.
+ * <br>
+ * The caller must hold a strong reference to the watcher for as long as it should be fired.
+ * {@link WeakReference} is not available in the browser.
+ */
+public final class EnvironmentWatcherWeak implements EnvironmentWatcher {
+
+    /**
+     * Adds a weakly referenced watcher to the given {@link EnvironmentContext}, returning a {@link Runnable} that
+     * removes it.
+     */
+    public static Runnable add(final EnvironmentContext context,
+                               final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(context, "context");
+        Objects.requireNonNull(watcher, "watcher");
+
+        expunge();
+
+        final EnvironmentWatcherWeak weak = new EnvironmentWatcherWeak(watcher);
+        final Runnable remover = context.addEnvironmentWatcher(weak);
+        weak.reference.remover = remover;
+        return remover;
+    }
+
+    /**
+     * Removes the watchers whose referents have been collected.
+     */
+    // @VisibleForTesting
+    static void expunge() {
+        for (; ; ) {
+            final EnvironmentWatcherWeakReference reference = (EnvironmentWatcherWeakReference) QUEUE.poll();
+            if (null == reference) {
+                break;
+            }
+            reference.remove();
+        }
+    }
+
+    private final static ReferenceQueue<EnvironmentWatcher> QUEUE = new ReferenceQueue<>();
+
+    private EnvironmentWatcherWeak(final EnvironmentWatcher watcher) {
+        super();
+
+        this.reference = new EnvironmentWatcherWeakReference(watcher);
+    }
+
+    @Override
+    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+        final EnvironmentWatcher watcher = this.watcher();
+        if (null != watcher) {
+            watcher.onValueChange(
+                oldValue,
+                newValue
+            );
+        }
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        final EnvironmentWatcher watcher = this.watcher();
+        if (null != watcher) {
+            watcher.onValueChanges(changes);
+        }
+    }
+
+    /**
+     * Returns the watcher or null after removing this if it has been collected.
+     */
+    private EnvironmentWatcher watcher() {
+        final EnvironmentWatcherWeakReference reference = this.reference;
+
+        final EnvironmentWatcher watcher = reference.get();
+        if (null == watcher) {
+            reference.remove();
+        }
+        return watcher;
+    }
+
+    private final EnvironmentWatcherWeakReference reference;
+
+    /**
+     * A {@link WeakReference} that also holds the {@link Runnable} that removes the {@link EnvironmentWatcherWeak}.
+     */
+    private final static class EnvironmentWatcherWeakReference extends WeakReference<EnvironmentWatcher> {
+
+        EnvironmentWatcherWeakReference(final EnvironmentWatcher watcher) {
+            super(
+                watcher,
+                QUEUE
+            );
+        }
+
+        void remove() {
+            final Runnable remover = this.remover;
+            if (null != remover) {
+                remover.run();
+            }
+        }
+
+        volatile Runnable remover;
+    }
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return String.valueOf(
+            this.reference.get()
+        );
+    }
+}
@@ -17,27 +17,180 @@
 
 package walkingkooka.environment;
 
+import walkingkooka.Cast;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
 
-import walkingkooka.watch.ValueChangeWatchers;
-
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
 
 /**
  * A collection of {@link EnvironmentWatcher}. Note the event is only fired to watchers if the old and new values
- * are different.
+ * are different. Events fired during a {@link #batch(Runnable)} are held and delivered as a single
+ * {@link EnvironmentWatcher#onValueChanges(List)} when the batch completes.
+ * <br>
+ * Watchers added for particular {@link EnvironmentValueName names} are indexed by name, so a change only visits the
+ * watchers interested in that name and those watching all names.
+ * <br>
+ * An {@link #instrumented(Duration, LongSupplier)} instance times every watcher, flags watchers slower than a latency
+ * budget and stops a throwing watcher from preventing delivery to the others, with the statistics available from
+ * {@link #statistics()}. Add it to a context as a watcher and then add the watchers to be measured to it.
  */
 public final class EnvironmentWatchers implements EnvironmentWatcher {
 
     public static EnvironmentWatchers empty() {
-        return new EnvironmentWatchers();
+        return new EnvironmentWatchers(
+            0,
+            null
+        );
+    }
+
+    /**
+     * Creates an {@link EnvironmentWatchers} that records dispatch statistics for each watcher, where watchers taking
+     * longer than the budget are flagged as slow. The {@link LongSupplier} returns the current time in nanoseconds,
+     * typically <code>System::nanoTime</code>.
+     */
+    public static EnvironmentWatchers instrumented(final Duration budget,
+                                                   final LongSupplier nanoTime) {
+        Objects.requireNonNull(budget, "budget");
+        if (budget.isNegative()) {
+            throw new IllegalArgumentException("Invalid budget " + budget + " < 0");
+        }
+        Objects.requireNonNull(nanoTime, "nanoTime");
+
+        return new EnvironmentWatchers(
+            budget.toNanos(),
+            nanoTime
+        );
+    }
+
+    private EnvironmentWatchers(final long budgetNanos,
+                                final LongSupplier nanoTime) {
+        super();
+
+        this.budgetNanos = budgetNanos;
+        this.nanoTime = nanoTime;
     }
 
     public Runnable add(final EnvironmentWatcher watcher) {
-        return this.watchers.add(watcher);
+        return this.watchers.add(
+            this.instrument(watcher)
+        );
     }
 
     public Runnable addOnce(final EnvironmentWatcher watcher) {
-        return this.watchers.addOnce(watcher);
+        return this.watchers.addOnce(
+            this.instrument(watcher)
+        );
+    }
+
+    /**
+     * Adds a watcher that only receives changes to the given {@link EnvironmentValueName names}, ignoring case and type.
+     */
+    public Runnable add(final Set<EnvironmentValueName<?>> names,
+                        final EnvironmentWatcher watcher) {
+        final EnvironmentWatcherNames filtered = EnvironmentWatcherNames.with(
+            names,
+            watcher
+        );
+
+        final EnvironmentWatcher instrumented = this.instrument(filtered);
+
+        final Set<String> caseFolded = filtered.names;
+        final Runnable[] removers = new Runnable[caseFolded.size()];
+        final String[] keys = new String[caseFolded.size()];
+        int i = 0;
+
+        // adding inside compute means a concurrent removal can never drop the array between it being found and added to
+        for (final String name : caseFolded) {
+            final int index = i++;
+            keys[index] = name;
+
+            this.named.compute(
+                name,
+                (n, watchers) -> {
+                    final EnvironmentWatcherArray array = null != watchers ?
+                        watchers :
+                        EnvironmentWatcherArray.empty();
+                    removers[index] = array.add(instrumented);
+                    return array;
+                }
+            );
+        }
+
+        return () -> {
+            for (int j = 0; j < keys.length; j++) {
+                final Runnable remover = removers[j];
+
+                // the array is dropped with its last watcher, so isObserved becomes false again
+                this.named.computeIfPresent(
+                    keys[j],
+                    (n, watchers) -> {
+                        remover.run();
+                        return watchers.isEmpty() ?
+                            null :
+                            watchers;
+                    }
+                );
+            }
+        };
+    }
+
+    /**
+     * Fires a change given the raw old and new values, where a missing value is null. The event payload is only
+     * created when the values are different and a watcher or batch will receive it, so a change to a context without
+     * watchers allocates nothing.
+     */
+    void onValueChange(final EnvironmentValueName<?> name,
+                       final Object oldValue,
+                       final Object newValue) {
+        if (this.isObserved() && false == Objects.equals(oldValue, newValue)) {
+            this.onValueChange(
+                value(
+                    name,
+                    oldValue
+                ),
+                value(
+                    name,
+                    newValue
+                )
+            );
+        }
+    }
+
+    private static Optional<EnvironmentValueNameAndValue<?>> value(final EnvironmentValueName<?> name,
+                                                                   final Object value) {
+        return null != value ?
+            Optional.of(
+                EnvironmentValueNameAndValue.with(
+                    name,
+                    Cast.to(value)
+                )
+            ) :
+            Optional.empty();
+    }
+
+    /**
+     * Returns true if there is an active batch or any watcher that might receive an event.
+     */
+    boolean isObserved() {
+        return null != this.batch ||
+            false == this.watchers.isEmpty() ||
+            false == this.named.isEmpty();
+    }
+
+    /**
+     * Returns true if no watchers, including watchers for particular names, remain.
+     */
+    boolean isEmpty() {
+        return this.watchers.isEmpty() &&
+            this.named.isEmpty();
     }
 
     /**
@@ -46,10 +199,175 @@ public final class EnvironmentWatchers implements EnvironmentWatcher {
     @Override
     public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
                               final Optional<EnvironmentValueNameAndValue<?>> newValue) {
-        this.watchers.onValueChange(oldValue, newValue);
+        final EnvironmentWatcherBatch batch = this.batch;
+        if (null != batch) {
+            batch.onValueChange(
+                oldValue,
+                newValue
+            );
+        } else {
+            this.watchers.onValueChange(
+                oldValue,
+                newValue
+            );
+
+            final Map<String, EnvironmentWatcherArray> named = this.named;
+            if (false == named.isEmpty()) {
+                final EnvironmentWatcherArray watchers = named.get(
+                    oldValue.orElseGet(newValue::get)
+                        .name()
+                        .caseFolded
+                );
+                if (null != watchers) {
+                    watchers.onValueChange(
+                        oldValue,
+                        newValue
+                    );
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+        final EnvironmentWatcherBatch batch = this.batch;
+        if (null != batch) {
+            batch.onValueChanges(changes);
+        } else {
+            this.watchers.onValueChanges(changes);
+            this.fireNamed(changes);
+        }
     }
 
-    private final ValueChangeWatchers<EnvironmentValueNameAndValue<?>> watchers = ValueChangeWatchers.empty();
+    /**
+     * Fires the entire batch once to each distinct watcher interested in any of the changed names, which then filters
+     * the changes it receives.
+     */
+    private void fireNamed(final List<EnvironmentValueChange> changes) {
+        final Map<String, EnvironmentWatcherArray> named = this.named;
+        if (false == named.isEmpty()) {
+            Set<EnvironmentWatcher> interested = null;
+
+            for (final EnvironmentValueChange change : changes) {
+                final EnvironmentWatcherArray watchers = named.get(
+                    change.name().caseFolded
+                );
+                if (null != watchers) {
+                    if (null == interested) {
+                        interested = Sets.ordered();
+                    }
+                    watchers.addTo(interested);
+                }
+            }
+
+            if (null != interested) {
+                for (final EnvironmentWatcher watcher : interested) {
+                    watcher.onValueChanges(changes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the given updates, holding all events until they complete and then firing the coalesced changes once.
+     * A nested batch joins the outer batch. If the updates throw, the changes already made are still fired before the
+     * exception propagates, so watchers never miss a change that was applied.
+     * <br>
+     * A batch assumes a single writer: events fired by other threads while it runs are held and fired with the batch.
+     */
+    public void batch(final Runnable updates) {
+        Objects.requireNonNull(updates, "updates");
+
+        if (null != this.batch) {
+            updates.run();
+        } else {
+            final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+            this.batch = batch;
+            try {
+                updates.run();
+            } finally {
+                this.batch = null;
+
+                final List<EnvironmentValueChange> changes = batch.changes();
+                if (false == changes.isEmpty()) {
+                    this.onValueChanges(changes);
+                }
+            }
+        }
+    }
+
+    private EnvironmentWatcherBatch batch;
+
+    // instrumented.....................................................................................................
+
+    private EnvironmentWatcher instrument(final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(watcher, "watcher");
+
+        final LongSupplier nanoTime = this.nanoTime;
+        return null != nanoTime ?
+            EnvironmentWatcherInstrumented.with(
+                watcher,
+                this.budgetNanos,
+                nanoTime
+            ) :
+            watcher;
+    }
+
+    /**
+     * Returns the statistics for every watcher, a watcher added for particular names is returned wrapped by the
+     * filter that selects its names. Watchers that are not {@link #instrumented(Duration, LongSupplier)} have no
+     * statistics.
+     */
+    public List<EnvironmentWatcherStatistics> statistics() {
+        final Set<EnvironmentWatcher> watchers = Sets.ordered();
+
+        this.watchers.addTo(watchers);
+        for (final EnvironmentWatcherArray named : this.named.values()) {
+            named.addTo(watchers);
+        }
+
+        final List<EnvironmentWatcherStatistics> statistics = Lists.array();
+        for (final EnvironmentWatcher watcher : watchers) {
+            if (watcher instanceof EnvironmentWatcherInstrumented) {
+                statistics.add(
+                    ((EnvironmentWatcherInstrumented) watcher).statistics()
+                );
+            }
+        }
+
+        return Lists.readOnly(statistics);
+    }
+
+    private final long budgetNanos;
+
+    /**
+     * When present watchers are {@link EnvironmentWatcherInstrumented instrumented}.
+     */
+    private final LongSupplier nanoTime;
+
+    // @VisibleForTesting
+    int size() {
+        return this.watchers.size();
+    }
+
+    /**
+     * Returns the number of watchers added for particular names, counting a watcher once for each name.
+     */
+    // @VisibleForTesting
+    int namedSize() {
+        int size = 0;
+        for (final EnvironmentWatcherArray watchers : this.named.values()) {
+            size += watchers.size();
+        }
+        return size;
+    }
+
+    private final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+
+    /**
+     * Watchers interested in particular names, keyed by the case folded name.
+     */
+    private final Map<String, EnvironmentWatcherArray> named = new ConcurrentHashMap<>();
 
     // Object...........................................................................................................
 
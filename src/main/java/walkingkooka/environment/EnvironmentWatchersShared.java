@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shares a single watcher on another {@link EnvironmentContext} between all the {@link EnvironmentWatchers} of a view.
+ * The shared watcher is added along with the first watcher and removed whenever the view has no watchers, including
+ * after a once watcher removes itself, so views without watchers are never referenced by the other context.
+ */
+final class EnvironmentWatchersShared {
+
+    static EnvironmentWatchersShared with(final EnvironmentWatchers watchers,
+                                          final EnvironmentContext context,
+                                          final EnvironmentWatcher watcher) {
+        return new EnvironmentWatchersShared(
+            Objects.requireNonNull(watchers, "watchers"),
+            Objects.requireNonNull(context, "context"),
+            Objects.requireNonNull(watcher, "watcher")
+        );
+    }
+
+    private EnvironmentWatchersShared(final EnvironmentWatchers watchers,
+                                      final EnvironmentContext context,
+                                      final EnvironmentWatcher watcher) {
+        this.watchers = watchers;
+        this.context = context;
+        this.watcher = watcher;
+    }
+
+    Runnable add(final EnvironmentWatcher watcher) {
+        return this.watch(
+            this.watchers.add(watcher)
+        );
+    }
+
+    /**
+     * The once watcher is removed by the event that claims it, before it is fired, so the shared watcher is released
+     * after it has been fired.
+     */
+    Runnable addOnce(final EnvironmentWatcher watcher) {
+        Objects.requireNonNull(watcher, "watcher");
+
+        return this.watch(
+            this.watchers.addOnce(
+                new EnvironmentWatcher() {
+                    @Override
+                    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                        try {
+                            watcher.onValueChange(
+                                oldValue,
+                                newValue
+                            );
+                        } finally {
+                            EnvironmentWatchersShared.this.release();
+                        }
+                    }
+
+                    @Override
+                    public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                        try {
+                            watcher.onValueChanges(changes);
+                        } finally {
+                            EnvironmentWatchersShared.this.release();
+                        }
+                    }
+
+                    @Override
+                    public String toString() {
+                        return watcher.toString();
+                    }
+                }
+            )
+        );
+    }
+
+    Runnable add(final Set<EnvironmentValueName<?>> names,
+                 final EnvironmentWatcher watcher) {
+        return this.watch(
+            this.watchers.add(
+                names,
+                watcher
+            )
+        );
+    }
+
+    private Runnable watch(final Runnable remover) {
+        this.acquire();
+
+        return () -> {
+            remover.run();
+            this.release();
+        };
+    }
+
+    /**
+     * Adds the shared watcher if it is missing, a watcher added by a losing concurrent call is removed again.
+     */
+    private void acquire() {
+        final AtomicReference<Runnable> shared = this.remover;
+
+        while (null == shared.get()) {
+            final Runnable remover = this.context.addEnvironmentWatcher(this.watcher);
+            if (false == shared.compareAndSet(null, remover)) {
+                remover.run();
+            }
+        }
+    }
+
+    /**
+     * Removes the shared watcher if there are no watchers. A watcher added while releasing may have seen the shared
+     * watcher before it was removed, so it is added again if watchers have since appeared.
+     */
+    private void release() {
+        final AtomicReference<Runnable> shared = this.remover;
+        final Runnable remover = shared.get();
+
+        if (null != remover && this.watchers.isEmpty() && shared.compareAndSet(remover, null)) {
+            remover.run();
+
+            if (false == this.watchers.isEmpty()) {
+                this.acquire();
+            }
+        }
+    }
+
+    // @VisibleForTesting
+    boolean isWatching() {
+        return null != this.remover.get();
+    }
+
+    private final EnvironmentWatchers watchers;
+
+    private final EnvironmentContext context;
+
+    private final EnvironmentWatcher watcher;
+
+    /**
+     * Removes the shared watcher from the other {@link EnvironmentContext}, null when the view has no watchers.
+     */
+    private final AtomicReference<Runnable> remover = new AtomicReference<>();
+
+    // Object...........................................................................................................
+
+    @Override
+    public String toString() {
+        return this.watchers.toString();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A {@link EnvironmentContext} with values sourced from a local file, which is reloaded when the file changes.
+ * {@link #close()} stops watching the file, values remain available from the last reload.
+ */
+public interface FileEnvironmentContext extends EnvironmentContext,
+    Closeable {
+
+    /**
+     * The file holding the values.
+     */
+    Path file();
+
+    /**
+     * Reads the file again, firing {@link EnvironmentWatcher} events for each value that changed.
+     */
+    void reload() throws IOException;
+
+    /**
+     * Stops watching the file for changes.
+     */
+    @Override
+    void close();
+}
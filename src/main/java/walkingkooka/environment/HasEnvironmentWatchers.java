@@ -17,6 +17,10 @@
 
 package walkingkooka.environment;
 
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
 public interface HasEnvironmentWatchers extends EnvironmentContext {
 
     @Override
@@ -31,5 +35,25 @@ public interface HasEnvironmentWatchers extends EnvironmentContext {
             .addOnce(watcher);
     }
 
+    @Override
+    default Runnable addEnvironmentWatcher(final Set<EnvironmentValueName<?>> names,
+                                           final EnvironmentWatcher watcher) {
+        return this.environmentValueWatchers()
+            .add(
+                names,
+                watcher
+            );
+    }
+
+    @Override
+    default void update(final Consumer<EnvironmentContext> updater) {
+        Objects.requireNonNull(updater, "updater");
+
+        this.environmentValueWatchers()
+            .batch(
+                () -> updater.accept(this)
+            );
+    }
+
     EnvironmentWatchers environmentValueWatchers();
 }
@@ -17,15 +17,20 @@
 
 package walkingkooka.environment;
 
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.environment.EnvironmentContextDelegatorTest.TestEnvironmentContextDelegator;
 import walkingkooka.net.email.EmailAddress;
 import walkingkooka.text.Indentation;
 import walkingkooka.text.LineEnding;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 public final class EnvironmentContextDelegatorTest implements EnvironmentContextTesting2<TestEnvironmentContextDelegator> {
 
     @Override
@@ -68,6 +73,101 @@ public final class EnvironmentContextDelegatorTest implements EnvironmentContext
         throw new UnsupportedOperationException();
     }
 
+    @Test
+    public void testUpdateUsesOverriddenMutators() {
+        final List<Locale> locales = Lists.array();
+        final EnvironmentContext wrapped = EnvironmentContexts.map(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            OPTIONAL_USER
+        );
+        final EnvironmentContextDelegator delegator = delegator(
+            wrapped,
+            locales
+        );
+
+        delegator.update(
+            (c) -> {
+                assertSame(
+                    delegator,
+                    c
+                );
+                c.setLocale(Locale.GERMANY);
+            }
+        );
+
+        this.checkEquals(
+            Lists.of(Locale.GERMANY),
+            locales,
+            "overridden setLocale"
+        );
+        this.localeAndCheck(
+            wrapped,
+            Locale.GERMANY
+        );
+    }
+
+    @Test
+    public void testUpdateWorkingCopyBypassesOverriddenMutators() {
+        final List<Locale> locales = Lists.array();
+        final EnvironmentContext wrapped = EnvironmentContexts.concurrent(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            OPTIONAL_USER
+        );
+
+        delegator(
+            wrapped,
+            locales
+        ).update(
+            (c) -> c.setLocale(Locale.GERMANY)
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            locales,
+            "overridden setLocale"
+        );
+        this.localeAndCheck(
+            wrapped,
+            Locale.GERMANY
+        );
+    }
+
+    private static EnvironmentContextDelegator delegator(final EnvironmentContext context,
+                                                         final List<Locale> locales) {
+        return new EnvironmentContextDelegator() {
+            @Override
+            public EnvironmentContext cloneEnvironment() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public EnvironmentContext setEnvironmentContext(final EnvironmentContext environmentContext) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void setLocale(final Locale locale) {
+                locales.add(locale);
+                context.setLocale(locale);
+            }
+
+            @Override
+            public EnvironmentContext environmentContext() {
+                return context;
+            }
+        };
+    }
+
     @Override
     public TestEnvironmentContextDelegator createContext() {
         return new TestEnvironmentContextDelegator();
@@ -0,0 +1,1075 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.HashCodeEqualsDefinedTesting2;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.net.email.EmailAddress;
+import walkingkooka.text.LineEnding;
+
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentContextSharedConcurrentTest extends EnvironmentContextSharedTestCase<EnvironmentContextSharedConcurrent>
+    implements HashCodeEqualsDefinedTesting2<EnvironmentContextSharedConcurrent>,
+    ToStringTesting<EnvironmentContextSharedConcurrent> {
+
+    private final static EnvironmentValueName<String> NAME = EnvironmentValueName.with(
+        "hello.123",
+        String.class
+    );
+
+    private final static String VALUE = "Gday";
+
+    @Test
+    public void testWithNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedConcurrent.with(
+                null,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                HAS_NOW,
+                EnvironmentContext.ANONYMOUS
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullHasNowFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedConcurrent.with(
+                CHARSET,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                null,
+                EnvironmentContext.ANONYMOUS
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullUserFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedConcurrent.with(
+                CHARSET,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                HAS_NOW,
+                null
+            )
+        );
+    }
+
+    // cloneEnvironment.................................................................................................
+
+    @Test
+    public void testCloneEnvironmentThenSetEnvironmentValue() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContext cloned = context.cloneEnvironment();
+        cloned.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+        cloned.setLocale(Locale.GERMANY);
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+        this.localeAndCheck(
+            context,
+            LOCALE
+        );
+        this.environmentValueAndCheck(
+            cloned,
+            NAME,
+            "different"
+        );
+    }
+
+    @Test
+    public void testCloneEnvironmentThenRemoveEnvironmentValue() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContext cloned = context.cloneEnvironment();
+        cloned.removeEnvironmentValue(NAME);
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+        this.environmentValueAndCheck(
+            cloned,
+            NAME
+        );
+    }
+
+    @Test
+    public void testCloneEnvironmentSnapshotVersionsUnrelated() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final EnvironmentContextSharedConcurrent cloned = (EnvironmentContextSharedConcurrent) context.cloneEnvironment();
+
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+        cloned.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+
+        final EnvironmentContextSnapshot snapshot = context.snapshot();
+        final EnvironmentContextSnapshot clonedSnapshot = cloned.snapshot();
+
+        // the same version but different values
+        this.checkEquals(
+            snapshot.version(),
+            clonedSnapshot.version(),
+            "version"
+        );
+        this.checkNotEquals(
+            snapshot.environmentValue(NAME),
+            clonedSnapshot.environmentValue(NAME)
+        );
+    }
+
+    // environmentValue.................................................................................................
+
+    @Test
+    public void testEnvironmentValue() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueWithDifferentEnvironmentValueNameCase() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                NAME.value()
+                    .toUpperCase(),
+                NAME.type()
+            ),
+            VALUE
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueMissing() {
+        this.environmentValueAndCheck(
+            this.createContext(),
+            EnvironmentValueName.with(
+                "Unknown",
+                Void.class
+            )
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueWithUser() {
+        this.environmentValueAndCheck(
+            this.createContext(
+                Optional.of(USER)
+            ),
+            EnvironmentValueName.USER,
+            USER
+        );
+    }
+
+    // environmentValueNames............................................................................................
+
+    @Test
+    public void testEnvironmentValueNames() {
+        final EnvironmentValueName<String> name1 = EnvironmentValueName.with(
+            "prefix.name1",
+            String.class
+        );
+
+        final EnvironmentContextSharedConcurrent context = this.createContext(
+            Optional.of(USER)
+        );
+        context.setEnvironmentValue(
+            name1,
+            VALUE
+        );
+
+        this.environmentValueNamesAndCheck(
+            context,
+            EnvironmentValueName.CHARSET,
+            EnvironmentValueName.CURRENCY,
+            EnvironmentValueName.INDENTATION,
+            EnvironmentValueName.LINE_ENDING,
+            EnvironmentValueName.LOCALE,
+            EnvironmentValueName.NOW,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentValueName.USER,
+            name1
+        );
+    }
+
+    // removeEnvironmentValue...........................................................................................
+
+    @Test
+    public void testRemoveEnvironmentValueWithLocaleFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .removeEnvironmentValue(EnvironmentValueName.LOCALE)
+        );
+    }
+
+    @Test
+    public void testRemoveEnvironmentValueWithTimeOffset() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setTimeOffset(ZoneOffset.ofHours(10));
+        context.removeEnvironmentValue(EnvironmentValueName.TIME_OFFSET);
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentContext.DEFAULT_TIME_OFFSET
+        );
+    }
+
+    // setUser..........................................................................................................
+
+    @Test
+    public void testSetUser() {
+        this.setUserAndCheck(
+            this.createContext(),
+            DIFFERENT_USER
+        );
+    }
+
+    @Test
+    public void testClearUser() {
+        final EnvironmentContextSharedConcurrent context = this.createContext(
+            Optional.of(USER)
+        );
+        context.clearUser();
+
+        this.userAndCheck(context);
+    }
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Test
+    public void testParseEnvironmentValueNameAfterSetDifferent() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "MAGIC",
+            String.class
+        );
+
+        this.setEnvironmentValueAndCheck(
+            context,
+            name,
+            VALUE
+        );
+
+        this.parseEnvironmentValueNameAndCheck(
+            context,
+            name
+        );
+    }
+
+    // concurrency......................................................................................................
+
+    private final static int THREAD_COUNT = 4;
+
+    private final static int SET_COUNT = 500;
+
+    @Test
+    public void testSetEnvironmentValueConcurrently() throws Exception {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final AtomicInteger fired = new AtomicInteger();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.incrementAndGet()
+        );
+
+        this.runConcurrently(
+            (t) -> {
+                for (int i = 0; i < SET_COUNT; i++) {
+                    context.setEnvironmentValue(
+                        EnvironmentValueName.with(
+                            "thread" + t + "." + i,
+                            Integer.class
+                        ),
+                        i
+                    );
+                }
+            }
+        );
+
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            for (int i = 0; i < SET_COUNT; i++) {
+                this.environmentValueAndCheck(
+                    context,
+                    EnvironmentValueName.with(
+                        "thread" + t + "." + i,
+                        Integer.class
+                    ),
+                    i
+                );
+            }
+        }
+
+        this.checkEquals(
+            THREAD_COUNT * SET_COUNT,
+            fired.get(),
+            "fired"
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueSameNameConcurrentlyWatcherSeesEveryReplacedValue() throws Exception {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final List<Integer> oldValues = Collections.synchronizedList(Lists.array());
+        final List<Integer> newValues = Collections.synchronizedList(Lists.array());
+
+        final EnvironmentValueName<Integer> name = EnvironmentValueName.with(
+            "counter",
+            Integer.class
+        );
+
+        context.addEnvironmentWatcher(
+            (o, n) -> {
+                o.ifPresent(nv -> oldValues.add((Integer) nv.value()));
+                n.ifPresent(nv -> newValues.add((Integer) nv.value()));
+            }
+        );
+
+        this.runConcurrently(
+            (t) -> {
+                for (int i = 0; i < SET_COUNT; i++) {
+                    context.setEnvironmentValue(
+                        name,
+                        t * SET_COUNT + i
+                    );
+                }
+            }
+        );
+
+        // every value except the last must have been replaced exactly once
+        final Integer last = context.environmentValueOrFail(name);
+        newValues.remove(last);
+        newValues.sort(null);
+        oldValues.sort(null);
+
+        this.checkEquals(
+            newValues,
+            oldValues
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueConcurrentlyEventsMayBeDeliveredOutOfOrder() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "ordering",
+            String.class
+        );
+
+        final List<String> fired = Collections.synchronizedList(Lists.array());
+        context.addEnvironmentWatcher(
+            (o, n) -> {
+                if (n.equals(Optional.of(name.setValue("first")))) {
+                    // another thread publishes and delivers its change before this event is delivered
+                    final Thread second = new Thread(
+                        () -> context.setEnvironmentValue(
+                            name,
+                            "second"
+                        )
+                    );
+                    second.start();
+                    try {
+                        second.join();
+                    } catch (final InterruptedException cause) {
+                        throw new RuntimeException(cause);
+                    }
+                }
+                fired.add(o + " " + n);
+            }
+        );
+
+        context.setEnvironmentValue(
+            name,
+            "first"
+        );
+
+        // each event still holds the exact value it replaced
+        this.checkEquals(
+            Lists.of(
+                "Optional[ordering=first] Optional[ordering=second]",
+                "Optional.empty Optional[ordering=first]"
+            ),
+            fired
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            name,
+            "second"
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherOnceConcurrentlyFiredOnce() throws Exception {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final AtomicInteger fired = new AtomicInteger();
+        context.addEnvironmentWatcherOnce(
+            (o, n) -> fired.incrementAndGet()
+        );
+
+        this.runConcurrently(
+            (t) -> {
+                for (int i = 0; i < SET_COUNT; i++) {
+                    context.setEnvironmentValue(
+                        NAME,
+                        t + "-" + i
+                    );
+                }
+            }
+        );
+
+        this.checkEquals(
+            1,
+            fired.get(),
+            "fired"
+        );
+        this.checkEquals(
+            0,
+            context.watchers.size(),
+            "watchers"
+        );
+    }
+
+    // setEnvironmentValueIfAbsent......................................................................................
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentWhenAbsent() {
+        this.setEnvironmentValueIfAbsentAndCheck(
+            this.createContext(),
+            NAME,
+            VALUE,
+            Optional.empty()
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentWhenPresent() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.setEnvironmentValueIfAbsentAndCheck(
+            context,
+            NAME,
+            "different",
+            Optional.of(VALUE)
+        );
+    }
+
+    // compareAndSetEnvironmentValue....................................................................................
+
+    @Test
+    public void testCompareAndSetEnvironmentValueWhenAbsent() {
+        this.compareAndSetEnvironmentValueAndCheck(
+            this.createContext(),
+            NAME,
+            Optional.empty(),
+            Optional.of(VALUE),
+            true
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueWhenDifferent() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.compareAndSetEnvironmentValueAndCheck(
+            context,
+            NAME,
+            Optional.of("different"),
+            Optional.of("replaced"),
+            false
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueReplace() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.compareAndSetEnvironmentValueAndCheck(
+            context,
+            NAME,
+            Optional.of(VALUE),
+            Optional.of("replaced"),
+            true
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueRemove() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.compareAndSetEnvironmentValueAndCheck(
+            context,
+            NAME,
+            Optional.of(VALUE),
+            Optional.empty(),
+            true
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueWithWatcher() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final List<EnvironmentValueChange> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        context.compareAndSetEnvironmentValue(
+            NAME,
+            Optional.empty(),
+            Optional.of(VALUE)
+        );
+        context.compareAndSetEnvironmentValue(
+            NAME,
+            Optional.empty(),
+            Optional.of("ignored")
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    Optional.of(
+                        NAME.setValue(VALUE)
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // computeEnvironmentValueIfAbsent..................................................................................
+
+    @Test
+    public void testComputeEnvironmentValueIfAbsentWhenAbsent() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        this.checkEquals(
+            VALUE,
+            context.computeEnvironmentValueIfAbsent(
+                NAME,
+                (n) -> VALUE
+            )
+        );
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testComputeEnvironmentValueIfAbsentWhenPresent() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.checkEquals(
+            VALUE,
+            context.computeEnvironmentValueIfAbsent(
+                NAME,
+                (n) -> {
+                    throw new UnsupportedOperationException();
+                }
+            )
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueWithNowFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .compareAndSetEnvironmentValue(
+                    EnvironmentContext.NOW,
+                    Optional.empty(),
+                    Optional.of(
+                        HAS_NOW.now()
+                    )
+                )
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueRemoveLocaleFails() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> context.compareAndSetEnvironmentValue(
+                LOCALE_NAME,
+                Optional.of(LOCALE),
+                Optional.empty()
+            )
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueConcurrentlyNoLostUpdates() throws Exception {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final EnvironmentValueName<Integer> counter = EnvironmentValueName.with(
+            "counter",
+            Integer.class
+        );
+        context.setEnvironmentValue(
+            counter,
+            0
+        );
+
+        this.runConcurrently(
+            (t) -> {
+                for (int i = 0; i < SET_COUNT; i++) {
+                    Integer value;
+                    do {
+                        value = context.environmentValueOrFail(counter);
+                    } while (false == context.compareAndSetEnvironmentValue(counter, Optional.of(value), Optional.of(value + 1)));
+                }
+            }
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            counter,
+            THREAD_COUNT * SET_COUNT
+        );
+    }
+
+    @Test
+    public void testComputeEnvironmentValueIfAbsentConcurrentlySameValue() throws Exception {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final List<String> values = Collections.synchronizedList(Lists.array());
+
+        this.runConcurrently(
+            (t) -> values.add(
+                context.computeEnvironmentValueIfAbsent(
+                    NAME,
+                    (n) -> "thread-" + t
+                )
+            )
+        );
+
+        final String value = context.environmentValueOrFail(NAME);
+        this.checkEquals(
+            Collections.nCopies(
+                THREAD_COUNT,
+                value
+            ),
+            values
+        );
+    }
+
+    // addEnvironmentWatcher names......................................................................................
+
+    @Test
+    public void testAddEnvironmentWatcherWithName() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final List<EnvironmentValueChange> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            NAME,
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        context.setLocale(Locale.GERMANY);
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    Optional.of(
+                        NAME.setValue(VALUE)
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // update...........................................................................................................
+
+    @Test
+    public void testUpdateWithNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> this.createContext()
+                .update(null)
+        );
+    }
+
+    @Test
+    public void testUpdateFiresOnce() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        context.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        context.update(
+            (c) -> {
+                c.setEnvironmentValue(
+                    NAME,
+                    VALUE
+                );
+                c.setLocale(Locale.GERMANY);
+                c.setLocale(Locale.ITALY);
+
+                checkEquals(
+                    Optional.empty(),
+                    context.environmentValue(NAME),
+                    "updates should not be visible until published"
+                );
+            }
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+        this.checkEquals(
+            Locale.ITALY,
+            context.locale(),
+            "locale"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        Optional.of(
+                            NAME.setValue(VALUE)
+                        )
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            LOCALE_NAME.setValue(LOCALE)
+                        ),
+                        Optional.of(
+                            LOCALE_NAME.setValue(Locale.ITALY)
+                        )
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    private final static EnvironmentValueName<Locale> LOCALE_NAME = EnvironmentValueName.LOCALE;
+
+    @Test
+    public void testUpdateConcurrentlyIsAtomic() throws Exception {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+
+        final EnvironmentValueName<Integer> first = EnvironmentValueName.with(
+            "first",
+            Integer.class
+        );
+        final EnvironmentValueName<Integer> second = EnvironmentValueName.with(
+            "second",
+            Integer.class
+        );
+
+        final AtomicInteger torn = new AtomicInteger();
+
+        this.runConcurrently(
+            (t) -> {
+                for (int i = 0; i < SET_COUNT; i++) {
+                    context.update(
+                        (c) -> {
+                            final int value = c.environmentValue(first)
+                                .orElse(0) + 1;
+                            c.setEnvironmentValue(
+                                first,
+                                value
+                            );
+                            c.setEnvironmentValue(
+                                second,
+                                value
+                            );
+                        }
+                    );
+
+                    final EnvironmentContextSnapshot snapshot = context.snapshot();
+                    if (false == snapshot.environmentValue(first).equals(snapshot.environmentValue(second))) {
+                        torn.incrementAndGet();
+                    }
+                }
+            }
+        );
+
+        this.checkEquals(
+            0,
+            torn.get(),
+            "torn"
+        );
+        this.environmentValueAndCheck(
+            context,
+            first,
+            THREAD_COUNT * SET_COUNT
+        );
+        this.environmentValueAndCheck(
+            context,
+            second,
+            THREAD_COUNT * SET_COUNT
+        );
+    }
+
+    private void runConcurrently(final IntConsumer task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = Lists.array();
+
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            final Thread th = new Thread(
+                () -> {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException cause) {
+                        throw new RuntimeException(cause);
+                    }
+                    task.accept(thread);
+                }
+            );
+            th.start();
+            threads.add(th);
+        }
+
+        start.countDown();
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    // Context..........................................................................................................
+
+    @Override
+    public EnvironmentContextSharedConcurrent createContext() {
+        return this.createContext(EnvironmentContext.ANONYMOUS);
+    }
+
+    private EnvironmentContextSharedConcurrent createContext(final Optional<EmailAddress> user) {
+        return EnvironmentContextSharedConcurrent.with(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            user
+        );
+    }
+
+    // hashCode/equals..................................................................................................
+
+    @Test
+    public void testEqualsDifferentValues() {
+        final EnvironmentContext context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            "World1"
+        );
+
+        final EnvironmentContext different = this.createContext();
+        different.setEnvironmentValue(
+            NAME,
+            "World22"
+        );
+
+        this.checkNotEquals(
+            context,
+            different
+        );
+    }
+
+    @Test
+    public void testEqualsDifferentLineEnding() {
+        final EnvironmentContext different = this.createContext();
+        different.setLineEnding(LineEnding.CRNL);
+
+        this.checkNotEquals(
+            this.createContext(),
+            different
+        );
+    }
+
+    @Override
+    public EnvironmentContextSharedConcurrent createObject() {
+        return this.createContext();
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        final EnvironmentContextSharedConcurrent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.toStringAndCheck(
+            context,
+            "{charset=UTF-8, currency=AUD, hello.123=\"Gday\", indentation=\"  \", lineEnding=\"\\n\", locale=en_AU, timeOffset=Z}"
+        );
+    }
+
+    // TreePrintable....................................................................................................
+
+    @Test
+    public void testTreePrint() {
+        this.treePrintAndCheck(
+            this.createContext(),
+            "EnvironmentContextSharedConcurrent\n" +
+                "  charset\n" +
+                "    UTF-8 (sun.nio.cs.UTF_8)\n" +
+                "  currency\n" +
+                "    AUD (java.util.Currency)\n" +
+                "  indentation\n" +
+                "    \"  \" (walkingkooka.text.Indentation)\n" +
+                "  lineEnding\n" +
+                "    \"\\n\"\n" +
+                "  locale\n" +
+                "    en_AU (java.util.Locale)\n" +
+                "  now\n" +
+                "    1999-12-31T12:58:59 (java.time.LocalDateTime)\n" +
+                "  timeOffset\n" +
+                "    Z (java.time.ZoneOffset)\n"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedConcurrent> type() {
+        return EnvironmentContextSharedConcurrent.class;
+    }
+}
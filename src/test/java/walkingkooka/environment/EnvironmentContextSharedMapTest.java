@@ -20,14 +20,18 @@ package walkingkooka.environment;
 import org.junit.jupiter.api.Test;
 import walkingkooka.HashCodeEqualsDefinedTesting2;
 import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.net.email.EmailAddress;
 import walkingkooka.text.LineEnding;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
 import java.util.Currency;
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -175,6 +179,106 @@ public final class EnvironmentContextSharedMapTest extends EnvironmentContextSha
         );
     }
 
+    @Test
+    public void testCloneEnvironmentHashMap() {
+        final EnvironmentContextSharedMap context = this.createHashMapContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContext cloned = context.cloneEnvironment();
+        this.checkEquals(
+            context,
+            cloned
+        );
+
+        cloned.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+    }
+
+    // hashMap..........................................................................................................
+
+    @Test
+    public void testHashMapEnvironmentValueWithDifferentEnvironmentValueNameCase() {
+        final EnvironmentContextSharedMap context = this.createHashMapContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                NAME.value()
+                    .toUpperCase(),
+                NAME.type()
+            ),
+            VALUE
+        );
+    }
+
+    @Test
+    public void testHashMapEqualsSortedMap() {
+        final EnvironmentContextSharedMap hashMap = this.createHashMapContext();
+        hashMap.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContextSharedMap sortedMap = this.createContext();
+        sortedMap.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.checkEquals(
+            sortedMap,
+            hashMap
+        );
+    }
+
+    @Test
+    public void testHashMapToString() {
+        final EnvironmentContextSharedMap context = this.createHashMapContext();
+        context.setEnvironmentValue(
+            EnvironmentValueName.with(
+                "zebra",
+                String.class
+            ),
+            VALUE
+        );
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.toStringAndCheck(
+            context,
+            "{charset=UTF-8, currency=AUD, hello.123=\"Gday\", indentation=\"  \", lineEnding=\"\\n\", locale=en_AU, timeOffset=Z, zebra=\"Gday\"}"
+        );
+    }
+
+    private EnvironmentContextSharedMap createHashMapContext() {
+        return EnvironmentContextSharedMap.withHashMap(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            EnvironmentContext.ANONYMOUS
+        );
+    }
+
     // charset..........................................................................................................
 
     @Test
@@ -382,6 +486,80 @@ public final class EnvironmentContextSharedMapTest extends EnvironmentContextSha
 
     // environmentValueNames............................................................................................
 
+    @Test
+    public void testEnvironmentValueNamesTwiceSame() {
+        final EnvironmentContextSharedMap context = this.createContext();
+
+        assertSame(
+            context.environmentValueNames(),
+            context.environmentValueNames()
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueNamesAfterReplacingValueSame() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "names123",
+            String.class
+        );
+        context.setEnvironmentValue(
+            name,
+            "value1"
+        );
+
+        final Set<EnvironmentValueName<?>> names = context.environmentValueNames();
+
+        context.setEnvironmentValue(
+            name,
+            "value2"
+        );
+        context.setLocale(Locale.GERMANY);
+
+        assertSame(
+            names,
+            context.environmentValueNames()
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueNamesAfterAddingAndRemovingName() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "names123",
+            String.class
+        );
+
+        final Set<EnvironmentValueName<?>> names = context.environmentValueNames();
+
+        context.setEnvironmentValue(
+            name,
+            "value1"
+        );
+
+        final Set<EnvironmentValueName<?>> added = context.environmentValueNames();
+        assertNotSame(
+            names,
+            added
+        );
+        this.checkEquals(
+            true,
+            added.contains(name)
+        );
+
+        context.removeEnvironmentValue(name);
+
+        final Set<EnvironmentValueName<?>> removed = context.environmentValueNames();
+        assertNotSame(
+            added,
+            removed
+        );
+        this.checkEquals(
+            names,
+            removed
+        );
+    }
+
     @Test
     public void testEnvironmentalValueNamesWhenAnonymous() {
         final EnvironmentValueName<String> name1 = EnvironmentValueName.with(
@@ -489,6 +667,64 @@ public final class EnvironmentContextSharedMapTest extends EnvironmentContextSha
         );
     }
 
+    // removeEnvironmentValue...........................................................................................
+
+    @Test
+    public void testRemoveEnvironmentValueWithLocaleFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .removeEnvironmentValue(EnvironmentValueName.LOCALE)
+        );
+    }
+
+    @Test
+    public void testRemoveEnvironmentValueWithTimeOffset() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        context.setTimeOffset(ZoneOffset.ofHours(10));
+        context.removeEnvironmentValue(EnvironmentValueName.TIME_OFFSET);
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentContext.DEFAULT_TIME_OFFSET
+        );
+    }
+
+    @Test
+    public void testRemoveEnvironmentValueWatcherReceivesOldValue() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final List<Optional<EnvironmentValueNameAndValue<?>>> fired = Lists.array();
+
+        context.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    fired.add(oldValue);
+                    fired.add(newValue);
+                }
+            }
+        );
+
+        context.removeEnvironmentValue(NAME);
+
+        this.checkEquals(
+            Lists.of(
+                Optional.of(
+                    NAME.setValue(VALUE)
+                ),
+                Optional.empty()
+            ),
+            fired
+        );
+    }
+
     // setUser..........................................................................................................
 
     @Test
@@ -584,6 +820,340 @@ public final class EnvironmentContextSharedMapTest extends EnvironmentContextSha
         );
     }
 
+    @Test
+    public void testParseEnvironmentValueNameHashMapAfterSetDifferentCase() {
+        final EnvironmentContextSharedMap context = this.createHashMapContext();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "Magic123",
+            String.class
+        );
+
+        this.setEnvironmentValueAndCheck(
+            context,
+            name,
+            VALUE
+        );
+
+        final EnvironmentValueName<?> parsed = context.parseEnvironmentValueName("MAGIC123");
+        assertSame(
+            name,
+            parsed
+        );
+    }
+
+    @Test
+    public void testParseEnvironmentValueNameHashMapBuiltIn() {
+        assertSame(
+            EnvironmentValueName.LINE_ENDING,
+            this.createHashMapContext()
+                .parseEnvironmentValueName("LINEENDING")
+        );
+    }
+
+    @Test
+    public void testParseEnvironmentValueNameHashMapUnknown() {
+        this.parseEnvironmentValueNameAndCheck(
+            this.createHashMapContext(),
+            "unknown123",
+            EnvironmentValueName.with(
+                "unknown123",
+                Object.class
+            )
+        );
+    }
+
+    // setEnvironmentValueIfAbsent......................................................................................
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentWhenAbsent() {
+        this.setEnvironmentValueIfAbsentAndCheck(
+            this.createContext(),
+            NAME,
+            VALUE,
+            Optional.empty()
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentWhenPresent() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.setEnvironmentValueIfAbsentAndCheck(
+            context,
+            NAME,
+            "different",
+            Optional.of(VALUE)
+        );
+    }
+
+    // compareAndSetEnvironmentValue....................................................................................
+
+    @Test
+    public void testCompareAndSetEnvironmentValueWhenAbsent() {
+        this.compareAndSetEnvironmentValueAndCheck(
+            this.createContext(),
+            NAME,
+            Optional.empty(),
+            Optional.of(VALUE),
+            true
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueWhenDifferent() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.compareAndSetEnvironmentValueAndCheck(
+            context,
+            NAME,
+            Optional.of("different"),
+            Optional.of("replaced"),
+            false
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueReplace() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.compareAndSetEnvironmentValueAndCheck(
+            context,
+            NAME,
+            Optional.of(VALUE),
+            Optional.of("replaced"),
+            true
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueRemove() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.compareAndSetEnvironmentValueAndCheck(
+            context,
+            NAME,
+            Optional.of(VALUE),
+            Optional.empty(),
+            true
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueWithWatcher() {
+        final EnvironmentContextSharedMap context = this.createContext();
+
+        final List<EnvironmentValueChange> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        context.compareAndSetEnvironmentValue(
+            NAME,
+            Optional.empty(),
+            Optional.of(VALUE)
+        );
+        context.compareAndSetEnvironmentValue(
+            NAME,
+            Optional.empty(),
+            Optional.of("ignored")
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    Optional.of(
+                        NAME.setValue(VALUE)
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // computeEnvironmentValueIfAbsent..................................................................................
+
+    @Test
+    public void testComputeEnvironmentValueIfAbsentWhenAbsent() {
+        final EnvironmentContextSharedMap context = this.createContext();
+
+        this.checkEquals(
+            VALUE,
+            context.computeEnvironmentValueIfAbsent(
+                NAME,
+                (n) -> VALUE
+            )
+        );
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testComputeEnvironmentValueIfAbsentWhenPresent() {
+        final EnvironmentContextSharedMap context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.checkEquals(
+            VALUE,
+            context.computeEnvironmentValueIfAbsent(
+                NAME,
+                (n) -> {
+                    throw new UnsupportedOperationException();
+                }
+            )
+        );
+    }
+
+    // addEnvironmentWatcher names......................................................................................
+
+    @Test
+    public void testAddEnvironmentWatcherWithName() {
+        final EnvironmentContextSharedMap context = this.createContext();
+
+        final List<EnvironmentValueChange> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            NAME,
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        context.setLocale(Locale.GERMANY);
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    Optional.of(
+                        NAME.setValue(VALUE)
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // update...........................................................................................................
+
+    @Test
+    public void testUpdateFiresOnce() {
+        final EnvironmentContextSharedMap context = this.createContext();
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        context.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        context.update(
+            (c) -> {
+                c.setLocale(Locale.GERMANY);
+                c.setEnvironmentValue(
+                    NAME,
+                    VALUE
+                );
+                c.setLocale(Locale.ITALY);
+            }
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(LOCALE)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(Locale.ITALY)
+                        )
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        Optional.of(
+                            NAME.setValue(VALUE)
+                        )
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    @Test
+    public void testUpdateWithoutChangesNotFired() {
+        final EnvironmentContextSharedMap context = this.createContext();
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        context.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        context.update(
+            (c) -> c.setLocale(LOCALE)
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            batches
+        );
+    }
+
     // Context..........................................................................................................
 
     @Override
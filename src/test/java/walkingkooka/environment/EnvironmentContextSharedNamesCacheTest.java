@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class EnvironmentContextSharedNamesCacheTest implements ClassTesting<EnvironmentContextSharedNamesCache> {
+
+    @Test
+    public void testGetSameSource() {
+        final AtomicInteger computed = new AtomicInteger();
+
+        final EnvironmentContextSharedNamesCache cache = EnvironmentContextSharedNamesCache.with(
+            (s) -> {
+                computed.incrementAndGet();
+                return Sets.immutable(s);
+            }
+        );
+
+        final Set<EnvironmentValueName<?>> source = Sets.of(EnvironmentValueName.LOCALE);
+        final Set<EnvironmentValueName<?>> names = cache.get(source);
+
+        assertSame(
+            names,
+            cache.get(source)
+        );
+        this.checkEquals(
+            1,
+            computed.get()
+        );
+    }
+
+    @Test
+    public void testGetDifferentSource() {
+        final AtomicInteger computed = new AtomicInteger();
+
+        final EnvironmentContextSharedNamesCache cache = EnvironmentContextSharedNamesCache.with(
+            (s) -> {
+                computed.incrementAndGet();
+                return Sets.immutable(s);
+            }
+        );
+
+        cache.get(
+            Sets.of(EnvironmentValueName.LOCALE)
+        );
+
+        this.checkEquals(
+            Sets.of(EnvironmentValueName.CURRENCY),
+            cache.get(
+                Sets.of(EnvironmentValueName.CURRENCY)
+            )
+        );
+        this.checkEquals(
+            2,
+            computed.get()
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedNamesCache> type() {
+        return EnvironmentContextSharedNamesCache.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,693 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.HashCodeEqualsDefinedTesting2;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.net.email.EmailAddress;
+
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentContextSharedOverlayTest extends EnvironmentContextSharedTestCase<EnvironmentContextSharedOverlay>
+    implements HashCodeEqualsDefinedTesting2<EnvironmentContextSharedOverlay>,
+    ToStringTesting<EnvironmentContextSharedOverlay> {
+
+    private final static EnvironmentValueName<String> NAME = EnvironmentValueName.with(
+        "hello.123",
+        String.class
+    );
+
+    private final static String VALUE = "Gday";
+
+    @Test
+    public void testWithNullParentFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedOverlay.with(null)
+        );
+    }
+
+    // environmentValue.................................................................................................
+
+    @Test
+    public void testEnvironmentValueFromParent() {
+        this.environmentValueAndCheck(
+            this.createContext(),
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueLocalOverride() {
+        final EnvironmentContext parent = this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        context.setEnvironmentValue(
+            NAME,
+            "local"
+        );
+        context.setLocale(Locale.GERMANY);
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            "local"
+        );
+        this.localeAndCheck(
+            context,
+            Locale.GERMANY
+        );
+
+        // parent unchanged
+        this.environmentValueAndCheck(
+            parent,
+            NAME,
+            VALUE
+        );
+        this.localeAndCheck(
+            parent,
+            LOCALE
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueAfterRemoveTombstone() {
+        final EnvironmentContext parent = this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        context.removeEnvironmentValue(NAME);
+
+        this.environmentValueAndCheck(
+            context,
+            NAME
+        );
+        this.environmentValueAndCheck(
+            parent,
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueAfterRemoveThenSet() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+
+        context.removeEnvironmentValue(NAME);
+        context.setEnvironmentValue(
+            NAME,
+            "again"
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            "again"
+        );
+    }
+
+    @Test
+    public void testRemoveTimeOffset() {
+        final EnvironmentContext parent = this.createParent();
+        parent.setTimeOffset(ZoneOffset.ofHours(10));
+
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+        context.removeEnvironmentValue(EnvironmentValueName.TIME_OFFSET);
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentContext.DEFAULT_TIME_OFFSET
+        );
+    }
+
+    @Test
+    public void testRemoveLocaleFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .removeEnvironmentValue(EnvironmentValueName.LOCALE)
+        );
+    }
+
+    @Test
+    public void testSetUserThenClearUser() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+        context.setUser(
+            Optional.of(DIFFERENT_USER)
+        );
+        this.userAndCheck(
+            context,
+            DIFFERENT_USER
+        );
+
+        context.clearUser();
+        this.userAndCheck(context);
+    }
+
+    // environmentValueNames............................................................................................
+
+    @Test
+    public void testEnvironmentValueNamesWithoutLocalSame() {
+        final EnvironmentContext parent = this.createParent();
+
+        assertSame(
+            parent.environmentValueNames(),
+            EnvironmentContextSharedOverlay.with(parent)
+                .environmentValueNames()
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueNamesMerged() {
+        final EnvironmentValueName<String> local = EnvironmentValueName.with(
+            "local.name",
+            String.class
+        );
+
+        final EnvironmentContextSharedOverlay context = this.createContext();
+        context.removeEnvironmentValue(NAME);
+        context.setEnvironmentValue(
+            local,
+            "local"
+        );
+        context.setUser(
+            Optional.of(USER)
+        );
+
+        this.environmentValueNamesAndCheck(
+            context,
+            EnvironmentValueName.CHARSET,
+            EnvironmentValueName.CURRENCY,
+            EnvironmentValueName.INDENTATION,
+            EnvironmentValueName.LINE_ENDING,
+            local,
+            EnvironmentValueName.LOCALE,
+            EnvironmentValueName.NOW,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentValueName.USER
+        );
+    }
+
+    // watchers.........................................................................................................
+
+    @Test
+    public void testParentEventForwarded() {
+        final EnvironmentContext parent = this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        parent.setEnvironmentValue(
+            NAME,
+            "parent2"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Optional.of(NAME.setValue(VALUE)) + " " + Optional.of(NAME.setValue("parent2"))
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testParentEventShadowedNotForwarded() {
+        final EnvironmentContext parent = this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+        context.setEnvironmentValue(
+            NAME,
+            "local"
+        );
+        context.removeEnvironmentValue(EnvironmentValueName.TIME_OFFSET);
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        parent.setEnvironmentValue(
+            NAME,
+            "parent2"
+        );
+        parent.setTimeOffset(ZoneOffset.ofHours(10));
+
+        this.checkEquals(
+            Lists.empty(),
+            fired
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueFiresWithParentOldValue() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        context.setEnvironmentValue(
+            NAME,
+            "local"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Optional.of(NAME.setValue(VALUE)) + " " + Optional.of(NAME.setValue("local"))
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherSharesParentWatcher() {
+        final EnvironmentContextSharedMap parent = (EnvironmentContextSharedMap) this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        final EnvironmentWatcher watcher = (o, n) -> {
+            throw new UnsupportedOperationException();
+        };
+        context.addEnvironmentWatcher(watcher);
+        context.addEnvironmentWatcherOnce(watcher);
+        context.addEnvironmentWatcher(
+            Sets.of(NAME),
+            watcher
+        );
+
+        this.checkEquals(
+            1,
+            parent.environmentValueWatchers()
+                .size(),
+            "parent watchers"
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherRemoveLastRemovesParentWatcher() {
+        final EnvironmentContextSharedMap parent = (EnvironmentContextSharedMap) this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        final EnvironmentWatcher watcher = (o, n) -> {
+            throw new UnsupportedOperationException();
+        };
+        final Runnable remover1 = context.addEnvironmentWatcher(watcher);
+        final Runnable remover2 = context.addEnvironmentWatcher(
+            Sets.of(NAME),
+            watcher
+        );
+
+        remover1.run();
+
+        this.checkEquals(
+            1,
+            parent.environmentValueWatchers()
+                .size(),
+            "parent watchers after first removed"
+        );
+
+        remover2.run();
+
+        this.checkEquals(
+            0,
+            parent.environmentValueWatchers()
+                .size(),
+            "parent watchers after last removed"
+        );
+
+        parent.setEnvironmentValue(
+            NAME,
+            "parent2"
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherAfterLastRemovedWatchesParentAgain() {
+        final EnvironmentContext parent = this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        context.addEnvironmentWatcher(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        ).run();
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        parent.setEnvironmentValue(
+            NAME,
+            "parent2"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Optional.of(NAME.setValue(VALUE)) + " " + Optional.of(NAME.setValue("parent2"))
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherOnceFiredRemovesParentWatcher() {
+        final EnvironmentContextSharedMap parent = (EnvironmentContextSharedMap) this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcherOnce(
+            (o, n) -> fired.add("once")
+        );
+
+        parent.setEnvironmentValue(
+            NAME,
+            "parent2"
+        );
+
+        this.checkEquals(
+            Lists.of("once"),
+            fired
+        );
+        this.checkEquals(
+            0,
+            parent.environmentValueWatchers()
+                .size(),
+            "parent watchers after once watcher fired"
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherOnceFiredLocallyRemovesParentWatcher() {
+        final EnvironmentContextSharedMap parent = (EnvironmentContextSharedMap) this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcherOnce(
+            (o, n) -> fired.add("once")
+        );
+
+        context.setEnvironmentValue(
+            NAME,
+            "local"
+        );
+
+        this.checkEquals(
+            Lists.of("once"),
+            fired
+        );
+        this.checkEquals(
+            0,
+            parent.environmentValueWatchers()
+                .size(),
+            "parent watchers after once watcher fired"
+        );
+    }
+
+    // cloneEnvironment.................................................................................................
+
+    @Test
+    public void testCloneEnvironment() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            "local"
+        );
+
+        final EnvironmentContextSharedOverlay cloned = (EnvironmentContextSharedOverlay) context.cloneEnvironment();
+        assertSame(
+            context.parent,
+            cloned.parent
+        );
+
+        cloned.setEnvironmentValue(
+            NAME,
+            "cloned"
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            "local"
+        );
+        this.environmentValueAndCheck(
+            cloned,
+            NAME,
+            "cloned"
+        );
+    }
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Test
+    public void testParseEnvironmentValueNameLocal() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "MAGIC",
+            String.class
+        );
+
+        this.setEnvironmentValueAndCheck(
+            context,
+            name,
+            VALUE
+        );
+
+        this.parseEnvironmentValueNameAndCheck(
+            context,
+            name
+        );
+    }
+
+    @Test
+    public void testParseEnvironmentValueNameLocalDifferentCase() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "MAGIC2",
+            String.class
+        );
+
+        context.setEnvironmentValue(
+            name,
+            VALUE
+        );
+
+        assertSame(
+            name,
+            context.parseEnvironmentValueName("magic2")
+        );
+    }
+
+    @Test
+    public void testParseEnvironmentValueNameLocalRemoved() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+
+        context.removeEnvironmentValue(NAME);
+
+        this.parseEnvironmentValueNameAndCheck(
+            context,
+            NAME
+        );
+    }
+
+    // update...........................................................................................................
+
+    @Test
+    public void testUpdateFiresOnce() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        context.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        context.update(
+            (c) -> {
+                c.setLocale(Locale.GERMANY);
+                c.removeEnvironmentValue(NAME);
+            }
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(LOCALE)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+                        )
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            NAME.setValue(VALUE)
+                        ),
+                        Optional.empty()
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    @Test
+    public void testParentUpdateForwardedOnceWithoutOverridden() {
+        final EnvironmentContext parent = this.createParent();
+        final EnvironmentContextSharedOverlay context = EnvironmentContextSharedOverlay.with(parent);
+        context.setLocale(Locale.FRANCE);
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        context.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        parent.update(
+            (c) -> {
+                c.setLocale(Locale.GERMANY);
+                c.setEnvironmentValue(
+                    NAME,
+                    "different"
+                );
+            }
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            NAME.setValue(VALUE)
+                        ),
+                        Optional.of(
+                            NAME.setValue("different")
+                        )
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    // Context..........................................................................................................
+
+    @Override
+    public EnvironmentContextSharedOverlay createContext() {
+        return EnvironmentContextSharedOverlay.with(
+            this.createParent()
+        );
+    }
+
+    private EnvironmentContext createParent() {
+        return this.createParent(EnvironmentContext.ANONYMOUS);
+    }
+
+    private EnvironmentContext createParent(final Optional<EmailAddress> user) {
+        final EnvironmentContext parent = EnvironmentContexts.map(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            user
+        );
+        parent.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+        return parent;
+    }
+
+    // hashCode/equals..................................................................................................
+
+    @Test
+    public void testEqualsDifferentLocal() {
+        final EnvironmentContextSharedOverlay different = this.createContext();
+        different.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+
+        this.checkNotEquals(
+            this.createContext(),
+            different
+        );
+    }
+
+    @Override
+    public EnvironmentContextSharedOverlay createObject() {
+        return this.createContext();
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        final EnvironmentContextSharedOverlay context = this.createContext();
+        context.setLocale(Locale.GERMANY);
+
+        this.toStringAndCheck(
+            context,
+            "{charset=UTF-8, currency=AUD, hello.123=\"Gday\", indentation=\"  \", lineEnding=\"\\n\", locale=de_DE, timeOffset=Z}"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedOverlay> type() {
+        return EnvironmentContextSharedOverlay.class;
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.HashCodeEqualsDefinedTesting2;
+import walkingkooka.ToStringTesting;
+import walkingkooka.net.email.EmailAddress;
+import walkingkooka.text.LineEnding;
+
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentContextSharedPersistentTest extends EnvironmentContextSharedTestCase<EnvironmentContextSharedPersistent>
+    implements HashCodeEqualsDefinedTesting2<EnvironmentContextSharedPersistent>,
+    ToStringTesting<EnvironmentContextSharedPersistent> {
+
+    private final static EnvironmentValueName<String> NAME = EnvironmentValueName.with(
+        "hello.123",
+        String.class
+    );
+
+    private final static String VALUE = "Gday";
+
+    @Test
+    public void testWithNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedPersistent.with(
+                null,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                HAS_NOW,
+                EnvironmentContext.ANONYMOUS
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullHasNowFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedPersistent.with(
+                CHARSET,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                null,
+                EnvironmentContext.ANONYMOUS
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullUserFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedPersistent.with(
+                CHARSET,
+                CURRENCY,
+                INDENTATION,
+                LINE_ENDING,
+                LOCALE,
+                HAS_NOW,
+                null
+            )
+        );
+    }
+
+    // cloneEnvironment.................................................................................................
+
+    @Test
+    public void testCloneEnvironmentSharesValues() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContextSharedPersistent cloned = (EnvironmentContextSharedPersistent) context.cloneEnvironment();
+
+        assertNotSame(
+            context,
+            cloned
+        );
+        assertSame(
+            context.values,
+            cloned.values
+        );
+    }
+
+    @Test
+    public void testCloneEnvironmentThenSetEnvironmentValue() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContext cloned = context.cloneEnvironment();
+        cloned.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+        cloned.setLocale(Locale.GERMANY);
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+        this.localeAndCheck(
+            context,
+            LOCALE
+        );
+        this.environmentValueAndCheck(
+            cloned,
+            NAME,
+            "different"
+        );
+    }
+
+    @Test
+    public void testCloneEnvironmentThenRemoveEnvironmentValue() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContext cloned = context.cloneEnvironment();
+        cloned.removeEnvironmentValue(NAME);
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+        this.environmentValueAndCheck(
+            cloned,
+            NAME
+        );
+    }
+
+    // environmentValue.................................................................................................
+
+    @Test
+    public void testEnvironmentValue() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueWithDifferentEnvironmentValueNameCase() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                NAME.value()
+                    .toUpperCase(),
+                NAME.type()
+            ),
+            VALUE
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueMissing() {
+        this.environmentValueAndCheck(
+            this.createContext(),
+            EnvironmentValueName.with(
+                "Unknown",
+                Void.class
+            )
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueWithUser() {
+        this.environmentValueAndCheck(
+            this.createContext(
+                Optional.of(USER)
+            ),
+            EnvironmentValueName.USER,
+            USER
+        );
+    }
+
+    // environmentValueNames............................................................................................
+
+    @Test
+    public void testEnvironmentValueNamesTwiceSame() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+
+        assertSame(
+            context.environmentValueNames(),
+            context.environmentValueNames()
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueNamesAfterReplacingValueSame() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final Set<EnvironmentValueName<?>> names = context.environmentValueNames();
+
+        context.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+        context.setLocale(Locale.GERMANY);
+
+        assertSame(
+            names,
+            context.environmentValueNames()
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueNamesAfterRemoving() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final Set<EnvironmentValueName<?>> names = context.environmentValueNames();
+
+        context.removeEnvironmentValue(NAME);
+
+        this.checkEquals(
+            false,
+            context.environmentValueNames()
+                .contains(NAME)
+        );
+        this.checkEquals(
+            true,
+            names.contains(NAME)
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueNames() {
+        final EnvironmentValueName<String> name1 = EnvironmentValueName.with(
+            "prefix.name1",
+            String.class
+        );
+
+        final EnvironmentContextSharedPersistent context = this.createContext(
+            Optional.of(USER)
+        );
+        context.setEnvironmentValue(
+            name1,
+            VALUE
+        );
+
+        this.environmentValueNamesAndCheck(
+            context,
+            EnvironmentValueName.CHARSET,
+            EnvironmentValueName.CURRENCY,
+            EnvironmentValueName.INDENTATION,
+            EnvironmentValueName.LINE_ENDING,
+            EnvironmentValueName.LOCALE,
+            EnvironmentValueName.NOW,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentValueName.USER,
+            name1
+        );
+    }
+
+    // removeEnvironmentValue...........................................................................................
+
+    @Test
+    public void testRemoveEnvironmentValueWithLocaleFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .removeEnvironmentValue(EnvironmentValueName.LOCALE)
+        );
+    }
+
+    @Test
+    public void testRemoveEnvironmentValueWithTimeOffset() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setTimeOffset(ZoneOffset.ofHours(10));
+        context.removeEnvironmentValue(EnvironmentValueName.TIME_OFFSET);
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentContext.DEFAULT_TIME_OFFSET
+        );
+    }
+
+    // setUser..........................................................................................................
+
+    @Test
+    public void testSetUser() {
+        this.setUserAndCheck(
+            this.createContext(),
+            DIFFERENT_USER
+        );
+    }
+
+    @Test
+    public void testClearUser() {
+        final EnvironmentContextSharedPersistent context = this.createContext(
+            Optional.of(USER)
+        );
+        context.clearUser();
+
+        this.userAndCheck(context);
+    }
+
+    // CanParseEnvironmentValueName.....................................................................................
+
+    @Test
+    public void testParseEnvironmentValueNameAfterSetDifferent() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "MAGIC",
+            String.class
+        );
+
+        this.setEnvironmentValueAndCheck(
+            context,
+            name,
+            VALUE
+        );
+
+        this.parseEnvironmentValueNameAndCheck(
+            context,
+            name
+        );
+    }
+
+    // Context..........................................................................................................
+
+    @Override
+    public EnvironmentContextSharedPersistent createContext() {
+        return this.createContext(EnvironmentContext.ANONYMOUS);
+    }
+
+    private EnvironmentContextSharedPersistent createContext(final Optional<EmailAddress> user) {
+        return EnvironmentContextSharedPersistent.with(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            user
+        );
+    }
+
+    // hashCode/equals..................................................................................................
+
+    @Test
+    public void testEqualsDifferentValues() {
+        final EnvironmentContext context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            "World1"
+        );
+
+        final EnvironmentContext different = this.createContext();
+        different.setEnvironmentValue(
+            NAME,
+            "World22"
+        );
+
+        this.checkNotEquals(
+            context,
+            different
+        );
+    }
+
+    @Test
+    public void testEqualsDifferentLineEnding() {
+        final EnvironmentContext different = this.createContext();
+        different.setLineEnding(LineEnding.CRNL);
+
+        this.checkNotEquals(
+            this.createContext(),
+            different
+        );
+    }
+
+    @Override
+    public EnvironmentContextSharedPersistent createObject() {
+        return this.createContext();
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        final EnvironmentContextSharedPersistent context = this.createContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.toStringAndCheck(
+            context,
+            "{charset=UTF-8, currency=AUD, hello.123=\"Gday\", indentation=\"  \", lineEnding=\"\\n\", locale=en_AU, timeOffset=Z}"
+        );
+    }
+
+    // TreePrintable....................................................................................................
+
+    @Test
+    public void testTreePrint() {
+        this.treePrintAndCheck(
+            this.createContext(),
+            "EnvironmentContextSharedPersistent\n" +
+                "  charset\n" +
+                "    UTF-8 (sun.nio.cs.UTF_8)\n" +
+                "  currency\n" +
+                "    AUD (java.util.Currency)\n" +
+                "  indentation\n" +
+                "    \"  \" (walkingkooka.text.Indentation)\n" +
+                "  lineEnding\n" +
+                "    \"\\n\"\n" +
+                "  locale\n" +
+                "    en_AU (java.util.Locale)\n" +
+                "  now\n" +
+                "    1999-12-31T12:58:59 (java.time.LocalDateTime)\n" +
+                "  timeOffset\n" +
+                "    Z (java.time.ZoneOffset)\n"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedPersistent> type() {
+        return EnvironmentContextSharedPersistent.class;
+    }
+}
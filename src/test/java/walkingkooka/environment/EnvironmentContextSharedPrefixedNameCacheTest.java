@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class EnvironmentContextSharedPrefixedNameCacheTest implements ClassTesting<EnvironmentContextSharedPrefixedNameCache> {
+
+    private final static String PREFIX = "prefix.";
+
+    @Test
+    public void testRemovePrefix() {
+        this.checkEquals(
+            EnvironmentValueName.with(
+                "cache1",
+                String.class
+            ),
+            EnvironmentContextSharedPrefixedNameCache.with(PREFIX)
+                .removePrefix(
+                    EnvironmentValueName.with(
+                        "prefix.cache1",
+                        String.class
+                    )
+                )
+        );
+    }
+
+    @Test
+    public void testRemovePrefixTwiceSame() {
+        final EnvironmentContextSharedPrefixedNameCache cache = EnvironmentContextSharedPrefixedNameCache.with(PREFIX);
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "prefix.cache2",
+            String.class
+        );
+
+        assertSame(
+            cache.removePrefix(name),
+            cache.removePrefix(name)
+        );
+    }
+
+    @Test
+    public void testRemovePrefixMissing() {
+        final EnvironmentContextSharedPrefixedNameCache cache = EnvironmentContextSharedPrefixedNameCache.with(PREFIX);
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "cache3",
+            String.class
+        );
+
+        this.checkEquals(
+            null,
+            cache.removePrefix(name)
+        );
+        this.checkEquals(
+            null,
+            cache.removePrefix(name)
+        );
+    }
+
+    @Test
+    public void testRemovePrefixManyNames() {
+        final EnvironmentContextSharedPrefixedNameCache cache = EnvironmentContextSharedPrefixedNameCache.with(PREFIX);
+
+        for (int i = 0; i < 256; i++) {
+            this.checkEquals(
+                EnvironmentValueName.with(
+                    "cache" + i,
+                    String.class
+                ),
+                cache.removePrefix(
+                    EnvironmentValueName.with(
+                        "prefix.cache" + i,
+                        String.class
+                    )
+                )
+            );
+        }
+    }
+
+    @Test
+    public void testToString() {
+        this.checkEquals(
+            PREFIX,
+            EnvironmentContextSharedPrefixedNameCache.with(PREFIX)
+                .toString()
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedPrefixedNameCache> type() {
+        return EnvironmentContextSharedPrefixedNameCache.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
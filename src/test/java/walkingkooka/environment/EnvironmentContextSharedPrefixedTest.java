@@ -20,11 +20,13 @@ package walkingkooka.environment;
 import org.junit.jupiter.api.Test;
 import walkingkooka.HashCodeEqualsDefinedTesting2;
 import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.collect.set.Sets;
 import walkingkooka.net.email.EmailAddress;
 import walkingkooka.props.Properties;
 import walkingkooka.props.PropertiesPath;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -265,6 +267,371 @@ public final class EnvironmentContextSharedPrefixedTest extends EnvironmentConte
 
     private boolean fired;
 
+    @Test
+    public void testSetEnvironmentValueWithWatcherBuiltInNotPrefixed() {
+        final EnvironmentContext context = ENVIRONMENT_CONTEXT.cloneEnvironment();
+
+        final List<EnvironmentValueChange> fired = Lists.array();
+        EnvironmentContextSharedPrefixed.with(
+            PREFIX,
+            context
+        ).addEnvironmentWatcher(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        context.setEnvironmentValue(
+            EnvironmentValueName.CHARSET,
+            DIFFERENT_CHARSET
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.of(
+                        EnvironmentValueName.CHARSET.setValue(CHARSET)
+                    ),
+                    Optional.of(
+                        EnvironmentValueName.CHARSET.setValue(DIFFERENT_CHARSET)
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // addEnvironmentWatcher............................................................................................
+
+    @Test
+    public void testAddEnvironmentWatcherSharesContextWatcher() {
+        final EnvironmentContextSharedMap context = this.map();
+
+        final EnvironmentContextSharedPrefixed prefixed = EnvironmentContextSharedPrefixed.with(
+            PREFIX,
+            context
+        );
+
+        final List<String> fired = Lists.array();
+        prefixed.addEnvironmentWatcher(
+            (o, n) -> fired.add("1")
+        );
+        prefixed.addEnvironmentWatcherOnce(
+            (o, n) -> fired.add("2")
+        );
+
+        this.checkEquals(
+            1,
+            context.environmentValueWatchers()
+                .size(),
+            "context watchers"
+        );
+
+        context.setLocale(DIFFERENT_LOCALE);
+
+        this.checkEquals(
+            Lists.of(
+                "1",
+                "2"
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherRemoveLastRemovesContextWatcher() {
+        final EnvironmentContextSharedMap context = this.map();
+
+        final EnvironmentContextSharedPrefixed prefixed = EnvironmentContextSharedPrefixed.with(
+            PREFIX,
+            context
+        );
+
+        final EnvironmentWatcher watcher = (o, n) -> {
+            throw new UnsupportedOperationException();
+        };
+        final Runnable remover1 = prefixed.addEnvironmentWatcher(watcher);
+        final Runnable remover2 = prefixed.addEnvironmentWatcher(watcher);
+
+        remover1.run();
+
+        this.checkEquals(
+            1,
+            context.environmentValueWatchers()
+                .size(),
+            "context watchers after first remove"
+        );
+
+        remover2.run();
+
+        this.checkEquals(
+            0,
+            context.environmentValueWatchers()
+                .size(),
+            "context watchers after last remove"
+        );
+
+        context.setLocale(DIFFERENT_LOCALE);
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherOnceFiredRemovesContextWatcher() {
+        final EnvironmentContextSharedMap context = this.map();
+
+        final EnvironmentContextSharedPrefixed prefixed = EnvironmentContextSharedPrefixed.with(
+            PREFIX,
+            context
+        );
+
+        final List<String> fired = Lists.array();
+        prefixed.addEnvironmentWatcherOnce(
+            (o, n) -> fired.add("once")
+        );
+
+        context.setLocale(DIFFERENT_LOCALE);
+
+        this.checkEquals(
+            Lists.of("once"),
+            fired
+        );
+        this.checkEquals(
+            0,
+            context.environmentValueWatchers()
+                .size(),
+            "context watchers after once watcher fired"
+        );
+
+        prefixed.addEnvironmentWatcher(
+            (o, n) -> fired.add("again")
+        );
+        context.setLocale(LOCALE);
+
+        this.checkEquals(
+            Lists.of(
+                "once",
+                "again"
+            ),
+            fired
+        );
+    }
+
+    private EnvironmentContextSharedMap map() {
+        return (EnvironmentContextSharedMap) EnvironmentContexts.map(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            OPTIONAL_USER
+        );
+    }
+
+    // setEnvironmentValueIfAbsent......................................................................................
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentBuiltInForwarded() {
+        final EnvironmentContext context = ENVIRONMENT_CONTEXT.cloneEnvironment();
+        context.setUser(EnvironmentContext.ANONYMOUS);
+
+        this.setEnvironmentValueIfAbsentAndCheck(
+            EnvironmentContextSharedPrefixed.with(
+                PREFIX,
+                context
+            ),
+            EnvironmentValueName.USER,
+            DIFFERENT_USER,
+            Optional.empty()
+        );
+        this.userAndCheck(
+            context,
+            Optional.of(DIFFERENT_USER)
+        );
+    }
+
+    // compareAndSetEnvironmentValue....................................................................................
+
+    @Test
+    public void testCompareAndSetEnvironmentValueBuiltInForwarded() {
+        final EnvironmentContext context = ENVIRONMENT_CONTEXT.cloneEnvironment();
+
+        this.compareAndSetEnvironmentValueAndCheck(
+            EnvironmentContextSharedPrefixed.with(
+                PREFIX,
+                context
+            ),
+            EnvironmentValueName.LOCALE,
+            Optional.of(LOCALE),
+            Optional.of(DIFFERENT_LOCALE),
+            true
+        );
+        this.localeAndCheck(
+            context,
+            DIFFERENT_LOCALE
+        );
+    }
+
+    // addEnvironmentWatcher names......................................................................................
+
+    @Test
+    public void testAddEnvironmentWatcherWithPrefixedName() {
+        final EnvironmentContext context = ENVIRONMENT_CONTEXT.cloneEnvironment();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "hello",
+            String.class
+        );
+        final EnvironmentValueName<String> prefixedName = EnvironmentValueName.with(
+            PREFIX.value() + name.value(),
+            String.class
+        );
+
+        final List<EnvironmentValueChange> fired = Lists.array();
+        EnvironmentContextSharedPrefixed.with(
+            PREFIX,
+            context
+        ).addEnvironmentWatcher(
+            prefixedName,
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        context.setEnvironmentValue(
+            EnvironmentValueName.with(
+                "different",
+                String.class
+            ),
+            "ignored"
+        );
+        context.setEnvironmentValue(
+            name,
+            "world"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    Optional.of(
+                        prefixedName.setValue("world")
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testAddEnvironmentWatcherWithNameWithoutPrefix() {
+        final EnvironmentContext context = ENVIRONMENT_CONTEXT.cloneEnvironment();
+
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "hello",
+            String.class
+        );
+
+        EnvironmentContextSharedPrefixed.with(
+            PREFIX,
+            context
+        ).addEnvironmentWatcher(
+            name,
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        );
+
+        context.setEnvironmentValue(
+            name,
+            "world"
+        );
+    }
+
+    // update...........................................................................................................
+
+    @Test
+    public void testUpdateFiresOnce() {
+        final EnvironmentContext context = EnvironmentContexts.concurrent(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            OPTIONAL_USER
+        );
+        final EnvironmentContextSharedPrefixed prefixed = EnvironmentContextSharedPrefixed.with(
+            PREFIX,
+            context
+        );
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        prefixed.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        prefixed.update(
+            (c) -> {
+                checkEquals(
+                    EnvironmentContextSharedPrefixed.class,
+                    c.getClass(),
+                    "context"
+                );
+
+                c.setLineEnding(DIFFERENT_LINE_ENDING);
+                c.setLocale(DIFFERENT_LOCALE);
+            }
+        );
+
+        this.checkEquals(
+            DIFFERENT_LOCALE,
+            prefixed.locale(),
+            "locale"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LINE_ENDING.setValue(LINE_ENDING)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LINE_ENDING.setValue(DIFFERENT_LINE_ENDING)
+                        )
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(LOCALE)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(DIFFERENT_LOCALE)
+                        )
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+
     // EnvironmentContextTesting........................................................................................
 
     @Override
@@ -314,6 +681,16 @@ public final class EnvironmentContextSharedPrefixedTest extends EnvironmentConte
 
     // environmentValueNames............................................................................................
 
+    @Test
+    public void testEnvironmentValueNamesTwiceSame() {
+        final EnvironmentContextSharedPrefixed context = this.createContext();
+
+        assertSame(
+            context.environmentValueNames(),
+            context.environmentValueNames()
+        );
+    }
+
     @Test
     public void testEnvironmentalValueNames() {
         final String key1 = "prefix.name1";
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentContextSharedPropertiesFileTest extends EnvironmentContextSharedTestCase<EnvironmentContextSharedPropertiesFile> {
+
+    private final static EnvironmentValueName<String> NAME1 = EnvironmentValueName.with(
+        "hello.name1",
+        String.class
+    );
+
+    private final static EnvironmentValueName<String> NAME2 = EnvironmentValueName.with(
+        "hello.name2",
+        String.class
+    );
+
+    private final static EnvironmentValueName<String> NAME3 = EnvironmentValueName.with(
+        "hello.name3",
+        String.class
+    );
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        for (final Path file : this.files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private final List<Path> files = Lists.array();
+
+    @Test
+    public void testWithNullFileFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedPropertiesFile.with(
+                null,
+                StandardCharsets.UTF_8,
+                ENVIRONMENT_CONTEXT
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullCharsetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedPropertiesFile.with(
+                this.file(""),
+                null,
+                ENVIRONMENT_CONTEXT
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullContextFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentContextSharedPropertiesFile.with(
+                this.file(""),
+                StandardCharsets.UTF_8,
+                null
+            )
+        );
+    }
+
+    // environmentValue.................................................................................................
+
+    @Test
+    public void testEnvironmentValue() {
+        this.environmentValueAndCheck(
+            this.createContext(),
+            NAME1,
+            "value1"
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueEmptyFile() throws IOException {
+        this.environmentValueAndCheck(
+            EnvironmentContextSharedPropertiesFile.with(
+                this.file(""),
+                StandardCharsets.UTF_8,
+                ENVIRONMENT_CONTEXT.cloneEnvironment()
+            ),
+            NAME1
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueMissingFile() throws IOException {
+        final Path file = this.file("");
+        Files.delete(file);
+
+        this.environmentValueAndCheck(
+            EnvironmentContextSharedPropertiesFile.with(
+                file,
+                StandardCharsets.UTF_8,
+                ENVIRONMENT_CONTEXT.cloneEnvironment()
+            ),
+            NAME1
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueLocale() {
+        this.environmentValueAndCheck(
+            this.createContext(),
+            EnvironmentValueName.LOCALE,
+            LOCALE
+        );
+    }
+
+    // reload...........................................................................................................
+
+    @Test
+    public void testReloadFiresOnlyChanges() throws IOException {
+        final EnvironmentContextSharedPropertiesFile context = this.createContext();
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        Files.write(
+            context.file(),
+            "hello.name1=value1\nhello.name2=changed2\nhello.name3=value3\n".getBytes(StandardCharsets.UTF_8)
+        );
+        context.reload();
+
+        this.checkEquals(
+            Lists.of(
+                "Optional[hello.name2=value2] Optional[hello.name2=changed2]",
+                "Optional.empty Optional[hello.name3=value3]"
+            ),
+            fired
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME2,
+            "changed2"
+        );
+        this.environmentValueAndCheck(
+            context,
+            NAME3,
+            "value3"
+        );
+    }
+
+    @Test
+    public void testReloadFiresAfterValuesPublishedOutsideMonitor() throws IOException {
+        final EnvironmentContextSharedPropertiesFile context = this.createContext();
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(
+                Thread.holdsLock(context) + " " + context.environmentValue(NAME2)
+                    .orElse(null)
+            )
+        );
+
+        Files.write(
+            context.file(),
+            "hello.name1=value1\nhello.name2=changed2\n".getBytes(StandardCharsets.UTF_8)
+        );
+        context.reload();
+
+        this.checkEquals(
+            Lists.of(
+                "false changed2"
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testReloadFiresSingleBatch() throws IOException {
+        final EnvironmentContextSharedPropertiesFile context = this.createContext();
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        context.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        Files.write(
+            context.file(),
+            "hello.name1=value1\nhello.name2=changed2\nhello.name3=value3\n".getBytes(StandardCharsets.UTF_8)
+        );
+        context.reload();
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.of(NAME2.setValue("value2")),
+                        Optional.of(NAME2.setValue("changed2"))
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        Optional.of(NAME3.setValue("value3"))
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    @Test
+    public void testReloadInvalidKeyKeepsPreviousValues() throws IOException {
+        final EnvironmentContextSharedPropertiesFile context = this.createContext();
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        Files.write(
+            context.file(),
+            "hello.name1=value1\n1invalid=value2\n".getBytes(StandardCharsets.UTF_8)
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            context::reload
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            fired,
+            "fired"
+        );
+        this.environmentValueAndCheck(
+            context,
+            NAME2,
+            "value2"
+        );
+
+        Files.write(
+            context.file(),
+            "hello.name1=value1\n".getBytes(StandardCharsets.UTF_8)
+        );
+        context.reload();
+
+        this.checkEquals(
+            Lists.of(
+                "Optional[hello.name2=value2] Optional.empty"
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testReloadRemoved() throws IOException {
+        final EnvironmentContextSharedPropertiesFile context = this.createContext();
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        Files.write(
+            context.file(),
+            "hello.name2=value2\n".getBytes(StandardCharsets.UTF_8)
+        );
+        context.reload();
+
+        this.checkEquals(
+            Lists.of(
+                "Optional[hello.name1=value1] Optional.empty"
+            ),
+            fired
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME1
+        );
+    }
+
+    @Test
+    public void testReloadUnchangedFiresNothing() throws IOException {
+        final EnvironmentContextSharedPropertiesFile context = this.createContext();
+
+        final List<String> fired = Lists.array();
+        context.addEnvironmentWatcher(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        context.reload();
+
+        this.checkEquals(
+            Lists.empty(),
+            fired
+        );
+    }
+
+    @Test
+    public void testWatchReloadsAfterFileChanges() throws Exception {
+        final EnvironmentContextSharedPropertiesFile context = this.createContext();
+
+        final CountDownLatch changed = new CountDownLatch(1);
+        final List<String> fired = Collections.synchronizedList(Lists.array());
+        context.addEnvironmentWatcher(
+            (o, n) -> {
+                fired.add(o + " " + n);
+                changed.countDown();
+            }
+        );
+
+        context.watch();
+        try {
+            Files.write(
+                context.file(),
+                "hello.name1=changed1\nhello.name2=value2\n".getBytes(StandardCharsets.UTF_8)
+            );
+
+            this.checkEquals(
+                true,
+                changed.await(30, TimeUnit.SECONDS),
+                "timed out waiting for reload"
+            );
+        } finally {
+            context.close();
+        }
+
+        this.environmentValueAndCheck(
+            context,
+            NAME1,
+            "changed1"
+        );
+    }
+
+    // Context..........................................................................................................
+
+    @Override
+    public EnvironmentContextSharedPropertiesFile createContext() {
+        try {
+            return EnvironmentContextSharedPropertiesFile.with(
+                this.file("hello.name1=value1\nhello.name2=value2\n"),
+                StandardCharsets.UTF_8,
+                ENVIRONMENT_CONTEXT.cloneEnvironment()
+            );
+        } catch (final IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+    }
+
+    private Path file(final String content) {
+        try {
+            final Path file = Files.createTempFile(
+                this.getClass().getSimpleName(),
+                ".properties"
+            );
+            this.files.add(file);
+
+            Files.write(
+                file,
+                content.getBytes(StandardCharsets.UTF_8)
+            );
+            return file;
+        } catch (final IOException cause) {
+            throw new UncheckedIOException(cause);
+        }
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedPropertiesFile> type() {
+        return EnvironmentContextSharedPropertiesFile.class;
+    }
+}
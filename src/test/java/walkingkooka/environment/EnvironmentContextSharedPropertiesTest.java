@@ -20,12 +20,17 @@ package walkingkooka.environment;
 import org.junit.jupiter.api.Test;
 import walkingkooka.HashCodeEqualsDefinedTesting2;
 import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.convert.FakeConverterContext;
 import walkingkooka.props.Properties;
 import walkingkooka.props.PropertiesPath;
 import walkingkooka.text.LineEnding;
 
 import java.util.Currency;
+import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -115,6 +120,67 @@ public final class EnvironmentContextSharedPropertiesTest extends EnvironmentCon
         );
     }
 
+    @Test
+    public void testEnvironmentalValueDifferentCase() {
+        this.environmentValueAndCheck(
+            this.createContext(),
+            EnvironmentValueName.with(
+                NAME.toUpperCase(),
+                String.class
+            ),
+            VALUE
+        );
+    }
+
+    @Test
+    public void testEnvironmentalValueKeysDifferentCaseExact() {
+        final EnvironmentContextSharedProperties context = EnvironmentContextSharedProperties.with(
+            Properties.EMPTY.set(
+                PropertiesPath.parse("hello.Case"),
+                "upper"
+            ).set(
+                PropertiesPath.parse("hello.case"),
+                "lower"
+            ).set(
+                PropertiesPath.parse("hello.other"),
+                "other"
+            ),
+            ENVIRONMENT_CONTEXT
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                "hello.Case",
+                String.class
+            ),
+            "upper"
+        );
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                "hello.case",
+                String.class
+            ),
+            "lower"
+        );
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                "hello.CASE",
+                String.class
+            )
+        );
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                "hello.OTHER",
+                String.class
+            ),
+            "other"
+        );
+    }
+
     @Test
     public void testEnvironmentalValueMissing() {
         this.environmentValueAndCheck(
@@ -183,8 +249,102 @@ public final class EnvironmentContextSharedPropertiesTest extends EnvironmentCon
         );
     }
 
+    // typed............................................................................................................
+
+    @Test
+    public void testEnvironmentValueTyped() {
+        final EnvironmentContextSharedProperties context = this.createTypedContext();
+
+        this.environmentValueAndCheck(
+            context,
+            EnvironmentValueName.with(
+                "number",
+                Integer.class
+            ),
+            12345
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueTypedMemoised() {
+        final EnvironmentContextSharedProperties context = this.createTypedContext();
+        final EnvironmentValueName<Integer> name = EnvironmentValueName.with(
+            "number",
+            Integer.class
+        );
+
+        assertSame(
+            context.environmentValueOrFail(name),
+            context.environmentValueOrFail(name)
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueTypedString() {
+        this.environmentValueAndCheck(
+            this.createTypedContext(),
+            EnvironmentValueName.with(
+                "number",
+                String.class
+            ),
+            "12345"
+        );
+    }
+
+    private EnvironmentContextSharedProperties createTypedContext() {
+        return EnvironmentContextSharedProperties.with(
+            Properties.EMPTY.set(
+                PropertiesPath.parse("number"),
+                "12345"
+            ),
+            new FakeConverterContext() {
+                @Override
+                public <T> T convertOrFail(final Object value,
+                                           final Class<T> type) {
+                    checkEquals(
+                        Integer.class,
+                        type,
+                        "type"
+                    );
+                    return type.cast(
+                        Integer.valueOf((String) value)
+                    );
+                }
+            },
+            ENVIRONMENT_CONTEXT.cloneEnvironment()
+        );
+    }
+
     // environmentValueNames............................................................................................
 
+    @Test
+    public void testEnvironmentValueNamesTwiceSame() {
+        final EnvironmentContextSharedProperties context = this.createContext();
+
+        assertSame(
+            context.environmentValueNames(),
+            context.environmentValueNames()
+        );
+    }
+
+    @Test
+    public void testEnvironmentValueNamesAfterContextUserChanges() {
+        final EnvironmentContextSharedProperties context = this.createContext();
+        final Set<EnvironmentValueName<?>> names = context.environmentValueNames();
+
+        context.clearUser();
+
+        this.checkEquals(
+            false,
+            context.environmentValueNames()
+                .contains(EnvironmentValueName.USER)
+        );
+        this.checkEquals(
+            true,
+            names.contains(EnvironmentValueName.USER)
+        );
+    }
+
     @Test
     public void testEnvironmentalValueNames() {
         final String key1 = "prefix.name1";
@@ -220,6 +380,88 @@ public final class EnvironmentContextSharedPropertiesTest extends EnvironmentCon
         );
     }
 
+    // update...........................................................................................................
+
+    @Test
+    public void testUpdateFiresOnce() {
+        final EnvironmentContext context = EnvironmentContexts.concurrent(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            OPTIONAL_USER
+        );
+        final EnvironmentContextSharedProperties properties = EnvironmentContextSharedProperties.with(
+            Properties.EMPTY.set(
+                PropertiesPath.parse(NAME),
+                VALUE
+            ),
+            context
+        );
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        properties.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        properties.update(
+            (c) -> {
+                checkEquals(
+                    EnvironmentContextSharedProperties.class,
+                    c.getClass(),
+                    "context"
+                );
+
+                c.setLineEnding(DIFFERENT_LINE_ENDING);
+                c.setLocale(DIFFERENT_LOCALE);
+            }
+        );
+
+        this.checkEquals(
+            DIFFERENT_LOCALE,
+            properties.locale(),
+            "locale"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LINE_ENDING.setValue(LINE_ENDING)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LINE_ENDING.setValue(DIFFERENT_LINE_ENDING)
+                        )
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(LOCALE)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(DIFFERENT_LOCALE)
+                        )
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+
     @Override
     public EnvironmentContextSharedProperties createContext() {
         return EnvironmentContextSharedProperties.with(
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.ToStringTesting;
+import walkingkooka.convert.ConverterContext;
+import walkingkooka.convert.FakeConverterContext;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class EnvironmentContextSharedPropertiesValueTest implements ClassTesting<EnvironmentContextSharedPropertiesValue>,
+    ToStringTesting<EnvironmentContextSharedPropertiesValue> {
+
+    private final static String TEXT = "123";
+
+    @Test
+    public void testValueWithoutConverterContext() {
+        assertSame(
+            TEXT,
+            EnvironmentContextSharedPropertiesValue.with(TEXT)
+                .value(
+                    Integer.class,
+                    null
+                )
+        );
+    }
+
+    @Test
+    public void testValueString() {
+        assertSame(
+            TEXT,
+            EnvironmentContextSharedPropertiesValue.with(TEXT)
+                .value(
+                    String.class,
+                    this.converterContext(new AtomicInteger())
+                )
+        );
+    }
+
+    @Test
+    public void testValueConvertedOnce() {
+        final AtomicInteger converted = new AtomicInteger();
+        final ConverterContext context = this.converterContext(converted);
+
+        final EnvironmentContextSharedPropertiesValue value = EnvironmentContextSharedPropertiesValue.with(TEXT);
+
+        this.checkEquals(
+            123,
+            value.value(
+                Integer.class,
+                context
+            )
+        );
+        this.checkEquals(
+            123,
+            value.value(
+                Integer.class,
+                context
+            )
+        );
+        this.checkEquals(
+            1,
+            converted.get(),
+            "converted"
+        );
+    }
+
+    @Test
+    public void testValueDifferentTypeConvertedAgain() {
+        final AtomicInteger converted = new AtomicInteger();
+        final ConverterContext context = this.converterContext(converted);
+
+        final EnvironmentContextSharedPropertiesValue value = EnvironmentContextSharedPropertiesValue.with(TEXT);
+
+        value.value(
+            Integer.class,
+            context
+        );
+
+        this.checkEquals(
+            123L,
+            value.value(
+                Long.class,
+                context
+            )
+        );
+        this.checkEquals(
+            2,
+            converted.get(),
+            "converted"
+        );
+    }
+
+    private ConverterContext converterContext(final AtomicInteger converted) {
+        return new FakeConverterContext() {
+            @Override
+            public <T> T convertOrFail(final Object value,
+                                       final Class<T> type) {
+                converted.incrementAndGet();
+
+                final long number = Long.parseLong((String) value);
+                return Cast.to(
+                    Integer.class == type ?
+                        (Object) (int) number :
+                        (Object) number
+                );
+            }
+        };
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(
+            EnvironmentContextSharedPropertiesValue.with(TEXT),
+            TEXT
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedPropertiesValue> type() {
+        return EnvironmentContextSharedPropertiesValue.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
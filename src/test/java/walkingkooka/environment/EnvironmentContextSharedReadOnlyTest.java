@@ -18,9 +18,11 @@
 package walkingkooka.environment;
 
 import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.net.email.EmailAddress;
 import walkingkooka.predicate.Predicates;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.function.Predicate;
@@ -774,6 +776,210 @@ public final class EnvironmentContextSharedReadOnlyTest extends EnvironmentConte
 
     private boolean fired;
 
+    // setEnvironmentValueIfAbsent......................................................................................
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentReadOnlyPresent() {
+        this.setEnvironmentValueIfAbsentAndCheck(
+            this.createContext(),
+            EnvironmentValueName.USER,
+            DIFFERENT_USER,
+            OPTIONAL_USER
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentReadOnlyAbsentFails() {
+        final EnvironmentContextSharedReadOnly context = this.createContext();
+        context.context.removeEnvironmentValue(EnvironmentValueName.USER);
+
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> context.setEnvironmentValueIfAbsent(
+                EnvironmentValueName.USER,
+                DIFFERENT_USER
+            )
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueIfAbsentNotReadOnly() {
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "hello",
+            String.class
+        );
+
+        this.setEnvironmentValueIfAbsentAndCheck(
+            this.createContext(),
+            name,
+            "world",
+            Optional.empty()
+        );
+    }
+
+    // compareAndSetEnvironmentValue....................................................................................
+
+    @Test
+    public void testCompareAndSetEnvironmentValueReadOnlyDifferentExpected() {
+        this.compareAndSetEnvironmentValueAndCheck(
+            this.createContext(),
+            EnvironmentValueName.USER,
+            Optional.empty(),
+            Optional.of(DIFFERENT_USER),
+            false
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueReadOnlySameValue() {
+        this.compareAndSetEnvironmentValueAndCheck(
+            this.createContext(),
+            EnvironmentValueName.USER,
+            OPTIONAL_USER,
+            OPTIONAL_USER,
+            true
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueReadOnlyDifferentValueFails() {
+        final EnvironmentContextSharedReadOnly context = this.createContext();
+
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> context.compareAndSetEnvironmentValue(
+                EnvironmentValueName.USER,
+                OPTIONAL_USER,
+                Optional.of(DIFFERENT_USER)
+            )
+        );
+    }
+
+    @Test
+    public void testCompareAndSetEnvironmentValueNotReadOnly() {
+        this.compareAndSetEnvironmentValueAndCheck(
+            this.createContext(),
+            EnvironmentValueName.LOCALE,
+            Optional.of(LOCALE),
+            Optional.of(DIFFERENT_LOCALE),
+            true
+        );
+    }
+
+    // update...........................................................................................................
+
+    @Test
+    public void testUpdateFiresOnce() {
+        final EnvironmentContext context = EnvironmentContexts.concurrent(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            OPTIONAL_USER
+        );
+        final EnvironmentContextSharedReadOnly readonly = EnvironmentContextSharedReadOnly.with(
+            READ_ONLY_NAMES,
+            context
+        );
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+        readonly.addEnvironmentWatcher(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        readonly.update(
+            (c) -> {
+                checkEquals(
+                    EnvironmentContextSharedReadOnly.class,
+                    c.getClass(),
+                    "context"
+                );
+
+                c.setLineEnding(DIFFERENT_LINE_ENDING);
+                c.setLocale(DIFFERENT_LOCALE);
+            }
+        );
+
+        this.checkEquals(
+            DIFFERENT_LOCALE,
+            readonly.locale(),
+            "locale"
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LINE_ENDING.setValue(LINE_ENDING)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LINE_ENDING.setValue(DIFFERENT_LINE_ENDING)
+                        )
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(LOCALE)
+                        ),
+                        Optional.of(
+                            EnvironmentValueName.LOCALE.setValue(DIFFERENT_LOCALE)
+                        )
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    @Test
+    public void testUpdateReadOnlyFailsNothingPublished() {
+        final EnvironmentContext context = EnvironmentContexts.concurrent(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            OPTIONAL_USER
+        );
+        final EnvironmentContextSharedReadOnly readonly = EnvironmentContextSharedReadOnly.with(
+            READ_ONLY_NAMES,
+            context
+        );
+
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> readonly.update(
+                (c) -> {
+                    c.setLocale(DIFFERENT_LOCALE);
+                    c.setUser(
+                        Optional.of(DIFFERENT_USER)
+                    );
+                }
+            )
+        );
+
+        this.checkEquals(
+            LOCALE,
+            context.locale(),
+            "locale"
+        );
+    }
+
+
     @Override
     public EnvironmentContextSharedReadOnly createContext() {
         return this.createContext(READ_ONLY_NAMES);
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.HashCodeEqualsDefinedTesting2;
+import walkingkooka.ToStringTesting;
+import walkingkooka.net.email.EmailAddress;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentContextSharedSnapshotTest extends EnvironmentContextSharedTestCase<EnvironmentContextSharedSnapshot>
+    implements HashCodeEqualsDefinedTesting2<EnvironmentContextSharedSnapshot>,
+    ToStringTesting<EnvironmentContextSharedSnapshot> {
+
+    private final static EnvironmentValueName<String> NAME = EnvironmentValueName.with(
+        "hello.123",
+        String.class
+    );
+
+    private final static String VALUE = "Gday";
+
+    // version..........................................................................................................
+
+    @Test
+    public void testVersion() {
+        final EnvironmentContextSharedConcurrent context = this.createConcurrentContext();
+        final long version = context.snapshot()
+            .version();
+
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.checkEquals(
+            version + 1,
+            context.snapshot()
+                .version()
+        );
+    }
+
+    @Test
+    public void testVersionUnchangedBySettingSameValue() {
+        final EnvironmentContextSharedConcurrent context = this.createConcurrentContext();
+        final long version = context.snapshot()
+            .version();
+
+        context.setLocale(LOCALE);
+
+        this.checkEquals(
+            version,
+            context.snapshot()
+                .version()
+        );
+    }
+
+    // snapshot.........................................................................................................
+
+    @Test
+    public void testSnapshotUnchangedByLaterSetEnvironmentValue() {
+        final EnvironmentContextSharedConcurrent context = this.createConcurrentContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContextSnapshot snapshot = context.snapshot();
+
+        context.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+        context.setLocale(Locale.GERMANY);
+
+        this.environmentValueAndCheck(
+            snapshot,
+            NAME,
+            VALUE
+        );
+        this.localeAndCheck(
+            snapshot,
+            LOCALE
+        );
+    }
+
+    @Test
+    public void testSnapshotUnchangedByLaterRemoveEnvironmentValue() {
+        final EnvironmentContextSharedConcurrent context = this.createConcurrentContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContextSnapshot snapshot = context.snapshot();
+
+        context.removeEnvironmentValue(NAME);
+
+        this.environmentValueAndCheck(
+            snapshot,
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testSnapshotPersistent() {
+        final EnvironmentContextSharedPersistent context = EnvironmentContextSharedPersistent.with(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            EnvironmentContext.ANONYMOUS
+        );
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        final EnvironmentContextSnapshot snapshot = context.snapshot();
+        context.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+
+        this.environmentValueAndCheck(
+            snapshot,
+            NAME,
+            VALUE
+        );
+    }
+
+    // setEnvironmentValue..............................................................................................
+
+    @Test
+    public void testSetEnvironmentValueSame() {
+        final EnvironmentContextSharedSnapshot context = this.createContext();
+
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+    }
+
+    @Test
+    public void testSetEnvironmentValueDifferentFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .setEnvironmentValue(
+                    NAME,
+                    "different"
+                )
+        );
+    }
+
+    @Test
+    public void testSetLocaleWithDifferentFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .setLocale(Locale.GERMANY)
+        );
+    }
+
+    @Override
+    public void testSetCurrencyWithDifferentAndWatcher() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void testSetIndentationWithDifferentAndWatcher() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void testSetLineEndingWithDifferentAndWatcher() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void testSetLocaleWithDifferent() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void testSetLocaleWithDifferentAndWatcher() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void testSetTimeOffsetWithDifferentAndWatcher() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void testSetUserWithDifferentAndWatcher() {
+        throw new UnsupportedOperationException();
+    }
+
+    // removeEnvironmentValue...........................................................................................
+
+    @Test
+    public void testRemoveEnvironmentValueMissing() {
+        final EnvironmentContextSharedSnapshot context = this.createContext();
+
+        context.removeEnvironmentValue(
+            EnvironmentValueName.with(
+                "missing",
+                String.class
+            )
+        );
+    }
+
+    @Test
+    public void testRemoveEnvironmentValuePresentFails() {
+        assertThrows(
+            ReadOnlyEnvironmentValueException.class,
+            () -> this.createContext()
+                .removeEnvironmentValue(NAME)
+        );
+    }
+
+    // cloneEnvironment.................................................................................................
+
+    @Test
+    public void testCloneEnvironmentIsWritable() {
+        final EnvironmentContextSharedSnapshot context = this.createContext();
+
+        final EnvironmentContext cloned = context.cloneEnvironment();
+        cloned.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+
+        this.environmentValueAndCheck(
+            cloned,
+            NAME,
+            "different"
+        );
+        this.environmentValueAndCheck(
+            context,
+            NAME,
+            VALUE
+        );
+    }
+
+    // environmentValueNames............................................................................................
+
+    @Test
+    public void testEnvironmentValueNames() {
+        this.environmentValueNamesAndCheck(
+            this.createContext(),
+            EnvironmentValueName.CHARSET,
+            EnvironmentValueName.CURRENCY,
+            EnvironmentValueName.INDENTATION,
+            EnvironmentValueName.LINE_ENDING,
+            EnvironmentValueName.LOCALE,
+            EnvironmentValueName.NOW,
+            EnvironmentValueName.TIME_OFFSET,
+            NAME
+        );
+    }
+
+    // Context..........................................................................................................
+
+    @Override
+    public EnvironmentContextSharedSnapshot createContext() {
+        final EnvironmentContextSharedConcurrent context = this.createConcurrentContext();
+        context.setEnvironmentValue(
+            NAME,
+            VALUE
+        );
+
+        return (EnvironmentContextSharedSnapshot) context.snapshot();
+    }
+
+    private EnvironmentContextSharedConcurrent createConcurrentContext() {
+        return this.createConcurrentContext(EnvironmentContext.ANONYMOUS);
+    }
+
+    private EnvironmentContextSharedConcurrent createConcurrentContext(final Optional<EmailAddress> user) {
+        return EnvironmentContextSharedConcurrent.with(
+            CHARSET,
+            CURRENCY,
+            INDENTATION,
+            LINE_ENDING,
+            LOCALE,
+            HAS_NOW,
+            user
+        );
+    }
+
+    // hashCode/equals..................................................................................................
+
+    @Test
+    public void testEqualsDifferentValues() {
+        final EnvironmentContextSharedConcurrent context = this.createConcurrentContext();
+        context.setEnvironmentValue(
+            NAME,
+            "different"
+        );
+
+        this.checkNotEquals(
+            this.createContext(),
+            context.snapshot()
+        );
+    }
+
+    @Override
+    public EnvironmentContextSharedSnapshot createObject() {
+        return this.createContext();
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(
+            this.createContext(),
+            "{charset=UTF-8, currency=AUD, hello.123=\"Gday\", indentation=\"  \", lineEnding=\"\\n\", locale=en_AU, timeOffset=Z}"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentContextSharedSnapshot> type() {
+        return EnvironmentContextSharedSnapshot.class;
+    }
+}
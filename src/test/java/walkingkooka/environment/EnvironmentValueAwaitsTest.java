@@ -0,0 +1,344 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.net.email.EmailAddress;
+import walkingkooka.reflect.JavaVisibility;
+import walkingkooka.reflect.PublicStaticHelperTesting;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentValueAwaitsTest implements PublicStaticHelperTesting<EnvironmentValueAwaits> {
+
+    private final static EmailAddress USER = EmailAddress.parse("user@example.com");
+
+    // awaitEnvironmentValue............................................................................................
+
+    @Test
+    public void testAwaitEnvironmentValueWithNullContextFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentValueAwaits.awaitEnvironmentValue(
+                null,
+                EnvironmentValueName.LOCALE,
+                (l) -> true
+            )
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueWithNullNameFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentValueAwaits.awaitEnvironmentValue(
+                this.context(),
+                null,
+                (l) -> true
+            )
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueWithNullPredicateFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentValueAwaits.awaitEnvironmentValue(
+                this.context(),
+                EnvironmentValueName.LOCALE,
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueCurrentValueMatches() {
+        final EnvironmentContext context = this.context();
+        context.setUser(
+            Optional.of(USER)
+        );
+
+        final CompletableFuture<EnvironmentValueNameAndValue<EmailAddress>> future = EnvironmentValueAwaits.awaitEnvironmentValue(
+            context,
+            EnvironmentValueName.USER,
+            (u) -> true
+        );
+
+        this.checkEquals(
+            EnvironmentValueName.USER.setValue(USER),
+            future.getNow(null)
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueCompletesOnMatchingChange() {
+        final EnvironmentContext context = this.context();
+
+        final CompletableFuture<EnvironmentValueNameAndValue<Locale>> future = EnvironmentValueAwaits.awaitEnvironmentValue(
+            context,
+            EnvironmentValueName.LOCALE,
+            Locale.GERMANY::equals
+        );
+
+        context.setLocale(Locale.FRANCE);
+
+        this.checkEquals(
+            false,
+            future.isDone(),
+            "done before matching change"
+        );
+
+        context.setLocale(Locale.GERMANY);
+
+        this.checkEquals(
+            EnvironmentValueName.LOCALE.setValue(Locale.GERMANY),
+            future.getNow(null)
+        );
+        this.watcherCountAndCheck(
+            context,
+            0
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueIgnoresOtherNames() {
+        final EnvironmentContext context = this.context();
+
+        final CompletableFuture<EnvironmentValueNameAndValue<EmailAddress>> future = EnvironmentValueAwaits.awaitEnvironmentValue(
+            context,
+            EnvironmentValueName.USER,
+            (u) -> true
+        );
+
+        context.setLocale(Locale.FRANCE);
+
+        this.checkEquals(
+            false,
+            future.isDone()
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValuePredicateThrows() {
+        final EnvironmentContext context = this.context();
+
+        final CompletableFuture<EnvironmentValueNameAndValue<Locale>> future = EnvironmentValueAwaits.awaitEnvironmentValue(
+            context,
+            EnvironmentValueName.LOCALE,
+            (l) -> {
+                if (Locale.FRANCE.equals(l)) {
+                    throw new IllegalStateException("Bad locale");
+                }
+                return false;
+            }
+        );
+
+        context.setLocale(Locale.FRANCE);
+
+        final ExecutionException thrown = assertThrows(
+            ExecutionException.class,
+            future::get
+        );
+        this.checkEquals(
+            "Bad locale",
+            thrown.getCause()
+                .getMessage()
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueCancelRemovesWatcher() {
+        final EnvironmentContext context = this.context();
+
+        EnvironmentValueAwaits.awaitEnvironmentValue(
+            context,
+            EnvironmentValueName.LOCALE,
+            (l) -> false
+        ).cancel(false);
+
+        this.watcherCountAndCheck(
+            context,
+            0
+        );
+    }
+
+    // awaitEnvironmentValueChangedSince................................................................................
+
+    @Test
+    public void testAwaitEnvironmentValueChangedSinceWithNullSinceFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentValueAwaits.awaitEnvironmentValueChangedSince(
+                this.context(),
+                EnvironmentValueName.LOCALE,
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueChangedSinceAlreadyChanged() {
+        final EnvironmentContext context = this.context();
+        final Optional<Locale> since = context.environmentValue(EnvironmentValueName.LOCALE);
+
+        context.setLocale(Locale.FRANCE);
+
+        this.checkEquals(
+            Optional.of(Locale.FRANCE),
+            EnvironmentValueAwaits.awaitEnvironmentValueChangedSince(
+                context,
+                EnvironmentValueName.LOCALE,
+                since
+            ).getNow(null)
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueChangedSinceRemoved() {
+        final EnvironmentContext context = this.context();
+        context.setUser(
+            Optional.of(USER)
+        );
+
+        final CompletableFuture<Optional<EmailAddress>> future = EnvironmentValueAwaits.awaitEnvironmentValueChangedSince(
+            context,
+            EnvironmentValueName.USER,
+            Optional.of(USER)
+        );
+
+        this.checkEquals(
+            false,
+            future.isDone(),
+            "done before change"
+        );
+
+        context.setUser(Optional.empty());
+
+        this.checkEquals(
+            Optional.empty(),
+            future.getNow(null)
+        );
+        this.watcherCountAndCheck(
+            context,
+            0
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueChangedSinceSnapshot() {
+        final HasEnvironmentContextSnapshot context = (HasEnvironmentContextSnapshot) EnvironmentContexts.concurrent(
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.charset(),
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.currency(),
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.indentation(),
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.lineEnding(),
+            Locale.ENGLISH,
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT,
+            EnvironmentContext.ANONYMOUS
+        );
+        final EnvironmentContextSnapshot snapshot = context.snapshot();
+
+        context.setLocale(Locale.FRANCE);
+
+        final CompletableFuture<Optional<Locale>> future = EnvironmentValueAwaits.awaitEnvironmentValueChangedSince(
+            context,
+            EnvironmentValueName.LOCALE,
+            snapshot
+        );
+
+        this.checkEquals(
+            Optional.of(Locale.FRANCE),
+            future.getNow(null)
+        );
+    }
+
+    @Test
+    public void testAwaitEnvironmentValueChangedSinceSnapshotValueRestored() {
+        final HasEnvironmentContextSnapshot context = (HasEnvironmentContextSnapshot) EnvironmentContexts.concurrent(
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.charset(),
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.currency(),
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.indentation(),
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT.lineEnding(),
+            Locale.ENGLISH,
+            EnvironmentContextTesting.ENVIRONMENT_CONTEXT,
+            EnvironmentContext.ANONYMOUS
+        );
+        final EnvironmentContextSnapshot snapshot = context.snapshot();
+
+        context.setLocale(Locale.FRANCE);
+        context.setLocale(Locale.ENGLISH);
+
+        final CompletableFuture<Optional<Locale>> future = EnvironmentValueAwaits.awaitEnvironmentValueChangedSince(
+            context,
+            EnvironmentValueName.LOCALE,
+            snapshot
+        );
+
+        this.checkEquals(
+            false,
+            future.isDone(),
+            "restored value not reported"
+        );
+
+        context.setLocale(Locale.GERMANY);
+
+        this.checkEquals(
+            Optional.of(Locale.GERMANY),
+            future.getNow(null)
+        );
+    }
+
+    private EnvironmentContext context() {
+        final EnvironmentContext context = EnvironmentContextTesting.ENVIRONMENT_CONTEXT.cloneEnvironment();
+        context.setLocale(Locale.ENGLISH);
+        context.setUser(EnvironmentContext.ANONYMOUS);
+        return context;
+    }
+
+    private void watcherCountAndCheck(final EnvironmentContext context,
+                                      final int expected) {
+        this.checkEquals(
+            expected,
+            ((EnvironmentContextSharedMap) context).environmentValueWatchers()
+                .namedSize(),
+            "named watchers"
+        );
+    }
+
+    // PublicStaticHelperTesting........................................................................................
+
+    @Override
+    public Class<EnvironmentValueAwaits> type() {
+        return EnvironmentValueAwaits.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+
+    @Override
+    public boolean canHavePublicTypes(final Method method) {
+        return false;
+    }
+}
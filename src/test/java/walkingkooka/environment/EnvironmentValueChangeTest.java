@@ -0,0 +1,196 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.HashCodeEqualsDefinedTesting2;
+import walkingkooka.ToStringTesting;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentValueChangeTest implements HashCodeEqualsDefinedTesting2<EnvironmentValueChange>,
+    ToStringTesting<EnvironmentValueChange>,
+    ClassTesting<EnvironmentValueChange> {
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> OLD_VALUE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> NEW_VALUE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    // with.............................................................................................................
+
+    @Test
+    public void testWithNullOldValueFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentValueChange.with(
+                null,
+                NEW_VALUE
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullNewValueFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentValueChange.with(
+                OLD_VALUE,
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testWithEmptyOldAndNewValueFails() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> EnvironmentValueChange.with(
+                Optional.empty(),
+                Optional.empty()
+            )
+        );
+    }
+
+    @Test
+    public void testWith() {
+        final EnvironmentValueChange change = this.createObject();
+
+        this.checkEquals(
+            EnvironmentValueName.LOCALE,
+            change.name(),
+            "name"
+        );
+        this.checkEquals(
+            OLD_VALUE,
+            change.oldValue(),
+            "oldValue"
+        );
+        this.checkEquals(
+            NEW_VALUE,
+            change.newValue(),
+            "newValue"
+        );
+    }
+
+    @Test
+    public void testNameWhenAdded() {
+        this.checkEquals(
+            EnvironmentValueName.LOCALE,
+            EnvironmentValueChange.with(
+                Optional.empty(),
+                NEW_VALUE
+            ).name()
+        );
+    }
+
+    // fire.............................................................................................................
+
+    @Test
+    public void testFire() {
+        this.fired = false;
+
+        this.createObject()
+            .fire(
+                (o, n) -> {
+                    checkEquals(OLD_VALUE, o);
+                    checkEquals(NEW_VALUE, n);
+
+                    fired = true;
+                }
+            );
+
+        this.checkEquals(
+            true,
+            this.fired
+        );
+    }
+
+    private boolean fired;
+
+    // equals...........................................................................................................
+
+    @Test
+    public void testEqualsDifferentOldValue() {
+        this.checkNotEquals(
+            EnvironmentValueChange.with(
+                Optional.empty(),
+                NEW_VALUE
+            )
+        );
+    }
+
+    @Test
+    public void testEqualsDifferentNewValue() {
+        this.checkNotEquals(
+            EnvironmentValueChange.with(
+                OLD_VALUE,
+                Optional.empty()
+            )
+        );
+    }
+
+    @Override
+    public EnvironmentValueChange createObject() {
+        return EnvironmentValueChange.with(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(
+            this.createObject(),
+            "locale=fr_FR -> locale=de_DE"
+        );
+    }
+
+    @Test
+    public void testToStringRemoved() {
+        this.toStringAndCheck(
+            EnvironmentValueChange.with(
+                OLD_VALUE,
+                Optional.empty()
+            ),
+            "locale=fr_FR -> "
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentValueChange> type() {
+        return EnvironmentValueChange.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
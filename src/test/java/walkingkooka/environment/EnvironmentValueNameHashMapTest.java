@@ -0,0 +1,245 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class EnvironmentValueNameHashMapTest implements ClassTesting<EnvironmentValueNameHashMap<?>> {
+
+    @Test
+    public void testPutAndGet() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        final EnvironmentValueName<String> name = name("hello");
+
+        this.checkEquals(
+            null,
+            map.put(
+                name,
+                "world"
+            )
+        );
+        this.checkEquals(
+            "world",
+            map.get(name)
+        );
+        this.checkEquals(
+            1,
+            map.size()
+        );
+    }
+
+    @Test
+    public void testGetDifferentCaseAndType() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        map.put(
+            name("hello"),
+            "world"
+        );
+
+        this.checkEquals(
+            "world",
+            map.get(
+                EnvironmentValueName.with(
+                    "HELLO",
+                    Object.class
+                )
+            )
+        );
+    }
+
+    @Test
+    public void testGetIgnoringCase() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        map.put(
+            name("hello"),
+            "world"
+        );
+        map.put(
+            name("Abc"),
+            "abc"
+        );
+
+        this.checkEquals(
+            "world",
+            map.getIgnoringCase("HeLLo"),
+            "hello"
+        );
+        this.checkEquals(
+            "abc",
+            map.getIgnoringCase(
+                new StringBuilder("aBC")
+            ),
+            "abc"
+        );
+    }
+
+    @Test
+    public void testGetIgnoringCaseMissing() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        map.put(
+            name("hello"),
+            "world"
+        );
+
+        this.checkEquals(
+            null,
+            map.getIgnoringCase("hello2")
+        );
+    }
+
+    @Test
+    public void testGetUnknownKeyType() {
+        this.checkEquals(
+            null,
+            EnvironmentValueNameHashMap.empty()
+                .get("hello")
+        );
+    }
+
+    @Test
+    public void testPutReplaceKeepsOriginalKey() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        final EnvironmentValueName<String> name = name("hello");
+
+        map.put(
+            name,
+            "world1"
+        );
+        this.checkEquals(
+            "world1",
+            map.put(
+                name("HELLO"),
+                "world2"
+            )
+        );
+
+        assertSame(
+            name,
+            map.keySet()
+                .iterator()
+                .next()
+        );
+        this.checkEquals(
+            "world2",
+            map.get(name)
+        );
+    }
+
+    @Test
+    public void testPutManyRemoveMany() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        final Map<EnvironmentValueName<?>, String> expected = Maps.sorted();
+
+        for (int i = 0; i < 500; i++) {
+            final EnvironmentValueName<String> name = name("name" + i);
+            map.put(
+                name,
+                "value" + i
+            );
+            expected.put(
+                name,
+                "value" + i
+            );
+        }
+
+        for (int i = 0; i < 500; i += 3) {
+            final EnvironmentValueName<String> name = name("NAME" + i);
+            this.checkEquals(
+                expected.remove(name),
+                map.remove(name),
+                name.toString()
+            );
+        }
+
+        this.checkEquals(
+            expected,
+            map
+        );
+
+        for (int i = 0; i < 500; i++) {
+            final EnvironmentValueName<String> name = name("name" + i);
+            this.checkEquals(
+                expected.get(name),
+                map.get(name),
+                name.toString()
+            );
+        }
+    }
+
+    @Test
+    public void testCopy() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        map.put(
+            name("hello"),
+            "world"
+        );
+
+        final EnvironmentValueNameHashMap<String> copy = map.copy();
+        copy.put(
+            name("hello"),
+            "different"
+        );
+
+        this.checkEquals(
+            "world",
+            map.get(name("hello"))
+        );
+    }
+
+    @Test
+    public void testClear() {
+        final EnvironmentValueNameHashMap<String> map = EnvironmentValueNameHashMap.empty();
+        map.put(
+            name("hello"),
+            "world"
+        );
+        map.clear();
+
+        this.checkEquals(
+            Maps.empty(),
+            map
+        );
+    }
+
+    private static EnvironmentValueName<String> name(final String name) {
+        return EnvironmentValueName.with(
+            name,
+            String.class
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentValueNameHashMap<?>> type() {
+        return Cast.to(EnvironmentValueNameHashMap.class);
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -20,6 +20,7 @@ package walkingkooka.environment;
 import org.junit.jupiter.api.Test;
 import walkingkooka.Cast;
 import walkingkooka.InvalidCharacterException;
+import walkingkooka.collect.list.Lists;
 import walkingkooka.collect.set.Sets;
 import walkingkooka.compare.ComparableTesting2;
 import walkingkooka.naming.NameTesting2;
@@ -188,6 +189,89 @@ final public class EnvironmentValueNameTest implements NameTesting2<EnvironmentV
         );
     }
 
+    @Test
+    public void testWithSameNameAndTypeInterned() {
+        final String name = "interned123";
+
+        assertSame(
+            EnvironmentValueName.with(
+                name,
+                String.class
+            ),
+            EnvironmentValueName.with(
+                name,
+                String.class
+            )
+        );
+    }
+
+    @Test
+    public void testWithInternedAfterPoolFull() {
+        for (int i = 0; i <= EnvironmentValueName.INTERNED_MAX; i++) {
+            EnvironmentValueName.with(
+                "testWithInternedAfterPoolFull" + i,
+                String.class
+            );
+        }
+
+        final String name = "interned321";
+
+        assertSame(
+            EnvironmentValueName.with(
+                name,
+                String.class
+            ),
+            EnvironmentValueName.with(
+                name,
+                String.class
+            )
+        );
+    }
+
+    @Test
+    public void testWithSameNameDifferentTypeNotInterned() {
+        final String name = "interned456";
+
+        final EnvironmentValueName<String> string = EnvironmentValueName.with(
+            name,
+            String.class
+        );
+        final EnvironmentValueName<Integer> integer = EnvironmentValueName.with(
+            name,
+            Integer.class
+        );
+
+        this.checkEquals(
+            Integer.class,
+            integer.type()
+        );
+        this.checkNotEquals(
+            string,
+            integer
+        );
+    }
+
+    @Test
+    public void testWithDifferentCaseKeepsCase() {
+        final EnvironmentValueName<String> lower = EnvironmentValueName.with(
+            "interned789",
+            String.class
+        );
+        final EnvironmentValueName<String> upper = EnvironmentValueName.with(
+            "INTERNED789",
+            String.class
+        );
+
+        this.checkEquals(
+            "INTERNED789",
+            upper.value()
+        );
+        this.checkEqualsAndHashCode(
+            lower,
+            upper
+        );
+    }
+
     // registerConstant.................................................................................................
 
     @Test
@@ -305,6 +389,265 @@ final public class EnvironmentValueNameTest implements NameTesting2<EnvironmentV
         );
     }
 
+    @Test
+    public void testSortMatchesCaseSensitivity() {
+        final String[] texts = {
+            "abc",
+            "ABD",
+            "a-b",
+            "A.b",
+            "a1",
+            "Z9",
+            "x-Y.z"
+        };
+
+        for (final String text : texts) {
+            for (final String other : texts) {
+                this.checkEquals(
+                    Integer.signum(
+                        EnvironmentValueName.CASE_SENSITIVITY.comparator()
+                            .compare(text, other)
+                    ),
+                    Integer.signum(
+                        EnvironmentValueName.with(
+                            text,
+                            String.class
+                        ).compareTo(
+                            EnvironmentValueName.with(
+                                other,
+                                String.class
+                            )
+                        )
+                    ),
+                    text + " compareTo " + other
+                );
+            }
+        }
+    }
+
+    // caseFold.........................................................................................................
+
+    @Test
+    public void testCaseFoldLowerCaseAscii() {
+        final String text = "abc-123.def";
+
+        assertSame(
+            text,
+            EnvironmentValueName.caseFold(text)
+        );
+    }
+
+    @Test
+    public void testCaseFoldMixedCaseAscii() {
+        this.checkEquals(
+            "abc-123.def",
+            EnvironmentValueName.caseFold("ABC-123.dEf")
+        );
+    }
+
+    @Test
+    public void testCaseFoldNonAscii() {
+        this.checkEquals(
+            "\u00e4bc\u00e9",
+            EnvironmentValueName.caseFold("\u00c4BC\u00c9")
+        );
+    }
+
+    @Test
+    public void testCaseFoldChar() {
+        final String text = "\u00c4BC\u00c9-123.dEf";
+
+        final StringBuilder b = new StringBuilder();
+        for (final char c : text.toCharArray()) {
+            b.append(
+                EnvironmentValueName.caseFold(c)
+            );
+        }
+
+        this.checkEquals(
+            EnvironmentValueName.caseFold(text),
+            b.toString()
+        );
+    }
+
+    @Test
+    public void testCaseFoldedHashCode() {
+        final String text = "\u00c4BC\u00c9-123.dEf";
+
+        this.checkEquals(
+            EnvironmentValueName.caseFold(text)
+                .hashCode(),
+            EnvironmentValueName.caseFoldedHashCode(
+                new StringBuilder(text)
+            )
+        );
+    }
+
+    @Test
+    public void testEqualsCaseFolded() {
+        this.checkEquals(
+            true,
+            EnvironmentValueName.equalsCaseFolded(
+                "\u00e4bc\u00e9",
+                new StringBuilder("\u00c4BC\u00c9")
+            )
+        );
+    }
+
+    @Test
+    public void testEqualsCaseFoldedDifferent() {
+        this.checkEquals(
+            false,
+            EnvironmentValueName.equalsCaseFolded(
+                "abc",
+                "abd"
+            )
+        );
+    }
+
+    // constant.........................................................................................................
+
+    @Test
+    public void testConstantBuiltIns() {
+        for (final EnvironmentValueName<?> name : Lists.of(
+            EnvironmentValueName.CHARSET,
+            EnvironmentValueName.CURRENCY,
+            EnvironmentValueName.INDENTATION,
+            EnvironmentValueName.LINE_ENDING,
+            EnvironmentValueName.LOCALE,
+            EnvironmentValueName.NOW,
+            EnvironmentValueName.TIME_OFFSET,
+            EnvironmentValueName.USER
+        )) {
+            assertSame(
+                name,
+                EnvironmentValueName.constant(
+                    name.value()
+                        .toUpperCase()
+                ),
+                name::toString
+            );
+        }
+    }
+
+    @Test
+    public void testConstantStringBuilder() {
+        assertSame(
+            EnvironmentValueName.LOCALE,
+            EnvironmentValueName.constant(
+                new StringBuilder("LoCaLe")
+            )
+        );
+    }
+
+    @Test
+    public void testConstantRegistered() {
+        final EnvironmentValueName<String> constant = EnvironmentValueName.registerConstant(
+            "testConstantRegistered",
+            String.class
+        );
+
+        assertSame(
+            constant,
+            EnvironmentValueName.constant("TESTCONSTANTREGISTERED")
+        );
+    }
+
+    @Test
+    public void testConstantWhileRegistering() throws InterruptedException {
+        final Thread registering = new Thread(
+            () -> {
+                for (int i = 0; i < 256; i++) {
+                    EnvironmentValueName.registerConstant(
+                        "testConstantWhileRegistering" + i,
+                        String.class
+                    );
+                }
+            }
+        );
+        registering.start();
+
+        while (registering.isAlive()) {
+            assertSame(
+                EnvironmentValueName.LOCALE,
+                EnvironmentValueName.constant("LOCALE")
+            );
+        }
+        registering.join();
+
+        for (int i = 0; i < 256; i++) {
+            this.checkEquals(
+                "testConstantWhileRegistering" + i,
+                EnvironmentValueName.constant("testConstantWhileRegistering" + i)
+                    .value()
+            );
+        }
+    }
+
+    @Test
+    public void testConstantUnknown() {
+        this.checkEquals(
+            null,
+            EnvironmentValueName.constant("unknown123")
+        );
+    }
+
+    // removePrefix.....................................................................................................
+
+    @Test
+    public void testRemovePrefix() {
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "prefix.removePrefix1",
+            String.class
+        );
+
+        this.checkEquals(
+            EnvironmentValueName.with(
+                "removePrefix1",
+                String.class
+            ),
+            name.removePrefix("prefix.")
+        );
+    }
+
+    @Test
+    public void testRemovePrefixDifferentPrefix() {
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "prefix.removePrefix3",
+            String.class
+        );
+        name.removePrefix("prefix.");
+
+        this.checkEquals(
+            EnvironmentValueName.with(
+                "removePrefix3",
+                String.class
+            ),
+            name.removePrefix("prefix.prefix.".substring(7))
+        );
+        this.checkEquals(
+            null,
+            name.removePrefix("other.")
+        );
+    }
+
+    @Test
+    public void testRemovePrefixMissing() {
+        final EnvironmentValueName<String> name = EnvironmentValueName.with(
+            "removePrefix4",
+            String.class
+        );
+
+        this.checkEquals(
+            null,
+            name.removePrefix("prefix.")
+        );
+        this.checkEquals(
+            null,
+            name.removePrefix("prefix.")
+        );
+    }
+
     // hashCode/equals..................................................................................................
 
     @Test
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.Cast;
+import walkingkooka.collect.map.Maps;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class EnvironmentValueNameTrieTest implements ClassTesting<EnvironmentValueNameTrie<?>> {
+
+    @Test
+    public void testEmpty() {
+        final EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.empty();
+
+        this.checkEquals(
+            0,
+            trie.size()
+        );
+        this.checkEquals(
+            null,
+            trie.get(name("hello"))
+        );
+    }
+
+    @Test
+    public void testPutIsPersistent() {
+        final EnvironmentValueNameTrie<String> empty = EnvironmentValueNameTrie.empty();
+        final EnvironmentValueNameTrie<String> trie = empty.put(
+            name("hello"),
+            "world"
+        );
+
+        this.checkEquals(
+            null,
+            empty.get(name("hello"))
+        );
+        this.checkEquals(
+            "world",
+            trie.get(name("HELLO"))
+        );
+        this.checkEquals(
+            1,
+            trie.size()
+        );
+    }
+
+    @Test
+    public void testPutSameValueReturnsSame() {
+        final String value = "world";
+        final EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.<String>empty()
+            .put(
+                name("hello"),
+                value
+            );
+
+        assertSame(
+            trie,
+            trie.put(
+                name("hello"),
+                value
+            )
+        );
+    }
+
+    @Test
+    public void testPutReplaceKeepsOriginalKey() {
+        final EnvironmentValueName<String> name = name("hello");
+        final EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.<String>empty()
+            .put(
+                name,
+                "world1"
+            ).put(
+                name("HELLO"),
+                "world2"
+            );
+
+        assertSame(
+            name,
+            trie.keyIgnoringCase("hElLo")
+        );
+        this.checkEquals(
+            "world2",
+            trie.get(name)
+        );
+        this.checkEquals(
+            1,
+            trie.size()
+        );
+    }
+
+    @Test
+    public void testRemoveMissingReturnsSame() {
+        final EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.<String>empty()
+            .put(
+                name("hello"),
+                "world"
+            );
+
+        assertSame(
+            trie,
+            trie.remove(name("missing"))
+        );
+    }
+
+    @Test
+    public void testHashCollision() {
+        final EnvironmentValueName<String> name1 = name("ak");
+        final EnvironmentValueName<String> name2 = name("c-");
+
+        this.checkEquals(
+            name1.caseFolded.hashCode(),
+            name2.caseFolded.hashCode(),
+            "hash"
+        );
+
+        final EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.<String>empty()
+            .put(
+                name1,
+                "value1"
+            ).put(
+                name2,
+                "value2"
+            );
+
+        this.checkEquals(
+            "value1",
+            trie.get(name1)
+        );
+        this.checkEquals(
+            "value2",
+            trie.get(name2)
+        );
+
+        final EnvironmentValueNameTrie<String> removed = trie.remove(name1);
+        this.checkEquals(
+            null,
+            removed.get(name1)
+        );
+        this.checkEquals(
+            "value2",
+            removed.get(name2)
+        );
+        this.checkEquals(
+            1,
+            removed.size()
+        );
+    }
+
+    @Test
+    public void testKeyIgnoringCaseHashCollision() {
+        final EnvironmentValueName<String> name1 = name("ak");
+        final EnvironmentValueName<String> name2 = name("c-");
+
+        final EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.<String>empty()
+            .put(
+                name1,
+                "value1"
+            ).put(
+                name2,
+                "value2"
+            );
+
+        assertSame(
+            name1,
+            trie.keyIgnoringCase("AK")
+        );
+        assertSame(
+            name2,
+            trie.keyIgnoringCase("C-")
+        );
+        this.checkEquals(
+            null,
+            trie.keyIgnoringCase("missing")
+        );
+    }
+
+    @Test
+    public void testPutManyRemoveMany() {
+        EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.empty();
+        final Map<EnvironmentValueName<?>, String> expected = Maps.sorted();
+
+        for (int i = 0; i < 2000; i++) {
+            final EnvironmentValueName<String> name = name("name" + i);
+            trie = trie.put(
+                name,
+                "value" + i
+            );
+            expected.put(
+                name,
+                "value" + i
+            );
+        }
+
+        final EnvironmentValueNameTrie<String> full = trie;
+
+        for (int i = 0; i < 2000; i += 3) {
+            final EnvironmentValueName<String> name = name("NAME" + i);
+            expected.remove(name);
+            trie = trie.remove(name);
+        }
+
+        this.checkEquals(
+            expected,
+            this.toMap(trie)
+        );
+        this.checkEquals(
+            2000,
+            full.size(),
+            "original trie should be unmodified"
+        );
+    }
+
+    @Test
+    public void testRemoveAll() {
+        EnvironmentValueNameTrie<String> trie = EnvironmentValueNameTrie.empty();
+
+        for (int i = 0; i < 100; i++) {
+            trie = trie.put(
+                name("name" + i),
+                "value" + i
+            );
+        }
+        for (int i = 0; i < 100; i++) {
+            trie = trie.remove(name("name" + i));
+        }
+
+        this.checkEquals(
+            true,
+            trie.isEmpty()
+        );
+    }
+
+    @Test
+    public void testEqualsDifferentInsertionOrder() {
+        final EnvironmentValueNameTrie<String> trie1 = EnvironmentValueNameTrie.<String>empty()
+            .put(name("a1"), "1")
+            .put(name("b2"), "2");
+        final EnvironmentValueNameTrie<String> trie2 = EnvironmentValueNameTrie.<String>empty()
+            .put(name("B2"), "2")
+            .put(name("A1"), "1");
+
+        this.checkEquals(
+            trie1,
+            trie2
+        );
+        this.checkEquals(
+            trie1.hashCode(),
+            trie2.hashCode()
+        );
+    }
+
+    private Map<EnvironmentValueName<?>, String> toMap(final EnvironmentValueNameTrie<String> trie) {
+        final Map<EnvironmentValueName<?>, String> map = Maps.sorted();
+        trie.forEach(map::put);
+
+        this.checkEquals(
+            map.size(),
+            trie.size(),
+            "size"
+        );
+        return map;
+    }
+
+    private static EnvironmentValueName<String> name(final String name) {
+        return EnvironmentValueName.with(
+            name,
+            String.class
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentValueNameTrie<?>> type() {
+        return Cast.to(EnvironmentValueNameTrie.class);
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentWatcherArrayTest implements ClassTesting<EnvironmentWatcherArray> {
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> OLD_VALUE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> NEW_VALUE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    @Test
+    public void testAddWithNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherArray.empty()
+                .add(null)
+        );
+    }
+
+    @Test
+    public void testAddOnceWithNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherArray.empty()
+                .addOnce(null)
+        );
+    }
+
+    @Test
+    public void testAddThenFire() {
+        final List<String> fired = Lists.array();
+
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+        watchers.add(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        watchers.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+        watchers.onValueChange(
+            NEW_VALUE,
+            OLD_VALUE
+        );
+
+        this.checkEquals(
+            Lists.of(
+                OLD_VALUE + " " + NEW_VALUE,
+                NEW_VALUE + " " + OLD_VALUE
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testFireSameValueIgnored() {
+        final List<String> fired = Lists.array();
+
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+        watchers.add(
+            (o, n) -> fired.add(o + " " + n)
+        );
+
+        watchers.onValueChange(
+            OLD_VALUE,
+            OLD_VALUE
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            fired
+        );
+    }
+
+    @Test
+    public void testAddThenRemove() {
+        final List<String> fired = Lists.array();
+
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+        final Runnable remover = watchers.add(
+            (o, n) -> fired.add(o + " " + n)
+        );
+        remover.run();
+        remover.run();
+
+        watchers.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            fired
+        );
+        this.checkEquals(
+            0,
+            watchers.size()
+        );
+    }
+
+    @Test
+    public void testAddOnce() {
+        final List<String> fired = Lists.array();
+
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+        watchers.add(
+            (o, n) -> fired.add("1")
+        );
+        watchers.addOnce(
+            (o, n) -> fired.add("2")
+        );
+        watchers.add(
+            (o, n) -> fired.add("3")
+        );
+
+        watchers.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+        watchers.onValueChange(
+            NEW_VALUE,
+            OLD_VALUE
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "1",
+                "2",
+                "3",
+                "1",
+                "3"
+            ),
+            fired
+        );
+        this.checkEquals(
+            2,
+            watchers.size()
+        );
+    }
+
+    @Test
+    public void testRemoveDuringFire() {
+        final List<String> fired = Lists.array();
+
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+        final Runnable[] remover = new Runnable[1];
+
+        watchers.add(
+            (o, n) -> {
+                fired.add("1");
+                remover[0].run();
+            }
+        );
+        remover[0] = watchers.add(
+            (o, n) -> fired.add("2")
+        );
+
+        watchers.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+        watchers.onValueChange(
+            NEW_VALUE,
+            OLD_VALUE
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "1",
+                "2",
+                "1"
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testRemoveDropsRemovedEntries() {
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+
+        final List<Runnable> removers = Lists.array();
+        for (int i = 0; i < 100; i++) {
+            removers.add(
+                watchers.add(
+                    (o, n) -> {
+                        throw new UnsupportedOperationException();
+                    }
+                )
+            );
+        }
+
+        for (final Runnable remover : removers) {
+            remover.run();
+
+            this.checkEquals(
+                true,
+                watchers.capacity() <= 2 * 100,
+                "capacity"
+            );
+        }
+
+        this.checkEquals(
+            0,
+            watchers.size(),
+            "size"
+        );
+        this.checkEquals(
+            0,
+            watchers.capacity(),
+            "capacity"
+        );
+        this.checkEquals(
+            true,
+            watchers.isEmpty(),
+            "isEmpty"
+        );
+
+        watchers.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+    }
+
+    @Test
+    public void testRemoveHalfKeepsOthers() {
+        final List<String> fired = Lists.array();
+
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+
+        final List<Runnable> removers = Lists.array();
+        for (int i = 0; i < 4; i++) {
+            final String value = String.valueOf(i);
+            removers.add(
+                watchers.add(
+                    (o, n) -> fired.add(value)
+                )
+            );
+        }
+
+        removers.get(0).run();
+        removers.get(2).run();
+
+        watchers.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "1",
+                "3"
+            ),
+            fired
+        );
+        this.checkEquals(
+            2,
+            watchers.capacity(),
+            "capacity"
+        );
+    }
+
+    @Test
+    public void testRemoveConcurrentlyDropsAllEntries() throws InterruptedException {
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(
+                () -> {
+                    for (int i = 0; i < 1000; i++) {
+                        final Runnable remover = watchers.add(
+                            (o, n) -> {
+                            }
+                        );
+                        watchers.onValueChange(
+                            OLD_VALUE,
+                            NEW_VALUE
+                        );
+                        remover.run();
+                    }
+                }
+            );
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        this.checkEquals(
+            0,
+            watchers.size(),
+            "size"
+        );
+
+        // the removed count has not drifted, so the next removal compacts everything that is marked
+        watchers.add(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        ).run();
+
+        this.checkEquals(
+            0,
+            watchers.capacity(),
+            "capacity"
+        );
+    }
+
+    @Test
+    public void testRemoveReleasesWatcher() {
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+        for (int i = 0; i < 4; i++) {
+            watchers.add(
+                (o, n) -> {
+                }
+            );
+        }
+
+        final Runnable remover = watchers.add(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        );
+        // the remover holds its entry, which is still in the array
+        remover.run();
+
+        this.checkEquals(
+            5,
+            watchers.capacity(),
+            "capacity"
+        );
+        this.checkEquals(
+            4,
+            watchers.referenced(),
+            "referenced"
+        );
+    }
+
+    @Test
+    public void testRemoveWhileFiringReleasesWatcherAfterEvent() {
+        final EnvironmentWatcherArray watchers = EnvironmentWatcherArray.empty();
+        // enough watchers that removing one does not compact the array
+        for (int i = 0; i < 4; i++) {
+            watchers.add(
+                (o, n) -> {
+                }
+            );
+        }
+
+        final Runnable[] remover = new Runnable[1];
+        final int[] referenced = new int[1];
+        watchers.add(
+            (o, n) -> {
+                remover[0].run();
+                referenced[0] = watchers.referenced();
+            }
+        );
+        remover[0] = watchers.add(
+            (o, n) -> {
+            }
+        );
+
+        watchers.onValueChange(
+            Optional.empty(),
+            Optional.of(
+                EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+            )
+        );
+
+        this.checkEquals(
+            6,
+            referenced[0],
+            "referenced while firing"
+        );
+        this.checkEquals(
+            5,
+            watchers.referenced(),
+            "referenced after event"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherArray> type() {
+        return EnvironmentWatcherArray.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,760 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentWatcherAsyncTest implements ClassTesting<EnvironmentWatcherAsync>,
+    ToStringTesting<EnvironmentWatcherAsync> {
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> FRANCE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> GERMANY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> ITALY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.ITALY)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> JAPAN = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.JAPAN)
+    );
+
+    private final static EnvironmentWatcher WATCHER = (o, n) -> {
+        throw new UnsupportedOperationException();
+    };
+
+    // with.............................................................................................................
+
+    @Test
+    public void testWithNullWatcherFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherAsync.with(
+                null,
+                Runnable::run,
+                1,
+                EnvironmentWatcherOverflow.BLOCK
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullExecutorFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherAsync.with(
+                WATCHER,
+                null,
+                1,
+                EnvironmentWatcherOverflow.BLOCK
+            )
+        );
+    }
+
+    @Test
+    public void testWithInvalidCapacityFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> EnvironmentWatcherAsync.with(
+                WATCHER,
+                Runnable::run,
+                0,
+                EnvironmentWatcherOverflow.BLOCK
+            )
+        );
+        this.checkEquals(
+            "Invalid capacity 0 < 1",
+            thrown.getMessage()
+        );
+    }
+
+    @Test
+    public void testWithNullOverflowFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherAsync.with(
+                WATCHER,
+                Runnable::run,
+                1,
+                null
+            )
+        );
+    }
+
+    // onValueChange....................................................................................................
+
+    @Test
+    public void testOnValueChangeDeliveredOnExecutor() {
+        final List<Runnable> tasks = Lists.array();
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            ),
+            tasks::add,
+            10,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            fired,
+            "nothing delivered before executor runs"
+        );
+        this.checkEquals(
+            1,
+            tasks.size(),
+            "only a single drain task"
+        );
+
+        tasks.remove(0)
+            .run();
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    GERMANY
+                ),
+                EnvironmentValueChange.with(
+                    GERMANY,
+                    ITALY
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOnValueChangeSameValueIgnored() {
+        final List<Runnable> tasks = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            WATCHER,
+            tasks::add,
+            1,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            FRANCE
+        );
+
+        this.checkEquals(
+            0,
+            watcher.size(),
+            "size"
+        );
+        this.checkEquals(
+            Lists.empty(),
+            tasks,
+            "tasks"
+        );
+    }
+
+    @Test
+    public void testOnValueChangeWatcherFailureContinues() {
+        final List<Runnable> tasks = Lists.array();
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> {
+                if (o.equals(FRANCE)) {
+                    throw new IllegalStateException("fail!");
+                }
+                fired.add(
+                    EnvironmentValueChange.with(
+                        o,
+                        n
+                    )
+                );
+            },
+            tasks::add,
+            10,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        final Thread thread = Thread.currentThread();
+        final Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        final List<Throwable> uncaught = Lists.array();
+        thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+        try {
+            tasks.remove(0)
+                .run();
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        this.checkEquals(
+            1,
+            uncaught.size(),
+            "uncaught"
+        );
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    GERMANY,
+                    ITALY
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOnValueChangeWatcherErrorRedrains() {
+        final List<Runnable> tasks = Lists.array();
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> {
+                if (o.equals(FRANCE)) {
+                    throw new AssertionError("fail!");
+                }
+                fired.add(
+                    EnvironmentValueChange.with(
+                        o,
+                        n
+                    )
+                );
+            },
+            tasks::add,
+            10,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        final Runnable drain = tasks.remove(0);
+        assertThrows(
+            AssertionError.class,
+            drain::run
+        );
+
+        this.checkEquals(
+            1,
+            tasks.size(),
+            "remaining events given to a new drain"
+        );
+
+        tasks.remove(0)
+            .run();
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    GERMANY,
+                    ITALY
+                )
+            ),
+            fired
+        );
+
+        watcher.onValueChange(
+            ITALY,
+            JAPAN
+        );
+
+        this.checkEquals(
+            1,
+            tasks.size(),
+            "draining cleared"
+        );
+    }
+
+    @Test
+    public void testOnValueChangeWatcherErrorLastEventClearsDraining() {
+        final List<Runnable> tasks = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> {
+                throw new AssertionError("fail!");
+            },
+            tasks::add,
+            10,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        final Runnable drain = tasks.remove(0);
+        assertThrows(
+            AssertionError.class,
+            drain::run
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            tasks,
+            "no new drain"
+        );
+
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        this.checkEquals(
+            1,
+            tasks.size(),
+            "draining cleared"
+        );
+    }
+
+    @Test
+    public void testOnValueChangeExecutorRejectsBlockQueueFull() {
+        final RuntimeException rejected = new IllegalStateException("rejected!");
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            },
+            (r) -> {
+                throw rejected;
+            },
+            1,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        final Thread thread = Thread.currentThread();
+        final Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        final List<Throwable> uncaught = Lists.array();
+        thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+        try {
+            watcher.onValueChange(
+                FRANCE,
+                GERMANY
+            );
+            watcher.onValueChange(
+                GERMANY,
+                ITALY
+            );
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        this.checkEquals(
+            Lists.of(
+                rejected,
+                rejected
+            ),
+            uncaught,
+            "uncaught"
+        );
+        this.checkEquals(
+            0,
+            watcher.size(),
+            "rejected events discarded"
+        );
+    }
+
+    @Test
+    public void testOnValueChangeWatcherErrorRedrainRejectedDiscardsEvents() {
+        final List<Runnable> tasks = Lists.array();
+        final RuntimeException rejected = new IllegalStateException("rejected!");
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> {
+                throw new AssertionError("fail!");
+            },
+            (r) -> {
+                if (false == tasks.isEmpty()) {
+                    throw rejected;
+                }
+                tasks.add(r);
+            },
+            2,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        final Thread thread = Thread.currentThread();
+        final Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        final List<Throwable> uncaught = Lists.array();
+        thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+        try {
+            assertThrows(
+                AssertionError.class,
+                tasks.get(0)::run
+            );
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        this.checkEquals(
+            Lists.of(rejected),
+            uncaught,
+            "uncaught"
+        );
+        this.checkEquals(
+            0,
+            watcher.size(),
+            "stranded events discarded"
+        );
+
+        tasks.clear();
+
+        watcher.onValueChange(
+            ITALY,
+            JAPAN
+        );
+
+        this.checkEquals(
+            1,
+            tasks.size(),
+            "draining cleared"
+        );
+    }
+
+    // onValueChanges...................................................................................................
+
+    @Test
+    public void testOnValueChangesDeliveredAsBatch() {
+        final List<Runnable> tasks = Lists.array();
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            batchWatcher(fired),
+            tasks::add,
+            10,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        final List<EnvironmentValueChange> changes = Lists.of(
+            EnvironmentValueChange.with(
+                FRANCE,
+                GERMANY
+            ),
+            EnvironmentValueChange.with(
+                Optional.empty(),
+                Optional.of(
+                    EnvironmentValueName.with("hello", String.class)
+                        .setValue("world")
+                )
+            )
+        );
+        watcher.onValueChanges(changes);
+
+        tasks.remove(0)
+            .run();
+
+        this.checkEquals(
+            Lists.of(changes),
+            fired
+        );
+    }
+
+    // overflow.........................................................................................................
+
+    @Test
+    public void testOverflowDropOldest() {
+        final List<Runnable> tasks = Lists.array();
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            ),
+            tasks::add,
+            2,
+            EnvironmentWatcherOverflow.DROP_OLDEST
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+        watcher.onValueChange(
+            ITALY,
+            JAPAN
+        );
+
+        this.checkEquals(
+            2,
+            watcher.size(),
+            "size"
+        );
+
+        tasks.remove(0)
+            .run();
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    GERMANY,
+                    ITALY
+                ),
+                EnvironmentValueChange.with(
+                    ITALY,
+                    JAPAN
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOverflowCoalesce() {
+        final List<Runnable> tasks = Lists.array();
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            batchWatcher(fired),
+            tasks::add,
+            2,
+            EnvironmentWatcherOverflow.COALESCE
+        );
+
+        final Optional<EnvironmentValueNameAndValue<?>> hello = Optional.of(
+            EnvironmentValueName.with("hello", String.class)
+                .setValue("world")
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChange(
+            Optional.empty(),
+            hello
+        );
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        this.checkEquals(
+            1,
+            watcher.size(),
+            "size"
+        );
+
+        tasks.remove(0)
+            .run();
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        FRANCE,
+                        ITALY
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        hello
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOverflowBlock() throws Exception {
+        final List<Runnable> tasks = Collections.synchronizedList(Lists.array());
+        final List<EnvironmentValueChange> fired = Collections.synchronizedList(Lists.array());
+
+        final EnvironmentWatcherAsync watcher = EnvironmentWatcherAsync.with(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            ),
+            tasks::add,
+            1,
+            EnvironmentWatcherOverflow.BLOCK
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final Thread writer = new Thread(
+            () -> {
+                started.countDown();
+                watcher.onValueChange(
+                    GERMANY,
+                    ITALY
+                );
+                done.countDown();
+            }
+        );
+        writer.start();
+        started.await();
+
+        this.checkEquals(
+            false,
+            done.await(100, TimeUnit.MILLISECONDS),
+            "writer should be blocked"
+        );
+
+        // take the first event, which unblocks the writer
+        tasks.remove(0)
+            .run();
+
+        this.checkEquals(
+            true,
+            done.await(30, TimeUnit.SECONDS),
+            "writer should have been unblocked"
+        );
+        writer.join();
+
+        // the second event is delivered by the first task or a new task depending on timing
+        while (false == tasks.isEmpty()) {
+            tasks.remove(0)
+                .run();
+        }
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    GERMANY
+                ),
+                EnvironmentValueChange.with(
+                    GERMANY,
+                    ITALY
+                )
+            ),
+            fired
+        );
+    }
+
+    private static EnvironmentWatcher batchWatcher(final List<List<EnvironmentValueChange>> fired) {
+        return new EnvironmentWatcher() {
+            @Override
+            public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                      final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                fired.add(changes);
+            }
+        };
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(
+            EnvironmentWatcherAsync.with(
+                new EnvironmentWatcher() {
+                    @Override
+                    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "Watcher123";
+                    }
+                },
+                Runnable::run,
+                10,
+                EnvironmentWatcherOverflow.COALESCE
+            ),
+            "Watcher123 COALESCE 10"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherAsync> type() {
+        return EnvironmentWatcherAsync.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.Locale;
+import java.util.Optional;
+
+public final class EnvironmentWatcherBatchTest implements ClassTesting<EnvironmentWatcherBatch>,
+    ToStringTesting<EnvironmentWatcherBatch> {
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> FRANCE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> GERMANY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> ITALY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.ITALY)
+    );
+
+    private final static EnvironmentValueName<String> NAME = EnvironmentValueName.with(
+        "hello",
+        String.class
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> HELLO = Optional.of(
+        NAME.setValue("world")
+    );
+
+    @Test
+    public void testChangesEmpty() {
+        this.checkEquals(
+            Lists.empty(),
+            EnvironmentWatcherBatch.empty()
+                .changes()
+        );
+    }
+
+    @Test
+    public void testChangesOne() {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+        batch.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    GERMANY
+                )
+            ),
+            batch.changes()
+        );
+    }
+
+    @Test
+    public void testChangesSameNameCoalesced() {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+        batch.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        batch.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    ITALY
+                )
+            ),
+            batch.changes()
+        );
+    }
+
+    @Test
+    public void testChangesRestoredValueIgnored() {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+        batch.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        batch.onValueChange(
+            GERMANY,
+            FRANCE
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            batch.changes()
+        );
+    }
+
+    @Test
+    public void testChangesAddedThenRemovedIgnored() {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+        batch.onValueChange(
+            Optional.empty(),
+            HELLO
+        );
+        batch.onValueChange(
+            HELLO,
+            Optional.empty()
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            batch.changes()
+        );
+    }
+
+    @Test
+    public void testChangesSeveralNamesInOrder() {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+        batch.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        batch.onValueChange(
+            Optional.empty(),
+            HELLO
+        );
+        batch.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    ITALY
+                ),
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    HELLO
+                )
+            ),
+            batch.changes()
+        );
+    }
+
+    @Test
+    public void testOnValueChanges() {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+        batch.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        batch.onValueChanges(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    GERMANY,
+                    ITALY
+                )
+            )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    ITALY
+                )
+            ),
+            batch.changes()
+        );
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        final EnvironmentWatcherBatch batch = EnvironmentWatcherBatch.empty();
+        batch.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        this.toStringAndCheck(
+            batch,
+            "[locale=fr_FR -> locale=de_DE]"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherBatch> type() {
+        return EnvironmentWatcherBatch.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
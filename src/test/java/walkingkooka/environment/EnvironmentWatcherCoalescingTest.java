@@ -0,0 +1,389 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentWatcherCoalescingTest implements ClassTesting<EnvironmentWatcherCoalescing>,
+    ToStringTesting<EnvironmentWatcherCoalescing> {
+
+    private final static Duration WINDOW = Duration.ofMillis(100);
+
+    private final static LocalDateTime START = LocalDateTime.of(
+        1999,
+        12,
+        31,
+        12,
+        58,
+        59
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> FRANCE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> GERMANY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> ITALY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.ITALY)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> HELLO = Optional.of(
+        EnvironmentValueName.with("hello", String.class)
+            .setValue("world")
+    );
+
+    private final static EnvironmentWatcher WATCHER = (o, n) -> {
+        throw new UnsupportedOperationException();
+    };
+
+    // with.............................................................................................................
+
+    @Test
+    public void testWithNullWatcherFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherCoalescing.with(
+                null,
+                WINDOW,
+                () -> START
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullWindowFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherCoalescing.with(
+                WATCHER,
+                null,
+                () -> START
+            )
+        );
+    }
+
+    @Test
+    public void testWithNegativeWindowFails() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> EnvironmentWatcherCoalescing.with(
+                WATCHER,
+                Duration.ofMillis(-1),
+                () -> START
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullClockFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherCoalescing.with(
+                WATCHER,
+                WINDOW,
+                null
+            )
+        );
+    }
+
+    // onValueChange....................................................................................................
+
+    @Test
+    public void testOnValueChangeHeldUntilWindowElapsed() {
+        this.now = START;
+
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+        final EnvironmentWatcherCoalescing watcher = this.createWatcher(fired);
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        this.now = START.plus(Duration.ofMillis(50));
+        watcher.onValueChange(
+            Optional.empty(),
+            HELLO
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            fired,
+            "held within window"
+        );
+
+        this.now = START.plus(WINDOW);
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        FRANCE,
+                        ITALY
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        HELLO
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOnValueChangeWindowRestarts() {
+        this.now = START;
+
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+        final EnvironmentWatcherCoalescing watcher = this.createWatcher(fired);
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        this.now = START.plus(WINDOW);
+        watcher.onValueChange(
+            GERMANY,
+            ITALY
+        );
+
+        // window restarts with the next change
+        watcher.onValueChange(
+            Optional.empty(),
+            HELLO
+        );
+
+        this.checkEquals(
+            1,
+            fired.size(),
+            "fired"
+        );
+    }
+
+    @Test
+    public void testOnValueChangeCancelledOut() {
+        this.now = START;
+
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+        final EnvironmentWatcherCoalescing watcher = this.createWatcher(fired);
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        this.now = START.plus(WINDOW);
+        watcher.onValueChange(
+            GERMANY,
+            FRANCE
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            fired
+        );
+    }
+
+    @Test
+    public void testOnValueChangeZeroWindow() {
+        this.now = START;
+
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+        final EnvironmentWatcherCoalescing watcher = EnvironmentWatcherCoalescing.with(
+            batchWatcher(fired),
+            Duration.ZERO,
+            () -> this.now
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        FRANCE,
+                        GERMANY
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // onValueChanges...................................................................................................
+
+    @Test
+    public void testOnValueChangesMerged() {
+        this.now = START;
+
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+        final EnvironmentWatcherCoalescing watcher = this.createWatcher(fired);
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChanges(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    GERMANY,
+                    ITALY
+                ),
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    HELLO
+                )
+            )
+        );
+        watcher.flush();
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        FRANCE,
+                        ITALY
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        HELLO
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // flush............................................................................................................
+
+    @Test
+    public void testFlush() {
+        this.now = START;
+
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+        final EnvironmentWatcherCoalescing watcher = this.createWatcher(fired);
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.flush();
+        watcher.flush();
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        FRANCE,
+                        GERMANY
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testFlushNothingHeld() {
+        this.createWatcher(Lists.array())
+            .flush();
+    }
+
+    private EnvironmentWatcherCoalescing createWatcher(final List<List<EnvironmentValueChange>> fired) {
+        return EnvironmentWatcherCoalescing.with(
+            batchWatcher(fired),
+            WINDOW,
+            () -> this.now
+        );
+    }
+
+    private LocalDateTime now;
+
+    private static EnvironmentWatcher batchWatcher(final List<List<EnvironmentValueChange>> fired) {
+        return new EnvironmentWatcher() {
+            @Override
+            public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                      final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                fired.add(changes);
+            }
+        };
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(
+            EnvironmentWatcherCoalescing.with(
+                new EnvironmentWatcher() {
+                    @Override
+                    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "Watcher123";
+                    }
+                },
+                WINDOW,
+                () -> START
+            ),
+            "Watcher123 PT0.1S"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherCoalescing> type() {
+        return EnvironmentWatcherCoalescing.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+public final class EnvironmentWatcherInstrumentedTest implements ClassTesting<EnvironmentWatcherInstrumented> {
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> OLD_VALUE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> NEW_VALUE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    private final static long BUDGET = 1000;
+
+    @Test
+    public void testOnValueChangeRecorded() {
+        final EnvironmentWatcher watcher = (o, n) -> this.now += 500;
+        final EnvironmentWatcherInstrumented instrumented = EnvironmentWatcherInstrumented.with(
+            watcher,
+            BUDGET,
+            () -> this.now
+        );
+
+        instrumented.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+
+        final EnvironmentWatcherStatistics statistics = instrumented.statistics();
+        this.checkEquals(
+            1L,
+            statistics.events(),
+            "events"
+        );
+        this.checkEquals(
+            500L,
+            statistics.totalNanos(),
+            "totalNanos"
+        );
+        this.checkEquals(
+            false,
+            statistics.isSlow(),
+            "isSlow"
+        );
+        this.checkEquals(
+            1L,
+            statistics.histogram()
+                .get(0),
+            "histogram[0]"
+        );
+    }
+
+    @Test
+    public void testOnValueChangeSlow() {
+        final EnvironmentWatcherInstrumented instrumented = EnvironmentWatcherInstrumented.with(
+            (o, n) -> this.now += 3000,
+            BUDGET,
+            () -> this.now
+        );
+
+        instrumented.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+
+        final EnvironmentWatcherStatistics statistics = instrumented.statistics();
+        this.checkEquals(
+            1L,
+            statistics.slowEvents(),
+            "slowEvents"
+        );
+        this.checkEquals(
+            3000L,
+            statistics.maxNanos(),
+            "maxNanos"
+        );
+        this.checkEquals(
+            1L,
+            statistics.histogram()
+                .get(2),
+            "histogram[2]"
+        );
+    }
+
+    @Test
+    public void testOnValueChangeExceptionIsolated() {
+        final IllegalStateException thrown = new IllegalStateException("Failed");
+
+        final EnvironmentWatcherInstrumented instrumented = EnvironmentWatcherInstrumented.with(
+            (o, n) -> {
+                throw thrown;
+            },
+            BUDGET,
+            () -> this.now
+        );
+
+        instrumented.onValueChange(
+            OLD_VALUE,
+            NEW_VALUE
+        );
+
+        final EnvironmentWatcherStatistics statistics = instrumented.statistics();
+        this.checkEquals(
+            1L,
+            statistics.exceptions(),
+            "exceptions"
+        );
+        this.checkEquals(
+            Optional.of(thrown),
+            statistics.lastException(),
+            "lastException"
+        );
+    }
+
+    @Test
+    public void testOnValueChangesCountsOneEvent() {
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+
+        final EnvironmentWatcherInstrumented instrumented = EnvironmentWatcherInstrumented.with(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    fired.add(changes);
+                }
+            },
+            BUDGET,
+            () -> this.now
+        );
+
+        final List<EnvironmentValueChange> changes = Lists.of(
+            EnvironmentValueChange.with(
+                OLD_VALUE,
+                NEW_VALUE
+            ),
+            EnvironmentValueChange.with(
+                NEW_VALUE,
+                OLD_VALUE
+            )
+        );
+        instrumented.onValueChanges(changes);
+
+        this.checkEquals(
+            Lists.of(changes),
+            fired,
+            "fired"
+        );
+        this.checkEquals(
+            1L,
+            instrumented.statistics()
+                .events(),
+            "events"
+        );
+    }
+
+    private long now;
+
+    // bucket...........................................................................................................
+
+    @Test
+    public void testBucket() {
+        this.bucketAndCheck(0, 0);
+        this.bucketAndCheck(999, 0);
+        this.bucketAndCheck(1000, 1);
+        this.bucketAndCheck(1999, 1);
+        this.bucketAndCheck(2000, 2);
+        this.bucketAndCheck(4000, 3);
+        this.bucketAndCheck(Long.MAX_VALUE, EnvironmentWatcherStatistics.BUCKETS - 1);
+    }
+
+    @Test
+    public void testBucketNegative() {
+        this.bucketAndCheck(-1000, 0);
+    }
+
+    private void bucketAndCheck(final long nanos,
+                                final int expected) {
+        this.checkEquals(
+            expected,
+            EnvironmentWatcherInstrumented.bucket(nanos),
+            "bucket " + nanos
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherInstrumented> type() {
+        return EnvironmentWatcherInstrumented.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentWatcherNamesTest implements ClassTesting<EnvironmentWatcherNames>,
+    ToStringTesting<EnvironmentWatcherNames> {
+
+    private final static EnvironmentValueName<String> NAME = EnvironmentValueName.with(
+        "hello",
+        String.class
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> FRANCE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> GERMANY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> HELLO = Optional.of(
+        NAME.setValue("world")
+    );
+
+    @Test
+    public void testWithNullNamesFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherNames.with(
+                null,
+                (o, n) -> {
+                }
+            )
+        );
+    }
+
+    @Test
+    public void testWithEmptyNamesFails() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> EnvironmentWatcherNames.with(
+                Sets.empty(),
+                (o, n) -> {
+                }
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullWatcherFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherNames.with(
+                Sets.of(NAME),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testOnValueChange() {
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatcherNames watcher = EnvironmentWatcherNames.with(
+            Sets.of(EnvironmentValueName.LOCALE),
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        watcher.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        watcher.onValueChange(
+            Optional.empty(),
+            HELLO
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    GERMANY
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOnValueChangeIgnoresCaseAndType() {
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatcherNames watcher = EnvironmentWatcherNames.with(
+            Sets.of(
+                EnvironmentValueName.with(
+                    "HELLO",
+                    Object.class
+                )
+            ),
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        watcher.onValueChange(
+            Optional.empty(),
+            HELLO
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    HELLO
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOnValueChangesFiltered() {
+        final List<List<EnvironmentValueChange>> fired = Lists.array();
+
+        final EnvironmentWatcherNames watcher = EnvironmentWatcherNames.with(
+            Sets.of(NAME),
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    fired.add(changes);
+                }
+            }
+        );
+
+        watcher.onValueChanges(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    GERMANY
+                )
+            )
+        );
+        watcher.onValueChanges(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    FRANCE,
+                    GERMANY
+                ),
+                EnvironmentValueChange.with(
+                    Optional.empty(),
+                    HELLO
+                )
+            )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        HELLO
+                    )
+                )
+            ),
+            fired
+        );
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(
+            EnvironmentWatcherNames.with(
+                Sets.of(NAME),
+                new EnvironmentWatcher() {
+                    @Override
+                    public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                              final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "Watcher123";
+                    }
+                }
+            ),
+            "Watcher123"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherNames> type() {
+        return EnvironmentWatcherNames.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentWatcherPublisherTest implements ClassTesting<EnvironmentWatcherPublisher>,
+    ToStringTesting<EnvironmentWatcherPublisher> {
+
+    // with.............................................................................................................
+
+    @Test
+    public void testWithNullContextFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherPublisher.with(
+                null,
+                1
+            )
+        );
+    }
+
+    @Test
+    public void testWithInvalidReplayFails() {
+        final IllegalArgumentException thrown = assertThrows(
+            IllegalArgumentException.class,
+            () -> EnvironmentWatcherPublisher.with(
+                this.context(),
+                0
+            )
+        );
+
+        this.checkEquals(
+            "Invalid replay 0 < 1",
+            thrown.getMessage()
+        );
+    }
+
+    // subscribe........................................................................................................
+
+    @Test
+    public void testSubscribeNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherPublisher.with(
+                this.context(),
+                1
+            ).subscribe(null)
+        );
+    }
+
+    @Test
+    public void testSubscribeHonoursDemand() {
+        final EnvironmentContext context = this.context();
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            context,
+            10
+        );
+
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        context.setLocale(Locale.FRANCE);
+        context.setLocale(Locale.GERMANY);
+        context.setLocale(Locale.ITALY);
+
+        this.checkEquals(
+            Lists.empty(),
+            subscriber.changes,
+            "no demand"
+        );
+
+        subscriber.subscription.request(2);
+
+        this.checkEquals(
+            Lists.of(
+                change(Locale.ENGLISH, Locale.FRANCE),
+                change(Locale.FRANCE, Locale.GERMANY)
+            ),
+            subscriber.changes
+        );
+
+        subscriber.subscription.request(2);
+        context.setLocale(Locale.JAPAN);
+        context.setLocale(Locale.KOREA);
+
+        this.checkEquals(
+            Lists.of(
+                change(Locale.ENGLISH, Locale.FRANCE),
+                change(Locale.FRANCE, Locale.GERMANY),
+                change(Locale.GERMANY, Locale.ITALY),
+                change(Locale.ITALY, Locale.JAPAN)
+            ),
+            subscriber.changes
+        );
+    }
+
+    @Test
+    public void testSubscribeReplaysLastChanges() {
+        final EnvironmentContext context = this.context();
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            context,
+            2
+        );
+
+        context.setLocale(Locale.FRANCE);
+        context.setLocale(Locale.GERMANY);
+        context.setLocale(Locale.ITALY);
+
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        this.checkEquals(
+            Lists.of(
+                change(Locale.FRANCE, Locale.GERMANY),
+                change(Locale.GERMANY, Locale.ITALY)
+            ),
+            subscriber.changes
+        );
+    }
+
+    @Test
+    public void testSubscribeFallsBehindFails() {
+        final EnvironmentContext context = this.context();
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            context,
+            2
+        );
+
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        context.setLocale(Locale.FRANCE);
+        context.setLocale(Locale.GERMANY);
+        context.setLocale(Locale.ITALY);
+
+        this.checkEquals(
+            "Subscriber missed 1 change(s)",
+            subscriber.error.getMessage(),
+            "error"
+        );
+        this.checkEquals(
+            0,
+            publisher.subscriptionCount(),
+            "subscriptions"
+        );
+    }
+
+    @Test
+    public void testRequestInvalidFails() {
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            this.context(),
+            1
+        );
+
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        this.checkEquals(
+            IllegalArgumentException.class,
+            subscriber.error.getClass(),
+            "error"
+        );
+        this.checkEquals(
+            0,
+            publisher.subscriptionCount(),
+            "subscriptions"
+        );
+    }
+
+    @Test
+    public void testRequestInvalidDuringOnNextSignalledAfter() {
+        final EnvironmentContext context = this.context();
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            context,
+            1
+        );
+
+        final List<String> signals = Lists.array();
+        final TestSubscriber subscriber = new TestSubscriber() {
+            @Override
+            public void onNext(final EnvironmentValueChange change) {
+                signals.add("onNext start");
+                this.subscription.request(-1);
+                signals.add("onNext end");
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                signals.add("onError");
+            }
+        };
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        context.setLocale(Locale.FRANCE);
+        context.setLocale(Locale.GERMANY);
+
+        this.checkEquals(
+            Lists.of(
+                "onNext start",
+                "onNext end",
+                "onError"
+            ),
+            signals
+        );
+    }
+
+    @Test
+    public void testCancel() {
+        final EnvironmentContext context = this.context();
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            context,
+            1
+        );
+
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.cancel();
+
+        context.setLocale(Locale.FRANCE);
+
+        this.checkEquals(
+            Lists.empty(),
+            subscriber.changes
+        );
+    }
+
+    @Test
+    public void testBatchPublishesEachChange() {
+        final EnvironmentContext context = this.context();
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            context,
+            10
+        );
+
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        context.update(
+            (c) -> {
+                c.setLocale(Locale.FRANCE);
+                c.setLocale(Locale.GERMANY);
+            }
+        );
+
+        this.checkEquals(
+            Lists.of(
+                change(Locale.ENGLISH, Locale.GERMANY)
+            ),
+            subscriber.changes
+        );
+    }
+
+    // close............................................................................................................
+
+    @Test
+    public void testCloseCompletesAfterHeldChanges() {
+        final EnvironmentContext context = this.context();
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            context,
+            10
+        );
+
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        context.setLocale(Locale.FRANCE);
+        publisher.close();
+        context.setLocale(Locale.GERMANY);
+
+        this.checkEquals(
+            false,
+            subscriber.completed,
+            "completed before request"
+        );
+
+        subscriber.subscription.request(10);
+
+        this.checkEquals(
+            Lists.of(
+                change(Locale.ENGLISH, Locale.FRANCE)
+            ),
+            subscriber.changes
+        );
+        this.checkEquals(
+            true,
+            subscriber.completed,
+            "completed"
+        );
+    }
+
+    private EnvironmentContext context() {
+        final EnvironmentContext context = EnvironmentContextTesting.ENVIRONMENT_CONTEXT.cloneEnvironment();
+        context.setLocale(Locale.ENGLISH);
+        return context;
+    }
+
+    private static EnvironmentValueChange change(final Locale oldValue,
+                                                 final Locale newValue) {
+        return EnvironmentValueChange.with(
+            Optional.of(
+                EnvironmentValueName.LOCALE.setValue(oldValue)
+            ),
+            Optional.of(
+                EnvironmentValueName.LOCALE.setValue(newValue)
+            )
+        );
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<EnvironmentValueChange> {
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(final EnvironmentValueChange change) {
+            this.changes.add(change);
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+
+        Flow.Subscription subscription;
+
+        final List<EnvironmentValueChange> changes = Lists.array();
+
+        Throwable error;
+
+        boolean completed;
+
+        @Override
+        public String toString() {
+            return "TestSubscriber";
+        }
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        final EnvironmentWatcherPublisher publisher = EnvironmentWatcherPublisher.with(
+            this.context(),
+            1
+        );
+        publisher.subscribe(new TestSubscriber());
+
+        this.toStringAndCheck(
+            publisher,
+            "[TestSubscriber]"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherPublisher> type() {
+        return EnvironmentWatcherPublisher.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
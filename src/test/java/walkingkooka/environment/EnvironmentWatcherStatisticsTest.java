@@ -0,0 +1,202 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.HashCodeEqualsDefinedTesting2;
+import walkingkooka.ToStringTesting;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.List;
+import java.util.Optional;
+
+public final class EnvironmentWatcherStatisticsTest implements HashCodeEqualsDefinedTesting2<EnvironmentWatcherStatistics>,
+    ToStringTesting<EnvironmentWatcherStatistics>,
+    ClassTesting<EnvironmentWatcherStatistics> {
+
+    private final static EnvironmentWatcher WATCHER = new EnvironmentWatcher() {
+        @Override
+        public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                  final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return "Watcher123";
+        }
+    };
+
+    private final static long EVENTS = 5;
+
+    private final static long EXCEPTIONS = 1;
+
+    private final static long SLOW_EVENTS = 2;
+
+    private final static long TOTAL_NANOS = 5000;
+
+    private final static long MAX_NANOS = 2000;
+
+    private final static List<Long> HISTOGRAM = Lists.of(
+        1L,
+        4L
+    );
+
+    @Test
+    public void testWith() {
+        final EnvironmentWatcherStatistics statistics = this.createObject();
+
+        this.checkEquals(
+            WATCHER,
+            statistics.watcher(),
+            "watcher"
+        );
+        this.checkEquals(
+            EVENTS,
+            statistics.events(),
+            "events"
+        );
+        this.checkEquals(
+            EXCEPTIONS,
+            statistics.exceptions(),
+            "exceptions"
+        );
+        this.checkEquals(
+            SLOW_EVENTS,
+            statistics.slowEvents(),
+            "slowEvents"
+        );
+        this.checkEquals(
+            true,
+            statistics.isSlow(),
+            "isSlow"
+        );
+        this.checkEquals(
+            TOTAL_NANOS,
+            statistics.totalNanos(),
+            "totalNanos"
+        );
+        this.checkEquals(
+            MAX_NANOS,
+            statistics.maxNanos(),
+            "maxNanos"
+        );
+        this.checkEquals(
+            HISTOGRAM,
+            statistics.histogram(),
+            "histogram"
+        );
+        this.checkEquals(
+            Optional.empty(),
+            statistics.lastException(),
+            "lastException"
+        );
+    }
+
+    @Test
+    public void testIsSlowWithoutSlowEvents() {
+        this.checkEquals(
+            false,
+            EnvironmentWatcherStatistics.with(
+                WATCHER,
+                EVENTS,
+                EXCEPTIONS,
+                0,
+                TOTAL_NANOS,
+                MAX_NANOS,
+                HISTOGRAM,
+                Optional.empty()
+            ).isSlow()
+        );
+    }
+
+    // equals...........................................................................................................
+
+    @Test
+    public void testEqualsDifferentEvents() {
+        this.checkNotEquals(
+            EnvironmentWatcherStatistics.with(
+                WATCHER,
+                EVENTS + 1,
+                EXCEPTIONS,
+                SLOW_EVENTS,
+                TOTAL_NANOS,
+                MAX_NANOS,
+                HISTOGRAM,
+                Optional.empty()
+            )
+        );
+    }
+
+    @Test
+    public void testEqualsDifferentHistogram() {
+        this.checkNotEquals(
+            EnvironmentWatcherStatistics.with(
+                WATCHER,
+                EVENTS,
+                EXCEPTIONS,
+                SLOW_EVENTS,
+                TOTAL_NANOS,
+                MAX_NANOS,
+                Lists.of(
+                    2L,
+                    3L
+                ),
+                Optional.empty()
+            )
+        );
+    }
+
+    @Override
+    public EnvironmentWatcherStatistics createObject() {
+        return EnvironmentWatcherStatistics.with(
+            WATCHER,
+            EVENTS,
+            EXCEPTIONS,
+            SLOW_EVENTS,
+            TOTAL_NANOS,
+            MAX_NANOS,
+            HISTOGRAM,
+            Optional.empty()
+        );
+    }
+
+    // toString.........................................................................................................
+
+    @Test
+    public void testToString() {
+        this.toStringAndCheck(
+            this.createObject(),
+            "Watcher123 events=5 exceptions=1 slowEvents=2 totalNanos=5000 maxNanos=2000"
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherStatistics> type() {
+        return EnvironmentWatcherStatistics.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentWatcherWeakTest implements ClassTesting<EnvironmentWatcherWeak> {
+
+    @Test
+    public void testAddWithNullContextFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherWeak.add(
+                null,
+                (o, n) -> {
+                }
+            )
+        );
+    }
+
+    @Test
+    public void testAddWithNullWatcherFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatcherWeak.add(
+                this.context(),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testAddThenFire() {
+        final EnvironmentContextSharedMap context = this.context();
+
+        final List<Locale> fired = Lists.array();
+        final EnvironmentWatcher watcher = (o, n) -> fired.add(
+            (Locale) n.get()
+                .value()
+        );
+        EnvironmentWatcherWeak.add(
+            context,
+            watcher
+        );
+
+        context.setLocale(Locale.FRANCE);
+
+        this.checkEquals(
+            Lists.of(Locale.FRANCE),
+            fired
+        );
+    }
+
+    @Test
+    public void testAddThenRemove() {
+        final EnvironmentContextSharedMap context = this.context();
+
+        EnvironmentWatcherWeak.add(
+            context,
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        ).run();
+
+        this.checkEquals(
+            0,
+            context.environmentValueWatchers()
+                .size()
+        );
+
+        context.setLocale(Locale.FRANCE);
+    }
+
+    @Test
+    public void testCollectedWatcherRemovedByNextEvent() throws Exception {
+        final EnvironmentContextSharedMap context = this.context();
+
+        awaitCollected(
+            this.addCollectable(context)
+        );
+
+        this.checkEquals(
+            1,
+            context.environmentValueWatchers()
+                .size(),
+            "watchers before event"
+        );
+
+        context.setLocale(Locale.FRANCE);
+
+        this.checkEquals(
+            0,
+            context.environmentValueWatchers()
+                .size(),
+            "watchers after event"
+        );
+    }
+
+    @Test
+    public void testCollectedWatcherRemovedByExpunge() throws Exception {
+        final EnvironmentContextSharedMap context = this.context();
+
+        awaitCollected(
+            this.addCollectable(context)
+        );
+
+        // the reference is queued by another thread some time after it is cleared
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        do {
+            EnvironmentWatcherWeak.expunge();
+            Thread.sleep(10);
+        } while (0 != context.environmentValueWatchers().size() && System.nanoTime() < deadline);
+
+        this.checkEquals(
+            0,
+            context.environmentValueWatchers()
+                .size()
+        );
+    }
+
+    /**
+     * Requests garbage collections until the watcher is collected, failing if that never happens.
+     */
+    private static void awaitCollected(final WeakReference<EnvironmentWatcher> reference) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (null != reference.get() && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(
+            reference.get(),
+            "watcher not collected"
+        );
+    }
+
+    private WeakReference<EnvironmentWatcher> addCollectable(final EnvironmentContext context) {
+        final EnvironmentWatcher watcher = new EnvironmentWatcher() {
+            @Override
+            public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                      final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        EnvironmentWatcherWeak.add(
+            context,
+            watcher
+        );
+
+        return new WeakReference<>(watcher);
+    }
+
+    private EnvironmentContextSharedMap context() {
+        return (EnvironmentContextSharedMap) EnvironmentContextTesting.ENVIRONMENT_CONTEXT.cloneEnvironment();
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatcherWeak> type() {
+        return EnvironmentWatcherWeak.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PUBLIC;
+    }
+}
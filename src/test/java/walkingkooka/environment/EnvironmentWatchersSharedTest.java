@@ -0,0 +1,267 @@
+/*
+ * Copyright 2024 Miroslav Pokorny (github.com/mP1)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package walkingkooka.environment;
+
+import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.reflect.ClassTesting;
+import walkingkooka.reflect.JavaVisibility;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class EnvironmentWatchersSharedTest implements ClassTesting<EnvironmentWatchersShared> {
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> FRANCE = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+    );
+
+    private final static Optional<EnvironmentValueNameAndValue<?>> GERMANY = Optional.of(
+        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+    );
+
+    @Test
+    public void testWithNullWatchersFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchersShared.with(
+                null,
+                EnvironmentContexts.fake(),
+                EnvironmentWatchers.empty()
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullContextFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchersShared.with(
+                EnvironmentWatchers.empty(),
+                null,
+                EnvironmentWatchers.empty()
+            )
+        );
+    }
+
+    @Test
+    public void testWithNullWatcherFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchersShared.with(
+                EnvironmentWatchers.empty(),
+                EnvironmentContexts.fake(),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testAddRemove() {
+        final EnvironmentWatchers context = EnvironmentWatchers.empty();
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        final EnvironmentWatchersShared shared = this.createShared(
+            watchers,
+            context
+        );
+
+        final List<String> fired = Lists.array();
+        final Runnable remover1 = shared.add(
+            (o, n) -> fired.add("1")
+        );
+        final Runnable remover2 = shared.add(
+            (o, n) -> fired.add("2")
+        );
+
+        this.checkEquals(
+            1,
+            context.size(),
+            "shared watcher added once"
+        );
+
+        context.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "1",
+                "2"
+            ),
+            fired
+        );
+
+        remover1.run();
+        this.checkEquals(
+            true,
+            shared.isWatching(),
+            "watching after first remove"
+        );
+
+        remover2.run();
+        this.checkEquals(
+            false,
+            shared.isWatching(),
+            "watching after last remove"
+        );
+        this.checkEquals(
+            0,
+            context.size(),
+            "shared watcher removed"
+        );
+    }
+
+    @Test
+    public void testAddOnceFiredReleases() {
+        final EnvironmentWatchers context = EnvironmentWatchers.empty();
+        final EnvironmentWatchersShared shared = this.createShared(
+            EnvironmentWatchers.empty(),
+            context
+        );
+
+        final List<String> fired = Lists.array();
+        shared.addOnce(
+            (o, n) -> fired.add("once")
+        );
+
+        context.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        this.checkEquals(
+            Lists.of("once"),
+            fired
+        );
+        this.checkEquals(
+            false,
+            shared.isWatching(),
+            "watching"
+        );
+        this.checkEquals(
+            0,
+            context.size(),
+            "shared watcher removed"
+        );
+    }
+
+    @Test
+    public void testAddOnceFiredOtherWatcherKeepsShared() {
+        final EnvironmentWatchers context = EnvironmentWatchers.empty();
+        final EnvironmentWatchersShared shared = this.createShared(
+            EnvironmentWatchers.empty(),
+            context
+        );
+
+        final List<String> fired = Lists.array();
+        shared.addOnce(
+            (o, n) -> fired.add("once")
+        );
+        shared.add(
+            (o, n) -> fired.add("always")
+        );
+
+        context.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+        context.onValueChange(
+            GERMANY,
+            FRANCE
+        );
+
+        this.checkEquals(
+            Lists.of(
+                "once",
+                "always",
+                "always"
+            ),
+            fired
+        );
+        this.checkEquals(
+            true,
+            shared.isWatching(),
+            "watching"
+        );
+    }
+
+    @Test
+    public void testAddAfterReleaseWatchesAgain() {
+        final EnvironmentWatchers context = EnvironmentWatchers.empty();
+        final EnvironmentWatchersShared shared = this.createShared(
+            EnvironmentWatchers.empty(),
+            context
+        );
+
+        shared.add(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        ).run();
+
+        final List<String> fired = Lists.array();
+        shared.add(
+            (o, n) -> fired.add("again")
+        );
+
+        context.onValueChange(
+            FRANCE,
+            GERMANY
+        );
+
+        this.checkEquals(
+            Lists.of("again"),
+            fired
+        );
+        this.checkEquals(
+            1,
+            context.size(),
+            "context watchers"
+        );
+    }
+
+    private EnvironmentWatchersShared createShared(final EnvironmentWatchers watchers,
+                                                   final EnvironmentWatchers context) {
+        return EnvironmentWatchersShared.with(
+            watchers,
+            new FakeEnvironmentContext() {
+                @Override
+                public Runnable addEnvironmentWatcher(final EnvironmentWatcher watcher) {
+                    return context.add(watcher);
+                }
+            },
+            watchers
+        );
+    }
+
+    // class............................................................................................................
+
+    @Override
+    public Class<EnvironmentWatchersShared> type() {
+        return EnvironmentWatchersShared.class;
+    }
+
+    @Override
+    public JavaVisibility typeVisibility() {
+        return JavaVisibility.PACKAGE_PRIVATE;
+    }
+}
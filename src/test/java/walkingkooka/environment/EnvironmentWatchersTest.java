@@ -18,9 +18,14 @@
 package walkingkooka.environment;
 
 import org.junit.jupiter.api.Test;
+import walkingkooka.collect.list.Lists;
+import walkingkooka.collect.set.Sets;
+import walkingkooka.net.email.EmailAddress;
 import walkingkooka.reflect.ClassTesting;
 import walkingkooka.reflect.JavaVisibility;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
@@ -164,6 +169,720 @@ public final class EnvironmentWatchersTest implements ClassTesting<EnvironmentWa
 
     private boolean fired = false;
 
+    // add names........................................................................................................
+
+    @Test
+    public void testAddNamesWithNullNamesFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchers.empty()
+                .add(
+                    null,
+                    (o, n) -> {
+                    }
+                )
+        );
+    }
+
+    @Test
+    public void testAddNamesWithNullWatcherFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchers.empty()
+                .add(
+                    Sets.<EnvironmentValueName<?>>of(EnvironmentValueName.LOCALE),
+                    null
+                )
+        );
+    }
+
+    @Test
+    public void testAddNamesOnlyInterestedFired() {
+        final Optional<EnvironmentValueNameAndValue<?>> france = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> germany = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> user = Optional.of(
+            EnvironmentValueName.USER.setValue(
+                EmailAddress.parse("user@example.com")
+            )
+        );
+
+        final List<EnvironmentValueChange> locales = Lists.array();
+        final List<EnvironmentValueChange> users = Lists.array();
+
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            Sets.<EnvironmentValueName<?>>of(EnvironmentValueName.LOCALE),
+            (o, n) -> locales.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+        final Runnable remover = watchers.add(
+            Sets.of(EnvironmentValueName.USER),
+            (o, n) -> users.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        watchers.onValueChange(
+            france,
+            germany
+        );
+        remover.run();
+        watchers.onValueChange(
+            Optional.empty(),
+            user
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    france,
+                    germany
+                )
+            ),
+            locales,
+            "locales"
+        );
+        this.checkEquals(
+            Lists.empty(),
+            users,
+            "users"
+        );
+    }
+
+    @Test
+    public void testAddNamesBatchFiredOnceFiltered() {
+        final Optional<EnvironmentValueNameAndValue<?>> france = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> germany = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> user = Optional.of(
+            EnvironmentValueName.USER.setValue(
+                EmailAddress.parse("user@example.com")
+            )
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> hello = Optional.of(
+            EnvironmentValueName.with("hello", String.class)
+                .setValue("world")
+        );
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            Sets.of(
+                EnvironmentValueName.LOCALE,
+                EnvironmentValueName.USER
+            ),
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        watchers.batch(
+            () -> {
+                watchers.onValueChange(
+                    france,
+                    germany
+                );
+                watchers.onValueChange(
+                    Optional.empty(),
+                    hello
+                );
+                watchers.onValueChange(
+                    Optional.empty(),
+                    user
+                );
+            }
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        france,
+                        germany
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        user
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    // batch............................................................................................................
+
+    @Test
+    public void testBatchWithNullFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchers.empty()
+                .batch(null)
+        );
+    }
+
+    @Test
+    public void testBatchFiresOnce() {
+        final Optional<EnvironmentValueNameAndValue<?>> france = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> germany = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> italy = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.ITALY)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> user = Optional.of(
+            EnvironmentValueName.USER.setValue(
+                EmailAddress.parse("user@example.com")
+            )
+        );
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        watchers.batch(
+            () -> {
+                watchers.onValueChange(
+                    france,
+                    germany
+                );
+                watchers.batch(
+                    () -> watchers.onValueChange(
+                        Optional.empty(),
+                        user
+                    )
+                );
+                watchers.onValueChange(
+                    germany,
+                    italy
+                );
+
+                checkEquals(
+                    Lists.empty(),
+                    batches,
+                    "events should be held until batch completes"
+                );
+            }
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        france,
+                        italy
+                    ),
+                    EnvironmentValueChange.with(
+                        Optional.empty(),
+                        user
+                    )
+                )
+            ),
+            batches
+        );
+    }
+
+    @Test
+    public void testBatchWithoutChangesNotFired() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    throw new UnsupportedOperationException();
+                }
+            }
+        );
+
+        watchers.batch(
+            () -> {
+            }
+        );
+    }
+
+    @Test
+    public void testBatchUpdatesThrowFiresAppliedChanges() {
+        final Optional<EnvironmentValueNameAndValue<?>> france = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> germany = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+        );
+
+        final List<List<EnvironmentValueChange>> batches = Lists.array();
+
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            new EnvironmentWatcher() {
+                @Override
+                public void onValueChange(final Optional<EnvironmentValueNameAndValue<?>> oldValue,
+                                          final Optional<EnvironmentValueNameAndValue<?>> newValue) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void onValueChanges(final List<EnvironmentValueChange> changes) {
+                    batches.add(changes);
+                }
+            }
+        );
+
+        final IllegalStateException thrown = new IllegalStateException("fail!");
+
+        this.checkEquals(
+            thrown,
+            assertThrows(
+                IllegalStateException.class,
+                () -> watchers.batch(
+                    () -> {
+                        watchers.onValueChange(
+                            france,
+                            germany
+                        );
+                        throw thrown;
+                    }
+                )
+            )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                Lists.of(
+                    EnvironmentValueChange.with(
+                        france,
+                        germany
+                    )
+                )
+            ),
+            batches
+        );
+
+        watchers.onValueChanges(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    germany,
+                    france
+                )
+            )
+        );
+
+        this.checkEquals(
+            2,
+            batches.size(),
+            "batch ended"
+        );
+    }
+
+    @Test
+    public void testBatchDefaultOnValueChangesFiresEachChange() {
+        final Optional<EnvironmentValueNameAndValue<?>> france = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+        );
+        final Optional<EnvironmentValueNameAndValue<?>> germany = Optional.of(
+            EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+        );
+
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        watchers.batch(
+            () -> watchers.onValueChange(
+                france,
+                germany
+            )
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    france,
+                    germany
+                )
+            ),
+            fired
+        );
+    }
+
+    // onValueChange raw values........................................................................................
+
+    @Test
+    public void testIsObservedWhenEmpty() {
+        this.isObservedAndCheck(
+            EnvironmentWatchers.empty(),
+            false
+        );
+    }
+
+    @Test
+    public void testIsObservedWithWatcher() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        );
+
+        this.isObservedAndCheck(
+            watchers,
+            true
+        );
+    }
+
+    @Test
+    public void testIsObservedWithWatcherRemoved() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        ).run();
+
+        this.isObservedAndCheck(
+            watchers,
+            false
+        );
+    }
+
+    @Test
+    public void testIsObservedWithNamedWatcher() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            Sets.of(EnvironmentValueName.LOCALE),
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        );
+
+        this.isObservedAndCheck(
+            watchers,
+            true
+        );
+    }
+
+    @Test
+    public void testIsObservedWithNamedWatcherRemoved() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            Sets.of(
+                EnvironmentValueName.LOCALE,
+                EnvironmentValueName.USER
+            ),
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        ).run();
+
+        this.isObservedAndCheck(
+            watchers,
+            false
+        );
+    }
+
+    @Test
+    public void testIsObservedWithNamedWatcherRemovedOtherRemains() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        final EnvironmentWatcher watcher = (o, n) -> {
+            throw new UnsupportedOperationException();
+        };
+        watchers.add(
+            Sets.of(EnvironmentValueName.LOCALE),
+            watcher
+        ).run();
+        watchers.add(
+            Sets.of(EnvironmentValueName.LOCALE),
+            watcher
+        );
+
+        this.isObservedAndCheck(
+            watchers,
+            true
+        );
+        this.checkEquals(
+            1,
+            watchers.namedSize(),
+            "namedSize"
+        );
+    }
+
+    @Test
+    public void testIsObservedDuringBatch() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.batch(
+            () -> this.isObservedAndCheck(
+                watchers,
+                true
+            )
+        );
+    }
+
+    private void isObservedAndCheck(final EnvironmentWatchers watchers,
+                                    final boolean expected) {
+        this.checkEquals(
+            expected,
+            watchers.isObserved(),
+            watchers.toString()
+        );
+    }
+
+    @Test
+    public void testOnValueChangeRawValues() {
+        final List<EnvironmentValueChange> fired = Lists.array();
+
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            (o, n) -> fired.add(
+                EnvironmentValueChange.with(
+                    o,
+                    n
+                )
+            )
+        );
+
+        watchers.onValueChange(
+            EnvironmentValueName.LOCALE,
+            Locale.FRANCE,
+            Locale.GERMANY
+        );
+        watchers.onValueChange(
+            EnvironmentValueName.USER,
+            EmailAddress.parse("user@example.com"),
+            null
+        );
+
+        this.checkEquals(
+            Lists.of(
+                EnvironmentValueChange.with(
+                    Optional.of(
+                        EnvironmentValueName.LOCALE.setValue(Locale.FRANCE)
+                    ),
+                    Optional.of(
+                        EnvironmentValueName.LOCALE.setValue(Locale.GERMANY)
+                    )
+                ),
+                EnvironmentValueChange.with(
+                    Optional.of(
+                        EnvironmentValueName.USER.setValue(
+                            EmailAddress.parse("user@example.com")
+                        )
+                    ),
+                    Optional.empty()
+                )
+            ),
+            fired
+        );
+    }
+
+    @Test
+    public void testOnValueChangeRawValuesEqualNotFired() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            (o, n) -> {
+                throw new UnsupportedOperationException();
+            }
+        );
+
+        watchers.onValueChange(
+            EnvironmentValueName.LOCALE,
+            Locale.FRANCE,
+            Locale.FRANCE
+        );
+        watchers.onValueChange(
+            EnvironmentValueName.USER,
+            null,
+            null
+        );
+    }
+
+    // instrumented.....................................................................................................
+
+    @Test
+    public void testInstrumentedWithNullBudgetFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchers.instrumented(
+                null,
+                System::nanoTime
+            )
+        );
+    }
+
+    @Test
+    public void testInstrumentedWithNegativeBudgetFails() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> EnvironmentWatchers.instrumented(
+                Duration.ofMillis(-1),
+                System::nanoTime
+            )
+        );
+    }
+
+    @Test
+    public void testInstrumentedWithNullNanoTimeFails() {
+        assertThrows(
+            NullPointerException.class,
+            () -> EnvironmentWatchers.instrumented(
+                Duration.ofMillis(1),
+                null
+            )
+        );
+    }
+
+    @Test
+    public void testInstrumentedFailingWatcherIsolated() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.instrumented(
+            Duration.ofMillis(1),
+            System::nanoTime
+        );
+
+        final List<String> fired = Lists.array();
+        watchers.add(
+            (o, n) -> {
+                throw new IllegalStateException("Failed");
+            }
+        );
+        watchers.add(
+            (o, n) -> fired.add("2")
+        );
+
+        watchers.onValueChange(
+            EnvironmentValueName.LOCALE,
+            Locale.FRANCE,
+            Locale.GERMANY
+        );
+
+        this.checkEquals(
+            Lists.of("2"),
+            fired,
+            "fired"
+        );
+
+        final List<EnvironmentWatcherStatistics> statistics = watchers.statistics();
+        this.checkEquals(
+            2,
+            statistics.size(),
+            "statistics"
+        );
+        this.checkEquals(
+            1L,
+            statistics.get(0)
+                .exceptions(),
+            "exceptions"
+        );
+        this.checkEquals(
+            1L,
+            statistics.get(1)
+                .events(),
+            "events"
+        );
+    }
+
+    @Test
+    public void testInstrumentedSlowWatcherFlagged() {
+        final long[] now = new long[1];
+
+        final EnvironmentWatchers watchers = EnvironmentWatchers.instrumented(
+            Duration.ofNanos(100),
+            () -> now[0]
+        );
+        watchers.add(
+            (o, n) -> now[0] += 50
+        );
+        watchers.add(
+            Sets.<EnvironmentValueName<?>>of(EnvironmentValueName.LOCALE),
+            (o, n) -> now[0] += 200
+        );
+
+        watchers.onValueChange(
+            EnvironmentValueName.LOCALE,
+            Locale.FRANCE,
+            Locale.GERMANY
+        );
+
+        final List<EnvironmentWatcherStatistics> statistics = watchers.statistics();
+        this.checkEquals(
+            Lists.of(
+                false,
+                true
+            ),
+            Lists.of(
+                statistics.get(0)
+                    .isSlow(),
+                statistics.get(1)
+                    .isSlow()
+            )
+        );
+    }
+
+    @Test
+    public void testStatisticsNotInstrumented() {
+        final EnvironmentWatchers watchers = EnvironmentWatchers.empty();
+        watchers.add(
+            (o, n) -> {
+            }
+        );
+
+        this.checkEquals(
+            Lists.empty(),
+            watchers.statistics()
+        );
+    }
+
     // ClassTesting....................................................................................................
 
     @Override